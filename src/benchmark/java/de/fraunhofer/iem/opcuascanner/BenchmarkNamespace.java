@@ -0,0 +1,220 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import org.eclipse.milo.opcua.sdk.core.AccessLevel;
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.AccessContext;
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.api.Namespace;
+import org.eclipse.milo.opcua.sdk.server.api.ServerNodeMap;
+import org.eclipse.milo.opcua.sdk.server.nodes.AttributeContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.ServerNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ubyte;
+
+/**
+ * A generated address space below the objects folder: a tree of folders in which every folder has the same number of
+ * children and the leaves are writable Int32 variables. It also has the variable the scanner tries to write to, so
+ * write and delete probes find it.
+ *
+ * Every browse, read and write of a node of this namespace is answered after the configured latency, to simulate a
+ * server on the network. Nodes of the standard namespace are answered by the server at once.
+ */
+class BenchmarkNamespace implements Namespace {
+
+    static final String NAMESPACE_URI = "urn:fraunhofer:iem:opcua:benchmark";
+
+    private static final int CHILDREN_PER_FOLDER = 10;
+    private static final String WRITE_PROBE_NODE = "HelloWorld/ScalarTypes/Int32";
+
+    private final OpcUaServer server;
+    private final UShort namespaceIndex;
+    private final long latencyInMs;
+    private final SubscriptionModel subscriptionModel;
+    private final AtomicLong browsedNodes = new AtomicLong();
+
+    /**
+     * @param server The server to add the nodes to
+     * @param namespaceIndex The index the namespace was registered with
+     * @param nodes The number of nodes of the generated tree, without the folder it is in
+     * @param latencyInMs The time after which requests for nodes of this namespace are answered
+     */
+    BenchmarkNamespace(OpcUaServer server, UShort namespaceIndex, int nodes, long latencyInMs) {
+        this.server = server;
+        this.namespaceIndex = namespaceIndex;
+        this.latencyInMs = latencyInMs;
+        this.subscriptionModel = new SubscriptionModel(server, this);
+        createNodes(nodes);
+    }
+
+    private void createNodes(int nodes) {
+        ServerNodeMap nodeMap = server.getNodeMap();
+        UaFolderNode root = folder(nodeMap, "Benchmark");
+        try {
+            server.getUaNamespace().addReference(Identifiers.ObjectsFolder, Identifiers.Organizes, true,
+                    root.getNodeId().expanded(), NodeClass.Object);
+        } catch (UaException e) {
+            throw new IllegalStateException("Could not add the benchmark folder to the objects folder.", e);
+        }
+        root.addOrganizes(variable(nodeMap, WRITE_PROBE_NODE));
+
+        //Node i is organized by node (i - 1) / CHILDREN_PER_FOLDER, node 0 by the benchmark folder
+        List<UaFolderNode> folders = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            boolean hasChildren = (long) i * CHILDREN_PER_FOLDER + 1 < nodes;
+            UaNode node = hasChildren ? folder(nodeMap, "Node" + i) : variable(nodeMap, "Node" + i);
+            UaFolderNode parent = i == 0 ? root : folders.get((i - 1) / CHILDREN_PER_FOLDER);
+            parent.addOrganizes(node);
+            if (hasChildren) {
+                folders.add((UaFolderNode) node);
+            }
+        }
+    }
+
+    private UaFolderNode folder(ServerNodeMap nodeMap, String name) {
+        UaFolderNode folder = new UaFolderNode(nodeMap, new NodeId(namespaceIndex, name),
+                new QualifiedName(namespaceIndex, name), LocalizedText.english(name));
+        nodeMap.addNode(folder);
+        return folder;
+    }
+
+    private UaVariableNode variable(ServerNodeMap nodeMap, String name) {
+        UaVariableNode variable = new UaVariableNode.UaVariableNodeBuilder(nodeMap)
+                .setNodeId(new NodeId(namespaceIndex, name))
+                .setBrowseName(new QualifiedName(namespaceIndex, name))
+                .setDisplayName(LocalizedText.english(name))
+                .setAccessLevel(ubyte(AccessLevel.getMask(AccessLevel.READ_WRITE)))
+                .setUserAccessLevel(ubyte(AccessLevel.getMask(AccessLevel.READ_WRITE)))
+                .setDataType(Identifiers.Int32)
+                .setTypeDefinition(Identifiers.BaseDataVariableType)
+                .build();
+        variable.setValue(new DataValue(new Variant(0)));
+        nodeMap.addNode(variable);
+        return variable;
+    }
+
+    /**
+     * @return The number of nodes of this namespace which were browsed so far
+     */
+    long getBrowsedNodes() {
+        return browsedNodes.get();
+    }
+
+    @Override
+    public UShort getNamespaceIndex() {
+        return namespaceIndex;
+    }
+
+    @Override
+    public String getNamespaceUri() {
+        return NAMESPACE_URI;
+    }
+
+    @Override
+    public CompletableFuture<List<Reference>> browse(AccessContext context, NodeId nodeId) {
+        CompletableFuture<List<Reference>> references = new CompletableFuture<>();
+        afterLatency(() -> {
+            ServerNode node = server.getNodeMap().get(nodeId);
+            if (node != null) {
+                browsedNodes.incrementAndGet();
+                references.complete(node.getReferences());
+            } else {
+                references.completeExceptionally(new UaException(StatusCodes.Bad_NodeIdUnknown));
+            }
+        });
+        return references;
+    }
+
+    @Override
+    public void read(ReadContext context, Double maxAge, TimestampsToReturn timestamps,
+                     List<ReadValueId> readValueIds) {
+        afterLatency(() -> {
+            List<DataValue> results = new ArrayList<>(readValueIds.size());
+            for (ReadValueId readValueId : readValueIds) {
+                ServerNode node = server.getNodeMap().get(readValueId.getNodeId());
+                if (node != null) {
+                    results.add(node.readAttribute(new AttributeContext(context), readValueId.getAttributeId(),
+                            timestamps, readValueId.getIndexRange(), readValueId.getDataEncoding()));
+                } else {
+                    results.add(new DataValue(StatusCodes.Bad_NodeIdUnknown));
+                }
+            }
+            context.complete(results);
+        });
+    }
+
+    @Override
+    public void write(WriteContext context, List<WriteValue> writeValues) {
+        afterLatency(() -> {
+            List<StatusCode> results = new ArrayList<>(writeValues.size());
+            for (WriteValue writeValue : writeValues) {
+                ServerNode node = server.getNodeMap().get(writeValue.getNodeId());
+                if (node == null) {
+                    results.add(new StatusCode(StatusCodes.Bad_NodeIdUnknown));
+                    continue;
+                }
+                try {
+                    node.writeAttribute(new AttributeContext(context), writeValue.getAttributeId(),
+                            writeValue.getValue(), writeValue.getIndexRange());
+                    results.add(StatusCode.GOOD);
+                } catch (UaException e) {
+                    results.add(e.getStatusCode());
+                }
+            }
+            context.complete(results);
+        });
+    }
+
+    private void afterLatency(Runnable answer) {
+        if (latencyInMs > 0) {
+            server.getScheduledExecutorService().schedule(answer, latencyInMs, TimeUnit.MILLISECONDS);
+        } else {
+            answer.run();
+        }
+    }
+
+    @Override
+    public void onDataItemsCreated(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsCreated(dataItems);
+    }
+
+    @Override
+    public void onDataItemsModified(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsModified(dataItems);
+    }
+
+    @Override
+    public void onDataItemsDeleted(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsDeleted(dataItems);
+    }
+
+    @Override
+    public void onMonitoringModeChanged(List<MonitoredItem> monitoredItems) {
+        subscriptionModel.onMonitoringModeChanged(monitoredItems);
+    }
+}
@@ -0,0 +1,86 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.utils.CertificateUtil;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig;
+import org.eclipse.milo.opcua.sdk.server.identity.UsernameIdentityValidator;
+import org.eclipse.milo.opcua.stack.core.application.DefaultCertificateManager;
+import org.eclipse.milo.opcua.stack.core.application.InsecureCertificateValidator;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.structured.UserTokenPolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An OPC UA server on the loopback interface with a generated address space, for measuring the scanner without real
+ * devices. It accepts any client certificate.
+ */
+class BenchmarkServer {
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    private final OpcUaServer server;
+    private final BenchmarkNamespace namespace;
+
+    /**
+     * @param port The port to listen on
+     * @param securityPolicies The security policies of the endpoints, None has no security
+     * @param allowAnonymous Whether anonymous users may connect
+     * @param users The passwords of the users who may connect, by their names
+     * @param nodes The number of nodes of the generated address space
+     * @param latencyInMs The time after which requests for nodes of the generated address space are answered
+     */
+    BenchmarkServer(int port, EnumSet<SecurityPolicy> securityPolicies, boolean allowAnonymous,
+                    Map<String, String> users, int nodes, long latencyInMs) {
+        List<UserTokenPolicy> userTokenPolicies = new ArrayList<>();
+        if (allowAnonymous) {
+            userTokenPolicies.add(OpcUaServerConfig.USER_TOKEN_POLICY_ANONYMOUS);
+        }
+        if (!users.isEmpty()) {
+            userTokenPolicies.add(OpcUaServerConfig.USER_TOKEN_POLICY_USERNAME);
+        }
+        UsernameIdentityValidator identityValidator = new UsernameIdentityValidator(allowAnonymous,
+                challenge -> challenge.getPassword() != null
+                        && challenge.getPassword().equals(users.get(challenge.getUsername())));
+
+        OpcUaServerConfig config = OpcUaServerConfig.builder()
+                .setApplicationUri(CertificateUtil.APPLICATION_URI)
+                .setApplicationName(LocalizedText.english("OPC UA Benchmark Server " + port))
+                .setProductUri(BenchmarkNamespace.NAMESPACE_URI)
+                .setBindAddresses(Collections.singletonList(LOOPBACK))
+                .setEndpointAddresses(Collections.singletonList(LOOPBACK))
+                .setBindPort(port)
+                .setSecurityPolicies(securityPolicies)
+                .setUserTokenPolicies(userTokenPolicies)
+                .setIdentityValidator(identityValidator)
+                .setCertificateManager(new DefaultCertificateManager(CertificateUtil.getOrGenerateRsaKeyPair(),
+                        CertificateUtil.getWorkingSelfSignedCertificate()))
+                .setCertificateValidator(new InsecureCertificateValidator())
+                .build();
+
+        server = new OpcUaServer(config);
+        namespace = server.getNamespaceManager().registerAndAdd(BenchmarkNamespace.NAMESPACE_URI,
+                index -> new BenchmarkNamespace(server, index, nodes, latencyInMs));
+    }
+
+    void start() throws InterruptedException, ExecutionException {
+        server.startup().get();
+    }
+
+    void stop() throws InterruptedException, ExecutionException {
+        server.shutdown().get();
+    }
+
+    /**
+     * @return The number of nodes of the generated address space which were browsed so far
+     */
+    long getBrowsedNodes() {
+        return namespace.getBrowsedNodes();
+    }
+}
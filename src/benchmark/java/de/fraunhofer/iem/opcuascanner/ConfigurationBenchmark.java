@@ -0,0 +1,36 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expands the ip ranges of the configuration into the addresses to scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigurationBenchmark {
+
+    @Param({"10.0.0.1-254", "10.0.0.0/24", "10.0.0.0/20", "10.0.0.0/16", "10.0.0.0/24,10.0.1.0/24,10.0.2.1-100"})
+    private String ipRanges;
+
+    @Benchmark
+    public int parseIpAddressSetting() {
+        Configuration.getIpAddresses().clear();
+        Configuration.parseIpAddressSetting(ipRanges);
+        return Configuration.getIpAddresses().size();
+    }
+}
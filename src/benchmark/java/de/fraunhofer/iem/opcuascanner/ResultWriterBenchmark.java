@@ -0,0 +1,91 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the results of many endpoints to a result file, as at the end of scanning a large range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ResultWriterBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int endpoints;
+
+    @Param({"false", "true"})
+    private boolean jsonLines;
+
+    /**
+     * 0 writes every line on its own, otherwise lines are buffered until the buffer is full
+     */
+    @Param({"0", "60000"})
+    private int flushIntervalInMs;
+
+    private final List<String> servers = new ArrayList<>();
+    private final List<AccessPrivileges> results = new ArrayList<>();
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void createResults() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < endpoints; i++) {
+            servers.add("opc.tcp://10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF)
+                    + ":4840#Basic256Sha256 SignAndEncrypt");
+            AccessPrivileges privileges = new AccessPrivileges();
+            for (Authentication auth : Authentication.values()) {
+                for (Privilege privilege : Privilege.values()) {
+                    privileges.setPrivilegeWasTested(privilege, auth);
+                    if (random.nextInt(4) == 0) {
+                        privileges.setPrivilegePerAuthentication(privilege, auth);
+                    }
+                }
+            }
+            results.add(privileges);
+        }
+        file = Files.createTempFile("results", jsonLines ? ResultReporter.JSON_LINES_FILE_EXTENSION
+                : ResultReporter.DEFAULT_FILE_EXTENSION);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long writeResults() throws IOException {
+        try (ResultReporter.ResultWriter writer = new ResultReporter.ResultWriter(file, jsonLines,
+                flushIntervalInMs)) {
+            for (int i = 0; i < endpoints; i++) {
+                writer.write(servers.get(i), results.get(i));
+            }
+        }
+        return Files.size(file);
+    }
+}
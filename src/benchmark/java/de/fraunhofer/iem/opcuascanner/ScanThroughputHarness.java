@@ -0,0 +1,186 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the throughput of a complete scan against OPC UA servers started in this process on the loopback
+ * interface, so scan engines and concurrency settings can be compared without real devices.
+ *
+ * The configuration file has the format of the scanner configuration. The settings starting with "server" describe
+ * the servers to start, all other settings are passed to the scanner. The addresses and ports to scan and the result
+ * files are set by the harness. Browse results, snapshots and journals are written to the working directory.
+ *
+ * Reports hosts, endpoints, privilege probes and browsed nodes per second, and the peak heap used during the scan.
+ */
+class ScanThroughputHarness {
+
+    private static final Logger logger = LogManager.getLogger(ScanThroughputHarness.class);
+
+    private static final String SERVER_COUNT_SETTING = "serverCount";
+    private static final String SERVER_FIRST_PORT_SETTING = "serverFirstPort";
+    private static final String SERVER_NODES_SETTING = "serverNodes";
+    private static final String SERVER_SECURITY_POLICIES_SETTING = "serverSecurityPolicies";
+    private static final String SERVER_ALLOW_ANONYMOUS_SETTING = "serverAllowAnonymous";
+    private static final String SERVER_USERS_SETTING = "serverUsers";
+    private static final String SERVER_LATENCY_SETTING = "serverLatencyInMs";
+
+    private static final Pattern HOST_AND_PORT = Pattern.compile("opc\\.tcp://([^/#]+)");
+
+    private int serverCount = 4;
+    private int firstPort = 48400;
+    private int nodes = 1000;
+    private EnumSet<SecurityPolicy> securityPolicies = EnumSet.of(SecurityPolicy.None, SecurityPolicy.Basic256Sha256);
+    private boolean allowAnonymous = true;
+    private final Map<String, String> users = new HashMap<>();
+    private long latencyInMs = 0;
+    private final List<String> scannerSettings = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        ScanThroughputHarness harness = new ScanThroughputHarness();
+        if (args.length > 0) {
+            harness.readConfiguration(Paths.get(args[0]));
+        }
+        harness.run();
+        //The stack of the scanner keeps non-daemon threads around
+        System.exit(0);
+    }
+
+    private void readConfiguration(Path file) throws IOException {
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] setting = trimmed.split("=", 2);
+            String value = setting.length > 1 ? setting[1].trim() : "";
+            switch (setting[0].trim()) {
+                case SERVER_COUNT_SETTING:
+                    serverCount = Integer.parseInt(value);
+                    break;
+                case SERVER_FIRST_PORT_SETTING:
+                    firstPort = Integer.parseInt(value);
+                    break;
+                case SERVER_NODES_SETTING:
+                    nodes = Integer.parseInt(value);
+                    break;
+                case SERVER_SECURITY_POLICIES_SETTING:
+                    securityPolicies = EnumSet.noneOf(SecurityPolicy.class);
+                    for (String policy : value.split(",")) {
+                        securityPolicies.add(SecurityPolicy.valueOf(policy.trim()));
+                    }
+                    break;
+                case SERVER_ALLOW_ANONYMOUS_SETTING:
+                    allowAnonymous = Boolean.parseBoolean(value);
+                    break;
+                case SERVER_USERS_SETTING:
+                    users.clear();
+                    for (String user : value.split(",")) {
+                        String[] login = user.trim().split(":", 2);
+                        if (login.length == 2) {
+                            users.put(login[0], login[1]);
+                        }
+                    }
+                    break;
+                case SERVER_LATENCY_SETTING:
+                    latencyInMs = Long.parseLong(value);
+                    break;
+                default:
+                    scannerSettings.add(trimmed);
+            }
+        }
+    }
+
+    private void run() throws IOException, InterruptedException, ExecutionException {
+        List<BenchmarkServer> servers = new ArrayList<>();
+        for (int i = 0; i < serverCount; i++) {
+            BenchmarkServer server = new BenchmarkServer(firstPort + i, securityPolicies, allowAnonymous, users,
+                    nodes, latencyInMs);
+            server.start();
+            servers.add(server);
+        }
+        logger.info("Started {} servers on ports {} to {} with {} nodes, policies {} and {} ms latency.",
+                serverCount, firstPort, firstPort + serverCount - 1, nodes, securityPolicies, latencyInMs);
+
+        Path resultDirectory = Files.createTempDirectory("scan-throughput");
+        Path archive = resultDirectory.resolve("results.archive");
+        Path scannerConfig = resultDirectory.resolve("config.txt");
+        List<String> config = new ArrayList<>(scannerSettings);
+        config.add("ipRanges = 127.0.0.1");
+        config.add("port = " + firstPort + "-" + (firstPort + serverCount - 1));
+        config.add("outputFileName = " + resultDirectory.resolve("results"));
+        config.add("archiveFile = " + archive);
+        Files.write(scannerConfig, config, StandardCharsets.UTF_8);
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        ScanningClient.main(new String[]{scannerConfig.toString()});
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        long browsedNodes = 0;
+        for (BenchmarkServer server : servers) {
+            browsedNodes += server.getBrowsedNodes();
+            server.stop();
+        }
+        report(archive, seconds, browsedNodes, peakHeap);
+    }
+
+    private static void report(Path archive, double seconds, long browsedNodes, long peakHeap) throws IOException {
+        Map<String, AccessPrivileges> results;
+        try (ResultArchive.Reader reader = ResultArchive.openReader(archive)) {
+            results = reader.readAll();
+        }
+        Set<String> hosts = new HashSet<>();
+        long probes = 0;
+        for (Map.Entry<String, AccessPrivileges> result : results.entrySet()) {
+            Matcher hostAndPort = HOST_AND_PORT.matcher(result.getKey());
+            if (hostAndPort.find()) {
+                hosts.add(hostAndPort.group(1));
+            }
+            for (Authentication auth : Authentication.values()) {
+                probes += Integer.bitCount(result.getValue().getTestedBits(auth));
+            }
+        }
+        logger.info("Scan took {} s", String.format("%.2f", seconds));
+        logger.info("Hosts:        {} ({}/s)", hosts.size(), rate(hosts.size(), seconds));
+        logger.info("Endpoints:    {} ({}/s)", results.size(), rate(results.size(), seconds));
+        logger.info("Probes:       {} ({}/s)", probes, rate(probes, seconds));
+        logger.info("Browsed nodes: {} ({}/s)", browsedNodes, rate(browsedNodes, seconds));
+        logger.info("Peak heap:    {} MB", peakHeap / (1024 * 1024));
+    }
+
+    private static String rate(long count, double seconds) {
+        return String.format("%.1f", count / seconds);
+    }
+}
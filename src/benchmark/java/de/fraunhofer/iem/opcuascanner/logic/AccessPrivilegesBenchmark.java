@@ -0,0 +1,83 @@
+package de.fraunhofer.iem.opcuascanner.logic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates and copies the privileges of an endpoint, as done for every login and every result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessPrivilegesBenchmark {
+
+    @State(Scope.Thread)
+    public static class OwnPrivileges {
+        private AccessPrivileges privileges;
+
+        @Setup
+        public void fill() {
+            privileges = new AccessPrivileges();
+            for (Authentication auth : Authentication.values()) {
+                for (Privilege privilege : Privilege.values()) {
+                    privileges.setPrivilegeWasTested(privilege, auth);
+                    if (privilege.ordinal() % 2 == 0) {
+                        privileges.setPrivilegePerAuthentication(privilege, auth);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Privileges of one endpoint, updated by the login testers of the endpoint at the same time
+     */
+    @State(Scope.Benchmark)
+    public static class SharedPrivileges {
+        private final AccessPrivileges privileges = new AccessPrivileges();
+    }
+
+    @Benchmark
+    public AccessPrivileges setAllPrivileges() {
+        AccessPrivileges privileges = new AccessPrivileges();
+        for (Authentication auth : Authentication.values()) {
+            for (Privilege privilege : Privilege.values()) {
+                privileges.setPrivilegeWasTested(privilege, auth);
+                privileges.setPrivilegePerAuthentication(privilege, auth);
+            }
+        }
+        return privileges;
+    }
+
+    @Benchmark
+    public AccessPrivileges copy(OwnPrivileges own) {
+        return own.privileges.copy();
+    }
+
+    @Benchmark
+    public boolean betterThan(OwnPrivileges own) {
+        return own.privileges.betterThan(own.privileges, Authentication.COMMON_CREDENTIALS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void setSharedPrivileges(SharedPrivileges shared) {
+        for (Privilege privilege : Privilege.values()) {
+            shared.privileges.setPrivilegeWasTested(privilege, Authentication.COMMON_CREDENTIALS);
+            shared.privileges.setPrivilegePerAuthentication(privilege, Authentication.COMMON_CREDENTIALS);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Browses a generated address space through a mocked client which answers at once, so only the traversal itself and
+ * the building of the address space graph are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddressSpaceBrowserBenchmark {
+
+    private static final int NAMESPACE = 1;
+    private static final int CHILDREN_PER_NODE = 8;
+
+    @Param({"1000", "10000", "100000"})
+    private int nodes;
+
+    @Param({"100", "1000"})
+    private int maxNodesPerBrowse;
+
+    private OpcUaClient client;
+    private ReferenceDescription[][] referencesOfNodes;
+
+    @Setup
+    public void createAddressSpace() {
+        //Node i references the nodes i * CHILDREN_PER_NODE + 1 up to i * CHILDREN_PER_NODE + CHILDREN_PER_NODE
+        referencesOfNodes = new ReferenceDescription[nodes][];
+        for (int node = 0; node < nodes; node++) {
+            int firstChild = Math.min(nodes, node * CHILDREN_PER_NODE + 1);
+            int lastChild = Math.min(nodes, firstChild + CHILDREN_PER_NODE);
+            referencesOfNodes[node] = new ReferenceDescription[lastChild - firstChild];
+            for (int child = firstChild; child < lastChild; child++) {
+                NodeClass nodeClass = child % 4 == 0 ? NodeClass.Variable : NodeClass.Object;
+                referencesOfNodes[node][child - firstChild] = reference(child, nodeClass);
+            }
+        }
+        client = mock(OpcUaClient.class);
+        when(client.browse(any(), any(), anyList())).thenAnswer(invocation -> {
+            List<BrowseDescription> descriptions = invocation.getArgument(2);
+            BrowseResult[] results = new BrowseResult[descriptions.size()];
+            for (int i = 0; i < results.length; i++) {
+                int node = ((Number) descriptions.get(i).getNodeId().getIdentifier()).intValue();
+                results[i] = new BrowseResult(StatusCode.GOOD, null, referencesOfNodes[node]);
+            }
+            return CompletableFuture.completedFuture(new BrowseResponse(null, results, null));
+        });
+    }
+
+    private static ReferenceDescription reference(int node, NodeClass nodeClass) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(nodeId(node)),
+                new QualifiedName(NAMESPACE, "node" + node), LocalizedText.english(""), nodeClass,
+                ExpandedNodeId.NULL_VALUE);
+    }
+
+    private static NodeId nodeId(int node) {
+        return new NodeId(NAMESPACE, node);
+    }
+
+    @Benchmark
+    public AddressSpaceGraph browseAddressSpace() throws InterruptedException {
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(nodeId(0));
+        AddressSpaceBrowser browser = new AddressSpaceBrowser(client, maxNodesPerBrowse, 4, nodes);
+        browser.browse(nodeId(0), builder::addReference);
+        return builder.build();
+    }
+}
@@ -0,0 +1,46 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the self-signed certificates the scanner connects with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertificateUtilBenchmark {
+
+    private static final long THREE_YEARS_IN_MS = TimeUnit.DAYS.toMillis(3 * 365L);
+
+    private Date notBefore;
+    private Date notAfter;
+
+    @Setup
+    public void generateKeyPair() {
+        //The key pair is generated once and then used for all certificates
+        CertificateUtil.getOrGenerateRsaKeyPair();
+        notBefore = new Date();
+        notAfter = new Date(notBefore.getTime() + THREE_YEARS_IN_MS);
+    }
+
+    @Benchmark
+    public X509Certificate generateSelfSigned() throws Exception {
+        return CertificateUtil.generateSelfSigned(notBefore, notAfter, true);
+    }
+}
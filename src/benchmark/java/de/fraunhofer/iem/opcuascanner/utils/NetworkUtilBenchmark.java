@@ -0,0 +1,67 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.apache.commons.net.util.SubnetUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expands the addresses and ports to scan into the targets of the port sweep.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkUtilBenchmark {
+
+    @Param({"10.0.0.0/24", "10.0.0.0/20", "10.0.0.0/16"})
+    private String subnet;
+
+    @Param({"1", "4"})
+    private int numberOfPorts;
+
+    private Set<InetAddress> addresses;
+    private List<Integer> ports;
+
+    @Setup
+    public void expandSubnet() throws UnknownHostException {
+        addresses = new LinkedHashSet<>();
+        for (String address : new SubnetUtils(subnet).getInfo().getAllAddresses()) {
+            addresses.add(InetAddress.getByName(address));
+        }
+        ports = new ArrayList<>(Arrays.asList(4840, 4841, 4842, 4843).subList(0, numberOfPorts));
+    }
+
+    @Benchmark
+    public int iterateTargets() {
+        int targets = 0;
+        Iterator<InetSocketAddress> iterator = NetworkUtil.getTargets(addresses, ports);
+        while (iterator.hasNext()) {
+            if (iterator.next().getPort() > 0) {
+                targets++;
+            }
+        }
+        return targets;
+    }
+}
@@ -7,18 +7,165 @@ import org.apache.logging.log4j.Logger;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Configuration {
 
     /**
-     * The port to try to reach the hosts on
+     * The ports to try to reach the hosts on. Every port is tried on every host.
      */
-    private static int port = 4840;
+    private static final int DEFAULT_PORT = 4840;
+    private static final Set<Integer> ports = new TreeSet<>(Collections.singleton(DEFAULT_PORT));
     private static final String PORT_SETTING = "port";
 
+    private static final Pattern PORT_RANGE_PATTERN = Pattern.compile("^(\\d{1,5})\\s*-\\s*(\\d{1,5})$");
+    private static final int MAX_PORT = 65535;
+
+    /**
+     * The maximum number of tcp connects which are pending at the same time while scanning for reachable hosts
+     */
+    private static int maxParallelConnects = 1000;
+    private static final String MAX_PARALLEL_CONNECTS_SETTING = "maxParallelConnects";
+
+    /**
+     * The time in milliseconds after which a host is regarded as not reachable if the connect did not complete. With
+     * adaptive timing, only used for subnets whose round trip time was not measured yet
+     */
+    private static int connectTimeoutInMs = 500;
+    private static final String CONNECT_TIMEOUT_SETTING = "connectTimeoutInMs";
+
+    /**
+     * Whether the connect timeout and the number of parallel connects follow the round trip times and losses measured
+     * while scanning for reachable hosts
+     */
+    private static boolean adaptiveTiming = true;
+    private static final String ADAPTIVE_TIMING_SETTING = "adaptiveTiming";
+
+    /**
+     * The shortest connect timeout in milliseconds derived from measured round trip times
+     */
+    private static int minConnectTimeoutInMs = 100;
+    private static final String MIN_CONNECT_TIMEOUT_SETTING = "minConnectTimeoutInMs";
+
+    /**
+     * The longest connect timeout in milliseconds derived from measured round trip times
+     */
+    private static int maxConnectTimeoutInMs = 5000;
+    private static final String MAX_CONNECT_TIMEOUT_SETTING = "maxConnectTimeoutInMs";
+
+    /**
+     * The maximum number of GetEndpoints requests which are pending at the same time
+     */
+    private static int maxParallelDiscoveries = 64;
+    private static final String MAX_PARALLEL_DISCOVERIES_SETTING = "maxParallelDiscoveries";
+
+    /**
+     * The time in milliseconds after which a GetEndpoints request is given up
+     */
+    private static int discoveryTimeoutInMs = 5000;
+    private static final String DISCOVERY_TIMEOUT_SETTING = "discoveryTimeoutInMs";
+
+    /**
+     * The time in milliseconds after which a request testing a privilege is given up
+     */
+    private static int operationTimeoutInMs = 5000;
+    private static final String OPERATION_TIMEOUT_SETTING = "operationTimeoutInMs";
+
+    /**
+     * The maximum number of endpoints whose privileges are tested at the same time
+     */
+    private static int maxParallelEndpoints = 8;
+    private static final String MAX_PARALLEL_ENDPOINTS_SETTING = "maxParallelEndpoints";
+
+    /**
+     * The maximum number of endpoints of the same host whose privileges are tested at the same time
+     */
+    private static int maxParallelEndpointsPerHost = 2;
+    private static final String MAX_PARALLEL_ENDPOINTS_PER_HOST_SETTING = "maxParallelEndpointsPerHost";
+
+    /**
+     * If this is set to active and Java 21 or later is used, every endpoint and login is tested on its own virtual
+     * thread, so maxParallelEndpoints can be far higher than the number of threads the system could handle
+     */
+    private static boolean useVirtualThreads = false;
+    private static final String USE_VIRTUAL_THREADS_SETTING = "useVirtualThreads";
+
+    /**
+     * The maximum number of logins which are tried on the same endpoint at the same time
+     */
+    private static int maxParallelLoginsPerEndpoint = 4;
+    private static final String MAX_PARALLEL_LOGINS_PER_ENDPOINT_SETTING = "maxParallelLoginsPerEndpoint";
+
+    /**
+     * The maximum number of logins which are tried on the same endpoint per second
+     */
+    private static int maxLoginsPerSecond = 10;
+    private static final String MAX_LOGINS_PER_SECOND_SETTING = "maxLoginsPerSecond";
+
+    /**
+     * If this is set to active, no further logins are tried on an endpoint once a login was accepted
+     */
+    private static boolean stopAtFirstValidLogin = false;
+    private static final String STOP_AT_FIRST_VALID_LOGIN_SETTING = "stopAtFirstValidLogin";
+
+    /**
+     * The maximum number of nodes browsed with a single browse request, also used for the methods called with a
+     * single call request
+     */
+    private static int maxNodesPerBrowse = 100;
+    private static final String MAX_NODES_PER_BROWSE_SETTING = "maxNodesPerBrowse";
+
+    /**
+     * The maximum number of browse requests to the same server which are pending at the same time
+     */
+    private static int maxParallelBrowses = 4;
+    private static final String MAX_PARALLEL_BROWSES_SETTING = "maxParallelBrowses";
+
+    /**
+     * The maximum number of nodes browsed per server, so huge address spaces do not stall the scan
+     */
+    private static int maxBrowsedNodes = 100000;
+    private static final String MAX_BROWSED_NODES_SETTING = "maxBrowsedNodes";
+
+    /**
+     * If this is set to active, browse results are written to the XML file while browsing instead of being collected
+     * in memory first. The references are then not nested, but name the id of their parent node.
+     */
+    private static boolean streamBrowseResults = false;
+    private static final String STREAM_BROWSE_RESULTS_SETTING = "streamBrowseResults";
+
+    /**
+     * Directory to write the XML files with the browse results to, the working directory if not set
+     */
+    private static String browseResultDirectory = null;
+    private static final String BROWSE_RESULT_DIRECTORY_SETTING = "browseResultDirectory";
+
+    /**
+     * Directory to keep browsed address spaces in, so the next scan only browses where they changed
+     */
+    private static String snapshotDirectory = null;
+    private static final String SNAPSHOT_DIRECTORY_SETTING = "snapshotDirectory";
+
+    /**
+     * File with additional logins to try, one username:password per line
+     */
+    private static String credentialsFileName = null;
+    private static final String CREDENTIALS_FILE_SETTING = "credentialsFile";
+
+    /**
+     * Files with usernames and passwords, one per line. If both are given, every username is tried with every password
+     */
+    private static String usernamesFileName = null;
+    private static final String USERNAMES_FILE_SETTING = "usernamesFile";
+    private static String passwordsFileName = null;
+    private static final String PASSWORDS_FILE_SETTING = "passwordsFile";
+
     /**
      * If this is set to active, the client will try to write to the server. If successful, this might interfere with
      * the data on a running server, so use carefully.
@@ -46,6 +193,74 @@ public class Configuration {
     private static String outputFileName = "OPCUAScannerResults";
     private static final String OUTPUT_FILE_SETTING = "outputFileName";
 
+    /**
+     * Format of the result file, either csv or jsonl for one JSON object per line
+     */
+    private static String outputFormat = "csv";
+    private static final String OUTPUT_FORMAT_SETTING = "outputFormat";
+    private static final Set<String> OUTPUT_FORMATS = new HashSet<>(Arrays.asList("csv", "jsonl"));
+
+    /**
+     * Time after which results are written to the result file at the latest, 0 to write every result right away
+     */
+    private static int resultFlushIntervalInMs = 0;
+    private static final String RESULT_FLUSH_INTERVAL_SETTING = "resultFlushIntervalInMs";
+
+    /**
+     * File to additionally write the results to in a compact binary format, see {@link ResultArchive}
+     */
+    private static String archiveFileName = null;
+    private static final String ARCHIVE_FILE_SETTING = "archiveFile";
+
+    /**
+     * File to record the progress of the scan in, so a stopped scan can be resumed
+     */
+    private static String journalFileName = null;
+    private static final String JOURNAL_FILE_SETTING = "journalFile";
+
+    /**
+     * File to remember the fingerprints and results of tested endpoints in, so later scans only test changed ones
+     */
+    private static String fingerprintFileName = null;
+    private static final String FINGERPRINT_FILE_SETTING = "fingerprintFile";
+
+    /**
+     * Time after which results are tested again, even if the endpoint did not change
+     */
+    private static int maxResultAgeInHours = 168;
+    private static final String MAX_RESULT_AGE_SETTING = "maxResultAgeInHours";
+
+    /**
+     * File to write the metrics of the scan stages to as JSON, see
+     * {@link de.fraunhofer.iem.opcuascanner.utils.ScanMetrics}
+     */
+    private static String metricsFileName = null;
+    private static final String METRICS_FILE_SETTING = "metricsFile";
+
+    /**
+     * File to write the metrics of the scan stages to in the Prometheus text format
+     */
+    private static String prometheusFileName = null;
+    private static final String PROMETHEUS_FILE_SETTING = "prometheusFile";
+
+    /**
+     * Time after which the metrics files are written again while the scan is running
+     */
+    private static int metricsIntervalInMs = 10000;
+    private static final String METRICS_INTERVAL_SETTING = "metricsIntervalInMs";
+
+    /**
+     * Time after which the progress of the scan is reported again, 0 to not report it
+     */
+    private static int progressIntervalInMs = 10000;
+    private static final String PROGRESS_INTERVAL_SETTING = "progressIntervalInMs";
+
+    /**
+     * File to write the progress of the scan to as JSON, see {@link de.fraunhofer.iem.opcuascanner.utils.ScanProgress}
+     */
+    private static String progressFileName = null;
+    private static final String PROGRESS_FILE_SETTING = "progressFile";
+
     /**
      * IP Ranges determining ip addresses to can. If these are empty {@link de.fraunhofer.iem.opcuascanner.utils.NetworkUtil}
      * will use the own ip addresses it detects instead with the default CIDR suffix.
@@ -106,10 +321,150 @@ public class Configuration {
             case PORT_SETTING:
                 parsePortSetting(settings[1]);
                 break;
+            case MAX_PARALLEL_CONNECTS_SETTING:
+                maxParallelConnects = parsePositiveIntegerSetting(settings[1], maxParallelConnects);
+                logger.info("Found maxParallelConnects in config: {}", maxParallelConnects);
+                break;
+            case CONNECT_TIMEOUT_SETTING:
+                connectTimeoutInMs = parsePositiveIntegerSetting(settings[1], connectTimeoutInMs);
+                logger.info("Found connectTimeoutInMs in config: {}", connectTimeoutInMs);
+                break;
+            case ADAPTIVE_TIMING_SETTING:
+                adaptiveTiming = parseBinarySetting(settings[1]);
+                logger.info("Found adaptiveTiming in config: {}", adaptiveTiming);
+                break;
+            case MIN_CONNECT_TIMEOUT_SETTING:
+                minConnectTimeoutInMs = parsePositiveIntegerSetting(settings[1], minConnectTimeoutInMs);
+                logger.info("Found minConnectTimeoutInMs in config: {}", minConnectTimeoutInMs);
+                break;
+            case MAX_CONNECT_TIMEOUT_SETTING:
+                maxConnectTimeoutInMs = parsePositiveIntegerSetting(settings[1], maxConnectTimeoutInMs);
+                logger.info("Found maxConnectTimeoutInMs in config: {}", maxConnectTimeoutInMs);
+                break;
+            case MAX_PARALLEL_DISCOVERIES_SETTING:
+                maxParallelDiscoveries = Math.max(2, parsePositiveIntegerSetting(settings[1], maxParallelDiscoveries));
+                logger.info("Found maxParallelDiscoveries in config: {}", maxParallelDiscoveries);
+                break;
+            case DISCOVERY_TIMEOUT_SETTING:
+                discoveryTimeoutInMs = parsePositiveIntegerSetting(settings[1], discoveryTimeoutInMs);
+                logger.info("Found discoveryTimeoutInMs in config: {}", discoveryTimeoutInMs);
+                break;
+            case OPERATION_TIMEOUT_SETTING:
+                operationTimeoutInMs = parsePositiveIntegerSetting(settings[1], operationTimeoutInMs);
+                logger.info("Found operationTimeoutInMs in config: {}", operationTimeoutInMs);
+                break;
+            case MAX_PARALLEL_ENDPOINTS_SETTING:
+                maxParallelEndpoints = parsePositiveIntegerSetting(settings[1], maxParallelEndpoints);
+                logger.info("Found maxParallelEndpoints in config: {}", maxParallelEndpoints);
+                break;
+            case MAX_PARALLEL_ENDPOINTS_PER_HOST_SETTING:
+                maxParallelEndpointsPerHost = parsePositiveIntegerSetting(settings[1], maxParallelEndpointsPerHost);
+                logger.info("Found maxParallelEndpointsPerHost in config: {}", maxParallelEndpointsPerHost);
+                break;
+            case USE_VIRTUAL_THREADS_SETTING:
+                useVirtualThreads = parseBinarySetting(settings[1]);
+                logger.info("Found useVirtualThreads in config: {}", useVirtualThreads);
+                break;
+            case MAX_PARALLEL_LOGINS_PER_ENDPOINT_SETTING:
+                maxParallelLoginsPerEndpoint = parsePositiveIntegerSetting(settings[1], maxParallelLoginsPerEndpoint);
+                logger.info("Found maxParallelLoginsPerEndpoint in config: {}", maxParallelLoginsPerEndpoint);
+                break;
+            case MAX_LOGINS_PER_SECOND_SETTING:
+                maxLoginsPerSecond = parsePositiveIntegerSetting(settings[1], maxLoginsPerSecond);
+                logger.info("Found maxLoginsPerSecond in config: {}", maxLoginsPerSecond);
+                break;
+            case STOP_AT_FIRST_VALID_LOGIN_SETTING:
+                stopAtFirstValidLogin = parseBinarySetting(settings[1]);
+                logger.info("Found stopAtFirstValidLogin in config: {}", stopAtFirstValidLogin);
+                break;
+            case MAX_NODES_PER_BROWSE_SETTING:
+                maxNodesPerBrowse = parsePositiveIntegerSetting(settings[1], maxNodesPerBrowse);
+                logger.info("Found maxNodesPerBrowse in config: {}", maxNodesPerBrowse);
+                break;
+            case MAX_PARALLEL_BROWSES_SETTING:
+                maxParallelBrowses = parsePositiveIntegerSetting(settings[1], maxParallelBrowses);
+                logger.info("Found maxParallelBrowses in config: {}", maxParallelBrowses);
+                break;
+            case MAX_BROWSED_NODES_SETTING:
+                maxBrowsedNodes = parsePositiveIntegerSetting(settings[1], maxBrowsedNodes);
+                logger.info("Found maxBrowsedNodes in config: {}", maxBrowsedNodes);
+                break;
+            case STREAM_BROWSE_RESULTS_SETTING:
+                streamBrowseResults = parseBinarySetting(settings[1]);
+                logger.info("Found streamBrowseResults in config: {}", streamBrowseResults);
+                break;
+            case BROWSE_RESULT_DIRECTORY_SETTING:
+                browseResultDirectory = settings[1].trim();
+                logger.info("Found browseResultDirectory in config: {}", browseResultDirectory);
+                break;
+            case SNAPSHOT_DIRECTORY_SETTING:
+                snapshotDirectory = settings[1].trim();
+                logger.info("Found snapshotDirectory in config: {}", snapshotDirectory);
+                break;
+            case CREDENTIALS_FILE_SETTING:
+                credentialsFileName = settings[1].trim();
+                logger.info("Found credentialsFile in config: {}", credentialsFileName);
+                break;
+            case USERNAMES_FILE_SETTING:
+                usernamesFileName = settings[1].trim();
+                logger.info("Found usernamesFile in config: {}", usernamesFileName);
+                break;
+            case PASSWORDS_FILE_SETTING:
+                passwordsFileName = settings[1].trim();
+                logger.info("Found passwordsFile in config: {}", passwordsFileName);
+                break;
             case OUTPUT_FILE_SETTING:
                 outputFileName = settings[1].trim();
                 logger.info("Found outputFileName in config: {}", outputFileName);
                 break;
+            case OUTPUT_FORMAT_SETTING:
+                if (OUTPUT_FORMATS.contains(settings[1].trim())){
+                    outputFormat = settings[1].trim();
+                } else {
+                    logger.info("Output format should be one of {}: {}", OUTPUT_FORMATS, settings[1]);
+                }
+                logger.info("Found outputFormat in config: {}", outputFormat);
+                break;
+            case RESULT_FLUSH_INTERVAL_SETTING:
+                resultFlushIntervalInMs = parseNonNegativeIntegerSetting(settings[1], resultFlushIntervalInMs);
+                logger.info("Found resultFlushIntervalInMs in config: {}", resultFlushIntervalInMs);
+                break;
+            case ARCHIVE_FILE_SETTING:
+                archiveFileName = settings[1].trim();
+                logger.info("Found archiveFile in config: {}", archiveFileName);
+                break;
+            case JOURNAL_FILE_SETTING:
+                journalFileName = settings[1].trim();
+                logger.info("Found journalFile in config: {}", journalFileName);
+                break;
+            case FINGERPRINT_FILE_SETTING:
+                fingerprintFileName = settings[1].trim();
+                logger.info("Found fingerprintFile in config: {}", fingerprintFileName);
+                break;
+            case MAX_RESULT_AGE_SETTING:
+                maxResultAgeInHours = parsePositiveIntegerSetting(settings[1], maxResultAgeInHours);
+                logger.info("Found maxResultAgeInHours in config: {}", maxResultAgeInHours);
+                break;
+            case METRICS_FILE_SETTING:
+                metricsFileName = settings[1].trim();
+                logger.info("Found metricsFile in config: {}", metricsFileName);
+                break;
+            case PROMETHEUS_FILE_SETTING:
+                prometheusFileName = settings[1].trim();
+                logger.info("Found prometheusFile in config: {}", prometheusFileName);
+                break;
+            case METRICS_INTERVAL_SETTING:
+                metricsIntervalInMs = parsePositiveIntegerSetting(settings[1], metricsIntervalInMs);
+                logger.info("Found metricsIntervalInMs in config: {}", metricsIntervalInMs);
+                break;
+            case PROGRESS_INTERVAL_SETTING:
+                progressIntervalInMs = parseNonNegativeIntegerSetting(settings[1], progressIntervalInMs);
+                logger.info("Found progressIntervalInMs in config: {}", progressIntervalInMs);
+                break;
+            case PROGRESS_FILE_SETTING:
+                progressFileName = settings[1].trim();
+                logger.info("Found progressFile in config: {}", progressFileName);
+                break;
             case IP_RANGES_SETTING:
                 parseIpAddressSetting(settings[1]);
                 break;
@@ -118,7 +473,7 @@ public class Configuration {
         }
     }
 
-    private static void parseIpAddressSetting(String setting) {
+    static void parseIpAddressSetting(String setting) {
         String[] addresses = setting.trim().split(",");
         for (String potentialAddress : addresses){
             //Determine for each address whether it is formatted with a CIDR suffix, hostname or range
@@ -183,13 +538,65 @@ public class Configuration {
     }
 
     private static void parsePortSetting(String setting) {
+        Set<Integer> newPorts = new TreeSet<>();
+        for (String potentialPort : setting.trim().split(",")){
+            potentialPort = potentialPort.trim();
+            Matcher rangeMatcher = PORT_RANGE_PATTERN.matcher(potentialPort);
+            try{
+                if (rangeMatcher.matches()){
+                    int lowerBound = Integer.parseInt(rangeMatcher.group(1));
+                    int upperBound = Integer.parseInt(rangeMatcher.group(2));
+                    for (int port = lowerBound; port <= upperBound; port++){
+                        addPortIfValid(newPorts, port);
+                    }
+                } else {
+                    addPortIfValid(newPorts, Integer.parseInt(potentialPort));
+                }
+            } catch (NumberFormatException n){
+                logger.info("Could not read port: {}", potentialPort);
+            }
+        }
+        if (newPorts.isEmpty()){
+            logger.info("Could not read any port, keeping ports: {}", ports);
+            return;
+        }
+        ports.clear();
+        ports.addAll(newPorts);
+        logger.info("Found ports in config: {}", ports);
+    }
+
+    private static void addPortIfValid(Set<Integer> newPorts, int port) {
+        if (port > 0 && port <= MAX_PORT){
+            newPorts.add(port);
+        } else {
+            logger.info("Port is out of range: {}", port);
+        }
+    }
+
+    private static int parsePositiveIntegerSetting(String setting, int currentValue) {
         try{
-            int newPort = Integer.parseInt(setting.trim());
-            port = newPort;
-            logger.info("Found port in config: {}", port);
+            int newValue = Integer.parseInt(setting.trim());
+            if (newValue > 0){
+                return newValue;
+            }
+            logger.info("Value should be positive: {}", setting);
         } catch (NumberFormatException n){
             logger.info("Could not read integer value: {}", setting);
         }
+        return currentValue;
+    }
+
+    private static int parseNonNegativeIntegerSetting(String setting, int currentValue) {
+        try{
+            int newValue = Integer.parseInt(setting.trim());
+            if (newValue >= 0){
+                return newValue;
+            }
+            logger.info("Value should not be negative: {}", setting);
+        } catch (NumberFormatException n){
+            logger.info("Could not read integer value: {}", setting);
+        }
+        return currentValue;
     }
 
     private static boolean parseBinarySetting(String setting){
@@ -200,6 +607,83 @@ public class Configuration {
         return outputFileName;
     }
 
+    /**
+     * @return The format of the result file, csv or jsonl
+     */
+    public static String getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * @return The time in milliseconds after which results are in the result file at the latest, 0 for right away
+     */
+    public static int getResultFlushIntervalInMs() {
+        return resultFlushIntervalInMs;
+    }
+
+    /**
+     * @return The file to additionally write the results to in binary, or null if they should not be archived
+     */
+    public static String getArchiveFileName() {
+        return archiveFileName;
+    }
+
+    /**
+     * @return The file to record the progress of the scan in, or null if a stopped scan should not be resumed
+     */
+    public static String getJournalFileName() {
+        return journalFileName;
+    }
+
+    /**
+     * @return The file to remember endpoint fingerprints and results in, or null if all endpoints should be tested
+     */
+    public static String getFingerprintFileName() {
+        return fingerprintFileName;
+    }
+
+    /**
+     * @return The time in hours after which results are tested again, even if the endpoint did not change
+     */
+    public static int getMaxResultAgeInHours() {
+        return maxResultAgeInHours;
+    }
+
+    /**
+     * @return The file to write the metrics of the scan stages to as JSON, or null if they should not be written
+     */
+    public static String getMetricsFileName() {
+        return metricsFileName;
+    }
+
+    /**
+     * @return The file to write the metrics of the scan stages to for Prometheus, or null if they should not be written
+     */
+    public static String getPrometheusFileName() {
+        return prometheusFileName;
+    }
+
+    /**
+     * @return The time in milliseconds after which the metrics files are written again while the scan is running
+     */
+    public static int getMetricsIntervalInMs() {
+        return metricsIntervalInMs;
+    }
+
+    /**
+     * @return The time in milliseconds after which the progress of the scan is reported again, 0 for not at all
+     */
+    public static int getProgressIntervalInMs() {
+        return progressIntervalInMs;
+    }
+
+    /**
+     * @return The file to write the progress of the scan to as JSON, or null if it should only be logged
+     */
+    public static String getProgressFileName() {
+        return progressFileName;
+    }
+
     static void setOutputFileName(String newName) {
         outputFileName = newName;
     }
@@ -212,8 +696,134 @@ public class Configuration {
         return writeActivated;
     }
 
-    public static int getPort() {
-        return port;
+    /**
+     * @return The ports to try on every host, in ascending order
+     */
+    public static Set<Integer> getPorts() {
+        return Collections.unmodifiableSet(ports);
+    }
+
+    public static int getMaxParallelConnects() {
+        return maxParallelConnects;
+    }
+
+    public static int getConnectTimeoutInMs() {
+        return connectTimeoutInMs;
+    }
+
+    public static boolean isAdaptiveTiming() {
+        return adaptiveTiming;
+    }
+
+    public static int getMinConnectTimeoutInMs() {
+        return minConnectTimeoutInMs;
+    }
+
+    public static int getMaxConnectTimeoutInMs() {
+        return maxConnectTimeoutInMs;
+    }
+
+    public static int getMaxParallelDiscoveries() {
+        return maxParallelDiscoveries;
+    }
+
+    public static int getDiscoveryTimeoutInMs() {
+        return discoveryTimeoutInMs;
+    }
+
+    public static int getOperationTimeoutInMs() {
+        return operationTimeoutInMs;
+    }
+
+    static void setOperationTimeoutInMs(int newTimeout) {
+        operationTimeoutInMs = newTimeout;
+    }
+
+    public static int getMaxParallelEndpoints() {
+        return maxParallelEndpoints;
+    }
+
+    public static int getMaxParallelEndpointsPerHost() {
+        return maxParallelEndpointsPerHost;
+    }
+
+    public static int getMaxParallelLoginsPerEndpoint() {
+        return maxParallelLoginsPerEndpoint;
+    }
+
+    static void setMaxParallelLoginsPerEndpoint(int newMaximum) {
+        maxParallelLoginsPerEndpoint = newMaximum;
+    }
+
+    public static int getMaxLoginsPerSecond() {
+        return maxLoginsPerSecond;
+    }
+
+    public static boolean isStopAtFirstValidLogin() {
+        return stopAtFirstValidLogin;
+    }
+
+    public static int getMaxNodesPerBrowse() {
+        return maxNodesPerBrowse;
+    }
+
+    static void setMaxNodesPerBrowse(int newMaximum) {
+        maxNodesPerBrowse = newMaximum;
+    }
+
+    public static int getMaxParallelBrowses() {
+        return maxParallelBrowses;
+    }
+
+    public static int getMaxBrowsedNodes() {
+        return maxBrowsedNodes;
+    }
+
+    public static boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    public static boolean isStreamBrowseResults() {
+        return streamBrowseResults;
+    }
+
+    /**
+     * @return The directory to write the XML files with the browse results to, or null for the working directory
+     */
+    public static String getBrowseResultDirectory() {
+        return browseResultDirectory;
+    }
+
+    static void setBrowseResultDirectory(String newDirectory) {
+        browseResultDirectory = newDirectory;
+    }
+
+    /**
+     * @return The directory to keep browsed address spaces in, or null if they should not be kept
+     */
+    public static String getSnapshotDirectory() {
+        return snapshotDirectory;
+    }
+
+    /**
+     * @return The name of the file with additional logins, or null if there is none
+     */
+    public static String getCredentialsFileName() {
+        return credentialsFileName;
+    }
+
+    /**
+     * @return The name of the file with usernames to combine with the passwords, or null if there is none
+     */
+    public static String getUsernamesFileName() {
+        return usernamesFileName;
+    }
+
+    /**
+     * @return The name of the file with passwords to combine with the usernames, or null if there is none
+     */
+    public static String getPasswordsFileName() {
+        return passwordsFileName;
     }
 
     public static Set<InetAddress> getIpAddresses(){
@@ -0,0 +1,281 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.UserTokenType;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.UserTokenPolicy;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Login;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import de.fraunhofer.iem.opcuascanner.utils.AddressSpaceCache;
+import de.fraunhofer.iem.opcuascanner.utils.CertificateUtil;
+import de.fraunhofer.iem.opcuascanner.utils.VirtualThreads;
+
+/**
+ * Tries many logins on one endpoint at the same time.
+ *
+ * Every login is first only activated on a session, which is cheap compared to testing all privileges. Only the logins
+ * the server accepts are tested with {@link PrivilegeTester}. The logins are spread over several sessions, each of them
+ * connected once before its first login and changing its identity for the next login, see {@link EndpointSession}.
+ * The first session is the one the endpoint was already tested on anonymously. The rate of logins per endpoint is
+ * limited. If the server reports that it is busy or has too many sessions, which is also how some servers react to
+ * many failed logins, all sessions of the endpoint wait increasingly long before the next login.
+ */
+class CredentialTester {
+
+    private static final Logger logger = LogManager.getLogger(CredentialTester.class);
+
+    private static final long INITIAL_BACKOFF_IN_MS = 1000;
+    private static final long MAX_BACKOFF_IN_MS = 60000;
+
+    /**
+     * How often a login is tried again if the server was too busy to check it
+     */
+    private static final int MAX_ATTEMPTS_PER_LOGIN = 3;
+
+    /**
+     * After this many connections failing in a row the endpoint is given up, it does not let this client in at all
+     */
+    private static final int MAX_CONSECUTIVE_CONNECTION_FAILURES = 3;
+
+    private final EndpointDescription endpoint;
+    private final EndpointSession firstSession;
+    private final Iterator<Login> logins;
+    private final RateLimiter rateLimiter;
+    private final boolean stopAtFirstValidLogin;
+
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+    private final AtomicInteger consecutiveConnectionFailures = new AtomicInteger();
+
+    private long backoffInMs = 0;
+    private long nextAttemptInNanos = System.nanoTime();
+
+    private final AccessPrivileges privileges;
+    private final AddressSpaceCache cache;
+    private AccessPrivileges bestAccessPrivilegesYet = new AccessPrivileges();
+    private Login loginWithMostPrivileges = null;
+
+    /**
+     * @param endpoint The endpoint to try the logins on
+     * @param firstSession A session to the endpoint with the working certificate, used for the first lane of logins.
+     *                     It is not closed, the other sessions are opened and closed by the tester
+     * @param logins The logins to try, they are read one after the other as the sessions become free
+     * @param privileges The privileges of the endpoint, the results of all logins are added to them
+     * @param cache The address space of the endpoint, so it is browsed fully only for the first accepted login
+     */
+    CredentialTester(EndpointDescription endpoint, EndpointSession firstSession, Iterator<Login> logins,
+                     AccessPrivileges privileges, AddressSpaceCache cache) {
+        this.endpoint = endpoint;
+        this.firstSession = firstSession;
+        this.logins = logins;
+        this.privileges = privileges;
+        this.cache = cache;
+        this.rateLimiter = RateLimiter.create(Configuration.getMaxLoginsPerSecond());
+        this.stopAtFirstValidLogin = Configuration.isStopAtFirstValidLogin();
+    }
+
+    /**
+     * Tries all logins and adds the privileges they grant to the privileges of the endpoint with
+     * {@link Authentication#COMMON_CREDENTIALS}.
+     * @return The login with the most privileges, if any login was accepted
+     * @throws InterruptedException If interrupted while waiting for the logins to be tried
+     */
+    Optional<Login> testLogins() throws InterruptedException {
+        if (acceptsUsernames()) {
+            int sessions = Configuration.getMaxParallelLoginsPerEndpoint();
+            ExecutorService executor = Executors.newFixedThreadPool(sessions,
+                    VirtualThreads.newThreadFactory("login-tester", VirtualThreads.isEnabled()));
+            List<Callable<Void>> lanes = new ArrayList<>();
+            lanes.add(() -> {
+                testLoginsOnOneSession(firstSession);
+                return null;
+            });
+            for (int i = 1; i < sessions; i++) {
+                lanes.add(() -> {
+                    try (EndpointSession session = new EndpointSession(endpoint,
+                            CertificateUtil.getWorkingSelfSignedCertificate())) {
+                        testLoginsOnOneSession(session);
+                    }
+                    return null;
+                });
+            }
+            try {
+                executor.invokeAll(lanes);
+            } finally {
+                stopped.set(true);
+                executor.shutdownNow();
+            }
+        } else {
+            logger.info("Endpoint {} does not accept usernames, not trying any logins.", endpoint.getEndpointUrl());
+        }
+        privileges.setPrivilegeWasTested(Privilege.CONNECT, Authentication.COMMON_CREDENTIALS);
+        PrivilegeTester.setOtherPrivilegesToTestedIfUnableToConnect(privileges, Authentication.COMMON_CREDENTIALS);
+        return Optional.ofNullable(loginWithMostPrivileges);
+    }
+
+    private boolean acceptsUsernames() {
+        UserTokenPolicy[] policies = endpoint.getUserIdentityTokens();
+        if (policies == null) {
+            //Nothing is known about the endpoint, so just try
+            return true;
+        }
+        for (UserTokenPolicy policy : policies) {
+            if (policy.getTokenType() == UserTokenType.UserName) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void testLoginsOnOneSession(EndpointSession session) {
+        try {
+            //Connect before the first login, so each login is only an ActivateSession request on the open session
+            session.open();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            //The other sessions go on with the logins, e.g. if the server has no room for another session
+            connectionFailed(e);
+            return;
+        }
+        try {
+            Login login = nextLogin();
+            while (login != null && !stopped.get()) {
+                testLogin(session, login);
+                login = nextLogin();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Login nextLogin() {
+        synchronized (logins) {
+            try {
+                return logins.hasNext() ? logins.next() : null;
+            } catch (UncheckedIOException e) {
+                if (!stopped.getAndSet(true)) {
+                    logger.error("Could not read further logins: {}", e.getMessage());
+                }
+                return null;
+            }
+        }
+    }
+
+    private void testLogin(EndpointSession session, Login login) throws InterruptedException {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS_PER_LOGIN && !stopped.get(); attempt++) {
+            awaitBackoff();
+            rateLimiter.acquire();
+            OpcUaClient client;
+            try {
+                client = session.activate(new UsernameProvider(login.getUsername(), login.getPassword()));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                StatusCode status = UaException.extract(e).map(UaException::getStatusCode).orElse(null);
+                if (status != null && isServerBusy(status)) {
+                    logger.debug("Server at {} is busy, waiting before the next login.", endpoint.getEndpointUrl());
+                    increaseBackoff();
+                    continue;
+                }
+                if (status != null && EndpointSession.isIdentityRejected(status)) {
+                    serverAnswered();
+                } else {
+                    connectionFailed(e);
+                }
+                return;
+            }
+            serverAnswered();
+            logger.info("Login with username \"{}\" was accepted by {}.", login.getUsername(), //NOSONAR
+                    endpoint.getEndpointUrl());
+            AccessPrivileges privilegesOfLogin = PrivilegeTester.testPrivilegeOfConnectedClient(client,
+                    new AccessPrivileges(), Authentication.COMMON_CREDENTIALS, cache);
+            addResult(login, privilegesOfLogin);
+            if (stopAtFirstValidLogin) {
+                stopped.set(true);
+            }
+            return;
+        }
+    }
+
+    /**
+     * @param statusCode The status of a failed activation
+     * @return True if the server could not check the login now, but might be able to later
+     */
+    static boolean isServerBusy(StatusCode statusCode) {
+        long value = statusCode.getValue();
+        return value == StatusCodes.Bad_TooManySessions
+                || value == StatusCodes.Bad_TooManyOperations
+                || value == StatusCodes.Bad_TcpServerTooBusy
+                || value == StatusCodes.Bad_ResourceUnavailable
+                || value == StatusCodes.Bad_Timeout
+                || value == StatusCodes.Bad_RequestTimeout;
+    }
+
+    private void connectionFailed(Exception e) {
+        logger.debug("Could not try login on {}: {}", endpoint.getEndpointUrl(), e.getMessage());
+        if (consecutiveConnectionFailures.incrementAndGet() >= MAX_CONSECUTIVE_CONNECTION_FAILURES
+                && !stopped.getAndSet(true)) {
+            logger.info("Giving up logins on {}, it can not be connected.", endpoint.getEndpointUrl());
+        }
+    }
+
+    private synchronized void serverAnswered() {
+        consecutiveConnectionFailures.set(0);
+        backoffInMs = 0;
+    }
+
+    private synchronized void increaseBackoff() {
+        backoffInMs = backoffInMs == 0 ? INITIAL_BACKOFF_IN_MS : Math.min(2 * backoffInMs, MAX_BACKOFF_IN_MS);
+        nextAttemptInNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffInMs);
+    }
+
+    private void awaitBackoff() throws InterruptedException {
+        long waitInNanos;
+        synchronized (this) {
+            waitInNanos = nextAttemptInNanos - System.nanoTime();
+        }
+        if (waitInNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitInNanos);
+        }
+    }
+
+    private synchronized void addResult(Login login, AccessPrivileges privilegesOfLogin) {
+        Authentication auth = Authentication.COMMON_CREDENTIALS;
+        for (Privilege privilege : Privilege.values()) {
+            if (privilegesOfLogin.wasTested(privilege, auth)) {
+                privileges.setPrivilegeWasTested(privilege, auth);
+                if (privilegesOfLogin.isPrivilegePerAuthentication(privilege, auth)) {
+                    privileges.setPrivilegePerAuthentication(privilege, auth);
+                }
+            }
+        }
+        if (privilegesOfLogin.betterThan(bestAccessPrivilegesYet, auth)) {
+            bestAccessPrivilegesYet = privilegesOfLogin;
+            loginWithMostPrivileges = login;
+        }
+    }
+}
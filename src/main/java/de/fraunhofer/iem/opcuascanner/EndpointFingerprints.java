@@ -0,0 +1,215 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.structured.ApplicationDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.UserTokenPolicy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers a fingerprint of every tested endpoint together with its results, so that a later scan only tests
+ * endpoints which are new or changed and carries the results of the others forward.
+ *
+ * The fingerprint is a hash over what the endpoint announces about itself: url, security settings, user token
+ * policies, the application description of the server and the thumbprint of the server certificate. Servers usually
+ * announce a new certificate or product description when they are updated or reconfigured.
+ *
+ * The file has one line per endpoint with tab separated fields: the endpoint, its fingerprint, the time its results
+ * were tested in milliseconds since the epoch, and the tested and granted privilege bits for every
+ * {@link Authentication}. Results older than the maximum age are tested again even if the endpoint did not change.
+ */
+class EndpointFingerprints {
+
+    private static final Logger logger = LogManager.getLogger(EndpointFingerprints.class);
+
+    private static final String SEPARATOR = "\t";
+
+    private final Path file;
+    private final long maxAgeInMs;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private EndpointFingerprints(Path file, long maxAgeInMs) {
+        this.file = file;
+        this.maxAgeInMs = maxAgeInMs;
+    }
+
+    /**
+     * @return Fingerprints which know of no earlier scan and are not saved, so every endpoint is tested
+     */
+    static EndpointFingerprints none() {
+        return new EndpointFingerprints(null, 0);
+    }
+
+    /**
+     * @param file The file with the fingerprints of earlier scans, it does not need to exist
+     * @param maxAgeInMs The time after which results are tested again even if the endpoint did not change
+     * @return The fingerprints of earlier scans which are not too old
+     */
+    static EndpointFingerprints load(Path file, long maxAgeInMs) {
+        EndpointFingerprints fingerprints = new EndpointFingerprints(file, maxAgeInMs);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                fingerprints.parse(line);
+                line = reader.readLine();
+            }
+            logger.info("Loaded {} endpoint fingerprints from {}", fingerprints.entries.size(), file);
+        } catch (NoSuchFileException e) {
+            logger.info("No endpoint fingerprints at {} yet, testing all endpoints.", file);
+        } catch (IOException e) {
+            logger.error("Could not read endpoint fingerprints, testing all endpoints: {}", e.getMessage());
+        }
+        return fingerprints;
+    }
+
+    private void parse(String line) {
+        String[] fields = line.split(SEPARATOR);
+        try {
+            AccessPrivileges privileges = new AccessPrivileges();
+            for (int i = 3; i + 2 < fields.length; i += 3) {
+                privileges.setPrivilegesFromBits(Authentication.valueOf(fields[i]), Integer.parseInt(fields[i + 1]),
+                        Integer.parseInt(fields[i + 2]));
+            }
+            entries.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2]), privileges));
+        } catch (RuntimeException e) { //NOSONAR
+            logger.debug("Ignoring invalid endpoint fingerprint: {}", line);
+        }
+    }
+
+    /**
+     * @param endpoint The endpoint as announced by the server
+     * @return A hash over everything the endpoint announces about itself
+     */
+    static String fingerprint(EndpointDescription endpoint) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        putString(hasher, endpoint.getEndpointUrl());
+        putString(hasher, endpoint.getSecurityPolicyUri());
+        putString(hasher, String.valueOf(endpoint.getSecurityMode()));
+        putString(hasher, String.valueOf(endpoint.getSecurityLevel()));
+        putString(hasher, endpoint.getTransportProfileUri());
+        UserTokenPolicy[] policies = endpoint.getUserIdentityTokens();
+        for (int i = 0; policies != null && i < policies.length; i++) {
+            putString(hasher, policies[i].getPolicyId());
+            putString(hasher, String.valueOf(policies[i].getTokenType()));
+            putString(hasher, policies[i].getSecurityPolicyUri());
+        }
+        ApplicationDescription server = endpoint.getServer();
+        if (server != null) {
+            putString(hasher, server.getApplicationUri());
+            putString(hasher, server.getProductUri());
+            putString(hasher, server.getApplicationName() != null ? server.getApplicationName().getText() : null);
+        }
+        putString(hasher, getCertificateThumbprint(endpoint.getServerCertificate()));
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @param certificate The DER encoded certificate
+     * @return The SHA-1 thumbprint of the certificate, as OPC UA uses it to identify certificates, or null if none
+     */
+    static String getCertificateThumbprint(ByteString certificate) {
+        if (certificate == null || certificate.isNull()) {
+            return null;
+        }
+        return Hashing.sha1().hashBytes(certificate.bytesOrEmpty()).toString();
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        //The length keeps adjacent fields apart, so moving a character from one field to the next changes the hash
+        String nonNull = value == null ? "" : value;
+        hasher.putInt(nonNull.length()).putString(nonNull, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param endpointKey The endpoint url with security details
+     * @param fingerprint The fingerprint of the endpoint in this scan
+     * @param now The current time in milliseconds since the epoch
+     * @return A copy of the earlier results if the endpoint did not change and they are not too old, otherwise null
+     */
+    synchronized AccessPrivileges getUnchangedResults(String endpointKey, String fingerprint, long now) {
+        Entry entry = entries.get(endpointKey);
+        if (entry == null || !entry.fingerprint.equals(fingerprint) || now - entry.testedAt > maxAgeInMs) {
+            return null;
+        }
+        return entry.privileges.copy();
+    }
+
+    /**
+     * @param endpointKey The endpoint url with security details
+     * @param fingerprint The fingerprint of the endpoint in this scan
+     * @param privileges The results of testing the endpoint
+     * @param testedAt The time the endpoint was tested in milliseconds since the epoch
+     */
+    synchronized void record(String endpointKey, String fingerprint, AccessPrivileges privileges, long testedAt) {
+        entries.put(endpointKey, new Entry(fingerprint, testedAt, privileges.copy()));
+    }
+
+    /**
+     * Writes all fingerprints which are not too old, replacing the file at once so it is never half written.
+     * @param now The current time in milliseconds since the epoch
+     */
+    synchronized void save(long now) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Path absoluteFile = file.toAbsolutePath();
+            Path temporaryFile = Files.createTempFile(absoluteFile.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                        if (now - entry.getValue().testedAt <= maxAgeInMs) {
+                            writer.write(format(entry.getKey(), entry.getValue()));
+                            writer.newLine();
+                        }
+                    }
+                }
+                Files.move(temporaryFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            logger.error("Could not save endpoint fingerprints: {}", e.getMessage());
+        }
+    }
+
+    private static String format(String endpointKey, Entry entry) {
+        StringBuilder line = new StringBuilder();
+        line.append(endpointKey).append(SEPARATOR).append(entry.fingerprint).append(SEPARATOR).append(entry.testedAt);
+        for (Authentication auth : Authentication.values()) {
+            line.append(SEPARATOR).append(auth.name())
+                    .append(SEPARATOR).append(entry.privileges.getTestedBits(auth))
+                    .append(SEPARATOR).append(entry.privileges.getGrantedBits(auth));
+        }
+        return line.toString();
+    }
+
+    private static class Entry {
+        private final String fingerprint;
+        private final long testedAt;
+        private final AccessPrivileges privileges;
+
+        private Entry(String fingerprint, long testedAt, AccessPrivileges privileges) {
+            this.fingerprint = fingerprint;
+            this.testedAt = testedAt;
+            this.privileges = privileges;
+        }
+    }
+}
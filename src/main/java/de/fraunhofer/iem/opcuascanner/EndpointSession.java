@@ -0,0 +1,280 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import java.nio.ByteBuffer;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.OpcUaSession;
+import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfig;
+import org.eclipse.milo.opcua.sdk.client.api.identity.AnonymousProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.IdentityProvider;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.channel.ClientSecureChannel;
+import org.eclipse.milo.opcua.stack.core.security.SecurityAlgorithm;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.ApplicationType;
+import org.eclipse.milo.opcua.stack.core.types.structured.ActivateSessionRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.ActivateSessionResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ApplicationDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.CloseSessionRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CreateSessionRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CreateSessionResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.SignatureData;
+import org.eclipse.milo.opcua.stack.core.types.structured.SignedSoftwareCertificate;
+import org.eclipse.milo.opcua.stack.core.types.structured.UserIdentityToken;
+import org.eclipse.milo.opcua.stack.core.util.NonceUtil;
+import org.eclipse.milo.opcua.stack.core.util.SignatureUtil;
+import org.jooq.lambda.tuple.Tuple2;
+
+import de.fraunhofer.iem.opcuascanner.utils.CertificateUtil;
+
+/**
+ * A connection to one endpoint with one client certificate, which is used for several user identities one after the
+ * other.
+ *
+ * The secure channel is opened once, together with a session which is only used to check identities. Every identity
+ * is activated on that session with an ActivateSession request, which avoids the asymmetric handshake of a new secure
+ * channel for every identity. A rejected identity leaves the session and the channel as they are, so the next identity
+ * is checked on them as well. The client only keeps sessions which were activated when they were created, so the
+ * session of the {@link OpcUaClient} which tests the privileges is only created for the first accepted identity, on
+ * the same secure channel, and later accepted identities are activated on it. If the server does not allow changing
+ * the identity of a session, or the connection broke, the endpoint is connected again.
+ */
+class EndpointSession implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(EndpointSession.class);
+
+    private static final int CLIENT_NONCE_LENGTH = 32;
+
+    private final EndpointDescription endpoint;
+    private final X509Certificate certificate;
+    private final SwitchableIdentityProvider identity = new SwitchableIdentityProvider();
+
+    private OpcUaClient client = null;
+    private NodeId loginSessionToken = null;
+    private ByteString loginSessionNonce = null;
+    private boolean clientSessionActive = false;
+    private int openedConnections = 0;
+
+    /**
+     * @param endpoint The endpoint to connect to
+     * @param certificate The client certificate to use for the secure channel
+     */
+    EndpointSession(EndpointDescription endpoint, X509Certificate certificate) {
+        this.endpoint = endpoint;
+        this.certificate = certificate;
+    }
+
+    /**
+     * Opens the secure channel and the session for checking identities, unless they are open already.
+     * @throws Exception If the endpoint could not be connected
+     */
+    void open() throws Exception {
+        if (client != null) {
+            return;
+        }
+        OpcUaClientConfig config = OpcUaClientConfig.builder()
+                .setEndpoint(endpoint)
+                .setIdentityProvider(identity)
+                .setKeyPair(CertificateUtil.getOrGenerateRsaKeyPair())
+                .setCertificate(certificate)
+                .setApplicationUri(CertificateUtil.APPLICATION_URI)
+                .build();
+        client = new OpcUaClient(config);
+        openedConnections++;
+        try {
+            client.getStackClient().connect().get();
+            createLoginSession();
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Makes the given identity the active identity of the session, connecting first if there is no session yet.
+     * @param identity The user identity to activate
+     * @return The connected client, acting with the given identity
+     * @throws Exception If the identity was not accepted or the endpoint could not be connected
+     */
+    OpcUaClient activate(IdentityProvider identity) throws Exception {
+        open();
+        try {
+            loginSessionNonce = activateSession(loginSessionToken, loginSessionNonce, identity);
+        } catch (UaException | ExecutionException e) {
+            if (UaException.extract(e).map(UaException::getStatusCode).filter(EndpointSession::isIdentityRejected)
+                    .isPresent()) {
+                //The session itself is fine, only this identity is not allowed to use it
+                throw e;
+            }
+            logger.debug("Could not activate identity on session to {}, opening a new session: {}",
+                    endpoint.getEndpointUrl(), e.getMessage());
+            renewLoginSession();
+            loginSessionNonce = activateSession(loginSessionToken, loginSessionNonce, identity);
+        }
+        return clientActingAs(identity);
+    }
+
+    /**
+     * @return The number of secure channels opened so far
+     */
+    int getOpenedConnections() {
+        return openedConnections;
+    }
+
+    /**
+     * Switches the session of the client to an identity which the server accepted on the login session.
+     */
+    private OpcUaClient clientActingAs(IdentityProvider accepted) throws Exception {
+        this.identity.current = accepted;
+        if (clientSessionActive) {
+            try {
+                OpcUaSession session = client.getSession().get();
+                session.setServerNonce(activateSession(session.getAuthenticationToken(), session.getServerNonce(),
+                        accepted));
+                return client;
+            } catch (UaException | ExecutionException e) {
+                //The server accepts the identity, but not as a change of the identity of a session
+                logger.debug("Could not change identity on session to {}, connecting again: {}",
+                        endpoint.getEndpointUrl(), e.getMessage());
+                close();
+                open();
+            }
+        }
+        //Creates the session of the client on the open secure channel, with the current identity
+        client.connect().get();
+        clientSessionActive = true;
+        return client;
+    }
+
+    private void createLoginSession() throws Exception {
+        OpcUaClientConfig config = client.getConfig();
+        CreateSessionRequest request = new CreateSessionRequest(
+                client.newRequestHeader(),
+                new ApplicationDescription(config.getApplicationUri(), config.getProductUri(),
+                        config.getApplicationName(), ApplicationType.Client, null, null, null),
+                endpoint.getServer() != null ? endpoint.getServer().getApplicationUri() : null,
+                endpoint.getEndpointUrl(),
+                config.getSessionName().get(),
+                NonceUtil.generateNonce(CLIENT_NONCE_LENGTH),
+                ByteString.of(certificate.getEncoded()),
+                config.getSessionTimeout().doubleValue(),
+                config.getMaxResponseMessageSize());
+        CreateSessionResponse response = client.<CreateSessionResponse>sendRequest(request).get();
+        loginSessionToken = response.getAuthenticationToken();
+        loginSessionNonce = response.getServerNonce();
+    }
+
+    /**
+     * Replaces the login session after the server closed it or refused to change its identity, on the same secure
+     * channel if it is still open.
+     */
+    private void renewLoginSession() throws Exception {
+        closeLoginSession();
+        try {
+            createLoginSession();
+        } catch (ExecutionException e) {
+            logger.debug("Could not open a new session to {}, connecting again: {}", endpoint.getEndpointUrl(),
+                    e.getMessage());
+            close();
+            open();
+        }
+    }
+
+    private void closeLoginSession() {
+        if (loginSessionToken != null) {
+            //Nobody waits for the answer, the server also drops the session once the channel is closed
+            client.sendRequest(new CloseSessionRequest(client.newRequestHeader(loginSessionToken), true));
+            loginSessionToken = null;
+            loginSessionNonce = null;
+        }
+    }
+
+    /**
+     * Sends an ActivateSession request for the identity.
+     * @return The nonce the next activation of the session has to be signed with
+     */
+    private ByteString activateSession(NodeId authenticationToken, ByteString serverNonce,
+                                       IdentityProvider identity) throws Exception {
+        ClientSecureChannel channel = client.getStackClient().getChannelFuture().get();
+        Tuple2<UserIdentityToken, SignatureData> token = identity.getIdentityToken(endpoint, serverNonce);
+        ActivateSessionRequest request = new ActivateSessionRequest(
+                client.newRequestHeader(authenticationToken),
+                buildClientSignature(channel, serverNonce),
+                new SignedSoftwareCertificate[0],
+                new String[0],
+                ExtensionObject.encode(token.v1()),
+                token.v2());
+        try {
+            ActivateSessionResponse response = client.<ActivateSessionResponse>sendRequest(request).get();
+            return response.getServerNonce();
+        } catch (ExecutionException e) {
+            throw UaException.extract(e).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Proves to the server that the client holds the private key of the certificate of the secure channel, like the
+     * client does when activating the session for the first time.
+     */
+    private static SignatureData buildClientSignature(ClientSecureChannel channel, ByteString serverNonce)
+            throws UaException {
+        if (channel.getSecurityPolicy() == SecurityPolicy.None) {
+            return new SignatureData();
+        }
+        SecurityAlgorithm algorithm = channel.getSecurityPolicy().getAsymmetricSignatureAlgorithm();
+        byte[] serverCertificate = channel.getRemoteCertificateBytes().bytesOrEmpty();
+        byte[] nonce = serverNonce.bytesOrEmpty();
+        byte[] signature = SignatureUtil.sign(algorithm, channel.getKeyPair().getPrivate(),
+                ByteBuffer.wrap(serverCertificate), ByteBuffer.wrap(nonce));
+        return new SignatureData(algorithm.getUri(), ByteString.of(signature));
+    }
+
+    /**
+     * @param statusCode The status of a failed ActivateSession request
+     * @return True if the server refused the identity, false if the session could not be used at all
+     */
+    static boolean isIdentityRejected(StatusCode statusCode) {
+        long value = statusCode.getValue();
+        return value == StatusCodes.Bad_IdentityTokenInvalid
+                || value == StatusCodes.Bad_IdentityTokenRejected
+                || value == StatusCodes.Bad_UserAccessDenied
+                || value == StatusCodes.Bad_UserSignatureInvalid;
+    }
+
+    /**
+     * Closes the current connection, if any. A later activation connects again.
+     */
+    @Override
+    public void close() {
+        if (client != null) {
+            closeLoginSession();
+            client.disconnect();
+            client = null;
+            clientSessionActive = false;
+        }
+    }
+
+    /**
+     * The identity of the session of the client, which is switched to every accepted identity before the session is
+     * created
+     */
+    private static class SwitchableIdentityProvider implements IdentityProvider {
+        private IdentityProvider current = new AnonymousProvider();
+
+        @Override
+        public Tuple2<UserIdentityToken, SignatureData> getIdentityToken(EndpointDescription endpoint,
+                                                                         ByteString serverNonce) throws Exception {
+            return current.getIdentityToken(endpoint, serverNonce);
+        }
+    }
+}
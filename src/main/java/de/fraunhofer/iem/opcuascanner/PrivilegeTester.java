@@ -1,13 +1,20 @@
 package de.fraunhofer.iem.opcuascanner;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
 import de.fraunhofer.iem.opcuascanner.logic.Authentication;
 import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import de.fraunhofer.iem.opcuascanner.utils.AddressSpaceCache;
+import de.fraunhofer.iem.opcuascanner.utils.AddressSpaceGraph;
 import de.fraunhofer.iem.opcuascanner.utils.BrowseUtil;
+import de.fraunhofer.iem.opcuascanner.utils.FutureUtil;
 import de.fraunhofer.iem.opcuascanner.utils.OpcuaUtil;
+import de.fraunhofer.iem.opcuascanner.utils.ScanMetrics;
+import de.fraunhofer.iem.opcuascanner.utils.StageMetrics;
 import org.apache.logging.log4j.LogManager;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.IdentityProvider;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
@@ -15,12 +22,11 @@ import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 import org.eclipse.milo.opcua.stack.core.types.structured.*;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-
-import static java.lang.Thread.sleep;
+import java.util.function.Supplier;
 
 class PrivilegeTester {
 
@@ -31,120 +37,193 @@ class PrivilegeTester {
     }
 
     /**
-     * Tries to connect the client and if succeeding tries to read and write to the server.
+     * Tries to activate the identity on the session and if succeeding tries to read and write to the server.
      * Results are written to the {@link AccessPrivileges} privileges with the {@link Authentication} auth.
      *
-     * There is not check if the Authentication in the client is the same as the Authentication in auth, so
+     * The session stays connected afterwards, so the next identity can be activated on it without a new handshake.
+     * There is no check if the identity is the one meant by auth.
      *
-     * @param client The client that will be connected. Endpoint to connect to is contained.
+     * @param session The session to the endpoint to test, it is connected if it is not yet.
+     * @param identity The user identity to activate on the session.
      * @param privileges The AccessPrivileges to add the results to.
      * @param auth The Authentication method which to store the results in the privileges
+     * @param cache The address space of the endpoint, shared by all identities tested on it
      * @return The updated AccessPrivileges
      */
-    static AccessPrivileges testPrivilege(OpcUaClient client, AccessPrivileges privileges, Authentication auth){
+    static AccessPrivileges testPrivilege(EndpointSession session, IdentityProvider identity,
+                                          AccessPrivileges privileges, Authentication auth,
+                                          AddressSpaceCache cache){
+        OpcUaClient client = null;
+        StageMetrics connecting = ScanMetrics.privilege(auth, Privilege.CONNECT);
+        long startedAt = connecting.start();
+        Exception error = null;
         try{
-            client.connect().get();
-            privileges.setPrivilegePerAuthentication(Privilege.CONNECT, auth);
+            client = session.activate(identity);
+        }
+        catch (InterruptedException e){
+            error = e;
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e){
+            //If we can't connect that's fine
+            error = e;
+            logger.debug("Exception while trying to connect: {}", e.getMessage());
+        }
+        connecting.finish(startedAt, error);
+        if (client == null){
+            privileges.setPrivilegeWasTested(Privilege.CONNECT, auth);
+            setOtherPrivilegesToTestedIfUnableToConnect(privileges, auth);
+            return privileges;
+        }
+        return testPrivilegeOfConnectedClient(client, privileges, auth, cache);
+    }
 
-            //Now try to read
-            privileges.setPrivilegeWasTested(Privilege.READ, auth);
-            OpcuaUtil.readServerStateAndTime(client).thenAccept(values -> 
-                    privileges.setPrivilegePerAuthentication(Privilege.READ, auth));
-            //Give the client some time to read
-            sleep(50);
+    /**
+     * Tries to read and write to the server with a client whose identity was already accepted by the server.
+     * Results are written to the {@link AccessPrivileges} privileges with the {@link Authentication} auth.
+     *
+     * Reading is tried while browsing, writing, deleting and calling are tried one after the other, as each of them
+     * may change what the next one finds. Every request is given up after the operation timeout, and all results are
+     * in the privileges when this returns.
+     *
+     * @param client The connected client.
+     * @param privileges The AccessPrivileges to add the results to.
+     * @param auth The Authentication method which to store the results in the privileges
+     * @param cache The address space of the endpoint, shared by all identities tested on it
+     * @return The updated AccessPrivileges
+     */
+    static AccessPrivileges testPrivilegeOfConnectedClient(OpcUaClient client, AccessPrivileges privileges,
+                                                           Authentication auth, AddressSpaceCache cache){
+        privileges.setPrivilegeWasTested(Privilege.CONNECT, auth);
+        privileges.setPrivilegePerAuthentication(Privilege.CONNECT, auth);
+        try{
+            //Read while browsing, both only look at the server
+            CompletableFuture<Void> reading = probe(privileges, auth, Privilege.READ,
+                    () -> tryReading(client));
 
             //Now browse the servers information model
-            Map<NodeId,NodeId> methodNodes = BrowseUtil.tryBrowsing(privileges, auth, client);
+            AddressSpaceGraph addressSpace = BrowseUtil.tryBrowsing(privileges, auth, client, cache);
 
+            CompletableFuture<Void> probes = reading;
             if (Configuration.isWriteActivated()){
-                tryWriting(privileges, auth, client);
+                probes = probes.thenCompose(ignored -> probe(privileges, auth, Privilege.WRITE,
+                        () -> tryWriting(client)));
             }
             if (Configuration.isDeleteActivated()){
                 //Now try to delete the same thing we wrote
-                tryDeleting(privileges, auth, client);
+                probes = probes.thenCompose(ignored -> probe(privileges, auth, Privilege.DELETE,
+                        () -> tryDeleting(client)));
             }
             if (Configuration.isCallActivated()){
-                tryCalling(privileges, auth, client, methodNodes);
+                probes = probes.thenCompose(ignored -> probe(privileges, auth, Privilege.CALL,
+                        () -> tryCalling(client, addressSpace)));
             }
+            //Every probe completes by its timeout at the latest
+            probes.get();
         }
-        catch (Exception e){
-            //If we can't connect that's fine
-            logger.debug("Exception while trying privileges: ", e.getMessage());
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
         }
-        finally {
-            client.disconnect();
+        catch (Exception e){
+            //If a privilege is not granted that's fine
+            logger.debug("Exception while trying privileges: {}", e.getMessage());
         }
-        privileges.setPrivilegeWasTested(Privilege.CONNECT, auth);
-        setOtherPrivilegesToTestedIfUnableToConnect(privileges, auth);
         return  privileges;
     }
 
-    private static void tryCalling(AccessPrivileges privileges, Authentication auth, OpcUaClient client,
-                                   Map<NodeId, NodeId> methodNodes) throws ExecutionException, InterruptedException {
-        privileges.setPrivilegeWasTested(Privilege.CALL, auth);
-
-        if (!methodNodes.isEmpty()){
-            List<CallMethodRequest> requests = new ArrayList<>();
-            Variant[] parameters = new Variant[0];
-            for (Map.Entry<NodeId, NodeId> objectWithMethod : methodNodes.entrySet()){
-                logger.info("Found method with id {} on object with id {}.", objectWithMethod.getValue(),
-                        objectWithMethod.getKey());
-                CallMethodRequest request = new CallMethodRequest(objectWithMethod.getKey(),
-                        objectWithMethod.getValue(), parameters);
-                requests.add(request);
+    /**
+     * Marks the privilege as tested and starts the operation, which grants the privilege if it completes with true
+     * before the operation timeout.
+     * @return A future which completes normally once the privilege is known to be granted or not
+     */
+    private static CompletableFuture<Void> probe(AccessPrivileges privileges, Authentication auth, Privilege privilege,
+                                                 Supplier<CompletableFuture<Boolean>> operation){
+        privileges.setPrivilegeWasTested(privilege, auth);
+        StageMetrics metrics = ScanMetrics.privilege(auth, privilege);
+        long startedAt = metrics.start();
+        CompletableFuture<Boolean> request;
+        try {
+            request = operation.get();
+        } catch (RuntimeException e) {
+            request = new CompletableFuture<>();
+            request.completeExceptionally(e);
+        }
+        return FutureUtil.withTimeout(request, Configuration.getOperationTimeoutInMs()).handle((granted, error) -> {
+            metrics.finish(startedAt, error);
+            if (error != null){
+                logger.debug("Trying {} failed: {}", privilege, error.getMessage());
+            } else if (Boolean.TRUE.equals(granted)){
+                privileges.setPrivilegePerAuthentication(privilege, auth);
             }
+            return null;
+        });
+    }
 
+    private static CompletableFuture<Boolean> tryReading(OpcUaClient client) {
+        return OpcuaUtil.readServerStateAndTime(client).thenApply(values -> {
+            for (DataValue value : values){
+                if (value.getStatusCode() == null || value.getStatusCode().isGood()){
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
 
-            CompletableFuture<CallResponse> f = client.call(requests);
-
-            CallResponse response = f.get();
+    /**
+     * Calls one method of every object which has methods, in requests of at most maxNodesPerBrowse methods. Once a
+     * request called a method, the privilege is granted and the remaining objects are left alone.
+     */
+    static CompletableFuture<Boolean> tryCalling(OpcUaClient client, AddressSpaceGraph addressSpace) {
+        List<CallMethodRequest> requests = new ArrayList<>();
+        Set<NodeId> objectsWithMethod = new HashSet<>();
+        Variant[] parameters = new Variant[0];
+        addressSpace.forEachMethod((objectId, methodId) -> {
+            if (objectsWithMethod.add(objectId)){
+                logger.info("Found method with id {} on object with id {}.", methodId, objectId);
+                requests.add(new CallMethodRequest(objectId, methodId, parameters));
+            }
+        });
+        CompletableFuture<Boolean> called = CompletableFuture.completedFuture(false);
+        for (List<CallMethodRequest> batch : Lists.partition(requests, Configuration.getMaxNodesPerBrowse())){
+            called = called.thenCompose(calledBefore -> calledBefore ? CompletableFuture.completedFuture(true)
+                    : tryCallingBatch(client, batch));
+        }
+        return called;
+    }
 
+    private static CompletableFuture<Boolean> tryCallingBatch(OpcUaClient client, List<CallMethodRequest> requests) {
+        return client.call(requests).thenApply(response -> {
+            boolean called = false;
             CallMethodResult[] results = response.getResults();
-            if (results != null && results.length >0) {
-                for (CallMethodResult result : results){
-                    if (result.getStatusCode().isGood()){
-                        privileges.setPrivilegePerAuthentication(Privilege.CALL, auth);
-                        logger.info("Successfully called function {} on {}", result.getTypeId(),
-                                client.getStackClient().getEndpointUrl());
-                    }
+            for (int i = 0; results != null && i < results.length; i++){
+                if (results[i].getStatusCode().isGood()){
+                    called = true;
+                    logger.info("Successfully called function {} on {}", requests.get(i).getMethodId(),
+                            client.getStackClient().getEndpointUrl());
                 }
             }
-        }
+            return called;
+        });
     }
 
-    private static void tryDeleting(AccessPrivileges privileges, Authentication auth, OpcUaClient client)
-            throws ExecutionException, InterruptedException {
-        privileges.setPrivilegeWasTested(Privilege.DELETE, auth);
+    private static CompletableFuture<Boolean> tryDeleting(OpcUaClient client) {
         NodeId nodeId = new NodeId(2, "HelloWorld/ScalarTypes/Int32");
         DeleteNodesItem deleteNodesItem = new DeleteNodesItem(nodeId, true);
         List<DeleteNodesItem> deleteNodesItems = ImmutableList.of(deleteNodesItem);
 
-        // delete asynchronously....
-        CompletableFuture<DeleteNodesResponse> f = client.deleteNodes(deleteNodesItems);
-
-        // ...but block for the result
-        DeleteNodesResponse response= f.get();
-        StatusCode[] results = response.getResults();
-        if (results != null && results.length >0 && results[0].isGood()) {
-            privileges.setPrivilegePerAuthentication(Privilege.DELETE, auth);
-        }
+        return client.deleteNodes(deleteNodesItems).thenApply(response -> {
+            StatusCode[] results = response.getResults();
+            return results != null && results.length > 0 && results[0].isGood();
+        });
     }
 
-    private static void tryWriting(AccessPrivileges privileges, Authentication auth, OpcUaClient client)
-            throws ExecutionException, InterruptedException {
-        privileges.setPrivilegeWasTested(Privilege.WRITE, auth);
+    private static CompletableFuture<Boolean> tryWriting(OpcUaClient client) {
         List<NodeId> nodeIds = ImmutableList.of(new NodeId(2, "HelloWorld/ScalarTypes/Int32"));
         Variant v = new Variant(0);
         DataValue dv = new DataValue(v, null, null);
 
-        // write asynchronously....
-        CompletableFuture<List<StatusCode>> f = client.writeValues(nodeIds, ImmutableList.of(dv));
-
-        // ...but block for the result
-        StatusCode status = f.get().get(0);
-        if (status.isGood()) {
-            privileges.setPrivilegePerAuthentication(Privilege.WRITE, auth);
-        }
+        return client.writeValues(nodeIds, ImmutableList.of(dv)).thenApply(statuses -> statuses.get(0).isGood());
     }
 
     static void setOtherPrivilegesToTestedIfUnableToConnect(AccessPrivileges access, Authentication auth) {
@@ -0,0 +1,379 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A compact binary file of scan results, for keeping the results of many scans and querying them later.
+ *
+ * The results are stored in blocks of up to {@link #ROWS_PER_BLOCK} endpoints, each compressed on its own. Within a
+ * block the results are stored in columns: first the tested privileges of all endpoints, then the granted ones, each
+ * as one long per endpoint with a bit per {@link Privilege} and {@link Authentication}. Then follow the endpoints,
+ * split into url and security details, which are looked up in a dictionary of the distinct strings of the block.
+ *
+ * Before every block, the number of endpoints, the union of the tested and granted bits of all its endpoints and its
+ * length are stored uncompressed. A query for a privilege skips every block in which no endpoint has it without
+ * decompressing the block, and only decodes the endpoints which match.
+ */
+public class ResultArchive {
+
+    static final int ROWS_PER_BLOCK = 4096;
+
+    private static final int MAGIC = 0x4F554152;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int BLOCK_HEADER_SIZE = 3 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int PRIVILEGES = Privilege.values().length;
+
+    private ResultArchive() {
+        //Do not instantiate this, this a util class.
+        //Private constructor hides implicit public one
+    }
+
+    /**
+     * @param privilege The privilege
+     * @param auth The authentication
+     * @return The bit which stands for the privilege per the authentication in the tested and granted bits
+     */
+    public static long bit(Privilege privilege, Authentication auth) {
+        return 1L << (auth.ordinal() * PRIVILEGES + privilege.ordinal());
+    }
+
+    /**
+     * @param file The file to write, it is replaced if it exists
+     * @return A writer for the results of single endpoints
+     * @throws IOException If the file can not be opened
+     */
+    static Writer openWriter(Path file) throws IOException {
+        return new Writer(Files.newOutputStream(file));
+    }
+
+    /**
+     * @param file The file to read
+     * @return A reader for the results in the file
+     * @throws IOException If the file can not be opened or is no result archive of this version
+     */
+    public static Reader openReader(Path file) throws IOException {
+        return new Reader(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    /**
+     * Collects results until a block is full, then compresses and writes the block. Can be used from several
+     * threads.
+     */
+    static class Writer implements Closeable {
+        private final DataOutputStream output;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final List<String> endpoints = new ArrayList<>();
+        private final long[] tested = new long[ROWS_PER_BLOCK];
+        private final long[] granted = new long[ROWS_PER_BLOCK];
+
+        private Writer(OutputStream output) throws IOException {
+            this.output = new DataOutputStream(new BufferedOutputStream(output));
+            try {
+                this.output.writeInt(MAGIC);
+                this.output.writeInt(VERSION);
+                this.output.writeInt(PRIVILEGES);
+                this.output.writeInt(Authentication.values().length);
+            } catch (IOException e) {
+                this.output.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @param endpoint The endpoint url with security details
+         * @param privileges The final results for the endpoint
+         * @throws IOException If a full block could not be written
+         */
+        synchronized void write(String endpoint, AccessPrivileges privileges) throws IOException {
+            int row = endpoints.size();
+            tested[row] = 0;
+            granted[row] = 0;
+            for (Authentication auth : Authentication.values()) {
+                tested[row] |= (long) privileges.getTestedBits(auth) << (auth.ordinal() * PRIVILEGES);
+                granted[row] |= (long) privileges.getGrantedBits(auth) << (auth.ordinal() * PRIVILEGES);
+            }
+            endpoints.add(endpoint);
+            if (endpoints.size() == ROWS_PER_BLOCK) {
+                writeBlock();
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            int rows = endpoints.size();
+            long testedUnion = 0;
+            long grantedUnion = 0;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream block = new DataOutputStream(bytes);
+            for (int row = 0; row < rows; row++) {
+                testedUnion |= tested[row];
+                block.writeLong(tested[row]);
+            }
+            for (int row = 0; row < rows; row++) {
+                grantedUnion |= granted[row];
+                block.writeLong(granted[row]);
+            }
+            writeEndpoints(block);
+
+            byte[] uncompressed = bytes.toByteArray();
+            deflater.reset();
+            deflater.setInput(uncompressed);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(uncompressed.length / 4);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+
+            output.writeInt(rows);
+            output.writeLong(testedUnion);
+            output.writeLong(grantedUnion);
+            output.writeInt(uncompressed.length);
+            output.writeInt(compressed.size());
+            compressed.writeTo(output);
+            endpoints.clear();
+        }
+
+        /**
+         * Writes the dictionary of the distinct urls and security details of the block, then the index of the url
+         * and the security details of every endpoint.
+         */
+        private void writeEndpoints(DataOutputStream block) throws IOException {
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            int[] indices = new int[2 * endpoints.size()];
+            for (int row = 0; row < endpoints.size(); row++) {
+                String endpoint = endpoints.get(row);
+                int securitySeparator = endpoint.indexOf('#');
+                String url = securitySeparator < 0 ? endpoint : endpoint.substring(0, securitySeparator);
+                String security = securitySeparator < 0 ? "" : endpoint.substring(securitySeparator);
+                indices[2 * row] = dictionary.computeIfAbsent(url, s -> dictionary.size());
+                indices[2 * row + 1] = dictionary.computeIfAbsent(security, s -> dictionary.size());
+            }
+            block.writeInt(dictionary.size());
+            for (String string : dictionary.keySet()) {
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                block.writeInt(encoded.length);
+                block.write(encoded);
+            }
+            for (int index : indices) {
+                block.writeInt(index);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                if (!endpoints.isEmpty()) {
+                    writeBlock();
+                }
+            } finally {
+                deflater.end();
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the results of an archive, skipping blocks which can not contain what is looked for.
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+
+        private Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            try {
+                ByteBuffer header = read(HEADER_SIZE);
+                if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != PRIVILEGES
+                        || header.getInt() != Authentication.values().length) {
+                    throw new IOException("Not a result archive of this version.");
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @param privilege The privilege
+         * @param auth The authentication
+         * @return All endpoints which granted the privilege per the authentication, in the order they were written
+         * @throws IOException If the archive can not be read
+         */
+        public List<String> findEndpointsGranting(Privilege privilege, Authentication auth) throws IOException {
+            return findEndpoints(0, bit(privilege, auth));
+        }
+
+        /**
+         * @param testedMask The bits, as by {@link #bit(Privilege, Authentication)}, which must all be tested
+         * @param grantedMask The bits which must all be granted
+         * @return All endpoints with all the bits, in the order they were written
+         * @throws IOException If the archive can not be read
+         */
+        public List<String> findEndpoints(long testedMask, long grantedMask) throws IOException {
+            List<String> found = new ArrayList<>();
+            forEachBlock(testedMask, grantedMask, block -> {
+                for (int row = 0; row < block.rows; row++) {
+                    if ((block.getTested(row) & testedMask) == testedMask
+                            && (block.getGranted(row) & grantedMask) == grantedMask) {
+                        found.add(block.getEndpoint(row));
+                    }
+                }
+            });
+            return found;
+        }
+
+        /**
+         * @return The results of all endpoints, in the order they were written
+         * @throws IOException If the archive can not be read
+         */
+        public Map<String, AccessPrivileges> readAll() throws IOException {
+            Map<String, AccessPrivileges> results = new LinkedHashMap<>();
+            forEachBlock(0, 0, block -> {
+                for (int row = 0; row < block.rows; row++) {
+                    AccessPrivileges privileges = new AccessPrivileges();
+                    for (Authentication auth : Authentication.values()) {
+                        int shift = auth.ordinal() * PRIVILEGES;
+                        int mask = (1 << PRIVILEGES) - 1;
+                        privileges.setPrivilegesFromBits(auth, (int) (block.getTested(row) >>> shift) & mask,
+                                (int) (block.getGranted(row) >>> shift) & mask);
+                    }
+                    results.put(block.getEndpoint(row), privileges);
+                }
+            });
+            return results;
+        }
+
+        private void forEachBlock(long testedMask, long grantedMask, BlockConsumer consumer) throws IOException {
+            channel.position(HEADER_SIZE);
+            while (channel.position() < channel.size()) {
+                ByteBuffer blockHeader = read(BLOCK_HEADER_SIZE);
+                int rows = blockHeader.getInt();
+                long testedUnion = blockHeader.getLong();
+                long grantedUnion = blockHeader.getLong();
+                int uncompressedLength = blockHeader.getInt();
+                int compressedLength = blockHeader.getInt();
+                if ((testedUnion & testedMask) != testedMask || (grantedUnion & grantedMask) != grantedMask) {
+                    //No endpoint of the block can match, so do not even decompress it
+                    channel.position(channel.position() + compressedLength);
+                    continue;
+                }
+                try {
+                    consumer.accept(new Block(rows, inflate(read(compressedLength), uncompressedLength)));
+                } catch (RuntimeException e) { //NOSONAR
+                    //Thrown for dictionaries and indices which do not fit the block
+                    throw new IOException("Corrupt block in result archive.", e);
+                }
+            }
+        }
+
+        private ByteBuffer read(int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Result archive ends within a block.");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        private static ByteBuffer inflate(ByteBuffer compressed, int uncompressedLength) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed.array(), 0, compressed.limit());
+                byte[] uncompressed = new byte[uncompressedLength];
+                int length = 0;
+                while (length < uncompressedLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(uncompressed, length, uncompressedLength - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Compressed block in result archive is incomplete.");
+                    }
+                    length += inflated;
+                }
+                return ByteBuffer.wrap(uncompressed);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block in result archive.", e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlockConsumer {
+        void accept(Block block);
+    }
+
+    /**
+     * A decompressed block, which decodes the endpoints only when they are asked for
+     */
+    private static class Block {
+        private final int rows;
+        private final ByteBuffer data;
+        private final int endpointsStart;
+        private String[] dictionary = null;
+        private int indicesStart;
+
+        private Block(int rows, ByteBuffer data) {
+            this.rows = rows;
+            this.data = data;
+            this.endpointsStart = 2 * rows * Long.BYTES;
+        }
+
+        private long getTested(int row) {
+            return data.getLong(row * Long.BYTES);
+        }
+
+        private long getGranted(int row) {
+            return data.getLong((rows + row) * Long.BYTES);
+        }
+
+        private String getEndpoint(int row) {
+            if (dictionary == null) {
+                readDictionary();
+            }
+            int indexPosition = indicesStart + 2 * row * Integer.BYTES;
+            return dictionary[data.getInt(indexPosition)] + dictionary[data.getInt(indexPosition + Integer.BYTES)];
+        }
+
+        private void readDictionary() {
+            ByteBuffer buffer = data.duplicate();
+            buffer.position(endpointsStart);
+            dictionary = new String[buffer.getInt()];
+            for (int index = 0; index < dictionary.length; index++) {
+                byte[] encoded = new byte[buffer.getInt()];
+                buffer.get(encoded);
+                dictionary[index] = new String(encoded, StandardCharsets.UTF_8);
+            }
+            indicesStart = buffer.position();
+        }
+    }
+}
@@ -3,23 +3,35 @@ package de.fraunhofer.iem.opcuascanner;
 import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
 import de.fraunhofer.iem.opcuascanner.logic.Authentication;
 import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import de.fraunhofer.iem.opcuascanner.utils.ScanMetrics;
+import de.fraunhofer.iem.opcuascanner.utils.StageMetrics;
 import org.apache.logging.log4j.LogManager;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 class ResultReporter {
     public static final String CSV_DELIMITER = ",";
     private static final String CSV_LINE_BREAK = "\r\n";
     public static final String DEFAULT_FILE_EXTENSION= ".csv";
+    public static final String JSON_LINES_FILE_EXTENSION = ".jsonl";
+    static final String JSON_LINES_FORMAT = "jsonl";
     private static final String UNKNOWN = "unknown";
 
     private static final org.apache.logging.log4j.Logger logger = LogManager.getLogger(ResultReporter.class);
 
+    private static final StageMetrics resultWrites = ScanMetrics.stage("result_write");
+
 
     private ResultReporter(){
         //Do not instantiate this, this a util class.
@@ -28,49 +40,236 @@ class ResultReporter {
 
     /**
      * Report the results to a csv file so that given privileges are visible as "true", tested privileges that were
-     * not given as "false" and not tested privileges as "unknown".
+     * not given as "false" and not tested privileges as "unknown". The endpoints are written in order of their name.
      * @param results The results which will be written to the file
      */
-    static void reportToFile(HashMap<String, AccessPrivileges> results){
-        String csvOutput = buildCsvOutput(results);
-
-        File outputFile = new File(Configuration.getOutputFileName() + DEFAULT_FILE_EXTENSION);
-
-        try(FileOutputStream output = new FileOutputStream(outputFile)){
-            output.write(csvOutput.getBytes());
-        }
-        catch (FileNotFoundException e){
-            logger.info("Could not find file.");
+    static void reportToFile(Map<String, AccessPrivileges> results){
+        try (ResultWriter writer = new ResultWriter(getOutputFile(false), false, 0)){
+            for (Map.Entry<String, AccessPrivileges> resultForServer : new TreeMap<>(results).entrySet()){
+                writer.write(resultForServer.getKey(), resultForServer.getValue());
+            }
         } catch (IOException e) {
             logger.info("Error while writing results: {}", e.getMessage());
         }
+    }
 
+    /**
+     * Opens the result file in the configured format and writes the headers, so that results can be written one
+     * endpoint at a time while the scan is still running.
+     * @return A writer for the results of single endpoints
+     * @throws IOException If the file can not be opened
+     */
+    static ResultWriter openResultWriter() throws IOException {
+        boolean jsonLines = JSON_LINES_FORMAT.equals(Configuration.getOutputFormat());
+        ResultWriter writer = new ResultWriter(getOutputFile(jsonLines), jsonLines,
+                Configuration.getResultFlushIntervalInMs());
+        if (Configuration.getArchiveFileName() != null) {
+            try {
+                writer.archive = ResultArchive.openWriter(Paths.get(Configuration.getArchiveFileName()));
+            } catch (IOException e) {
+                writer.close();
+                throw e;
+            }
+        }
+        return writer;
+    }
+
+    private static Path getOutputFile(boolean jsonLines){
+        return Paths.get(Configuration.getOutputFileName()
+                + (jsonLines ? JSON_LINES_FILE_EXTENSION : DEFAULT_FILE_EXTENSION));
     }
 
-    private static String buildCsvOutput(HashMap<String,AccessPrivileges> results) {
-        StringBuilder outputBuilder = new StringBuilder();
+    /**
+     * Writes the results of one endpoint per line to the result file, either as csv or as one JSON object per line.
+     * Lines are collected in a buffer and written to the file when the buffer is full, and at the latest after the
+     * flush interval, so the file can be read while the scan is running. With a flush interval of 0, every line is
+     * written right away. If an archive file is configured, every line is also written to a {@link ResultArchive}.
+     * Can be used from several threads.
+     */
+    static class ResultWriter implements Closeable {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final FileChannel channel;
+        private final boolean jsonLines;
+        private final int flushIntervalInMs;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ScheduledThreadPoolExecutor flusher;
+        private ResultArchive.Writer archive = null;
+
+        /**
+         * @param file The file to write to, it is replaced if it exists
+         * @param jsonLines Whether to write JSON lines instead of csv
+         * @param flushIntervalInMs The time after which written lines are in the file at the latest
+         * @throws IOException If the file can not be opened or the headers can not be written
+         */
+        ResultWriter(Path file, boolean jsonLines, int flushIntervalInMs) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.jsonLines = jsonLines;
+            this.flushIntervalInMs = flushIntervalInMs;
+            if (flushIntervalInMs > 0) {
+                flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+                    Thread thread = new Thread(runnable, "result-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalInMs, flushIntervalInMs,
+                        TimeUnit.MILLISECONDS);
+            } else {
+                flusher = null;
+            }
+            try {
+                if (!jsonLines) {
+                    StringBuilder outputBuilder = new StringBuilder();
+                    makeHeaders(outputBuilder);
+                    writeLine(outputBuilder);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * @param server The endpoint the results are for
+         * @param privForServer The final results for the endpoint
+         * @throws IOException If the line could not be written
+         */
+        synchronized void write(String server, AccessPrivileges privForServer) throws IOException {
+            long startedAt = resultWrites.start();
+            try {
+                StringBuilder outputBuilder = new StringBuilder();
+                if (jsonLines) {
+                    makeJsonLine(outputBuilder, server, privForServer);
+                } else {
+                    makeLine(outputBuilder, server, privForServer);
+                }
+                writeLine(outputBuilder);
+                if (archive != null) {
+                    archive.write(server, privForServer);
+                }
+            } catch (IOException e) {
+                resultWrites.finish(startedAt, e);
+                throw e;
+            }
+            resultWrites.finish(startedAt, StageMetrics.Outcome.SUCCESS);
+        }
+
+        private void writeLine(StringBuilder outputBuilder) throws IOException {
+            byte[] line = outputBuilder.toString().getBytes(StandardCharsets.UTF_8);
+            if (line.length > buffer.remaining()) {
+                flush();
+            }
+            if (line.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(line));
+            } else {
+                buffer.put(line);
+            }
+            if (flushIntervalInMs == 0) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes all buffered lines to the file
+         * @throws IOException If the lines could not be written
+         */
+        synchronized void flush() throws IOException {
+            buffer.flip();
+            try {
+                writeFully(buffer);
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        private void flushQuietly() {
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.error("Could not write results: {}", e.getMessage());
+            }
+        }
 
-        makeHeaders(outputBuilder);
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (flusher != null) {
+                flusher.shutdownNow();
+            }
+            try {
+                flush();
+            } finally {
+                channel.close();
+                if (archive != null) {
+                    archive.close();
+                }
+            }
+        }
+    }
 
-        for (Map.Entry<String, AccessPrivileges> resultForServer : results.entrySet()){
-            String server = resultForServer.getKey();
-            AccessPrivileges privForServer = resultForServer.getValue();
+    private static void makeLine(StringBuilder outputBuilder, String server, AccessPrivileges privForServer) {
+        outputBuilder.append(server).append(CSV_DELIMITER);
 
-            outputBuilder.append(server).append(CSV_DELIMITER);
+        for(Authentication auth : Authentication.values()){
+            for (Privilege priv : Privilege.values()){
+                boolean wasTested = privForServer.wasTested(priv, auth);
+                boolean hasPrivilege = false;
+                if (wasTested){
+                    hasPrivilege = privForServer.isPrivilegePerAuthentication(priv, auth);
+                }
+                reportPrivForServer(outputBuilder, wasTested, hasPrivilege);
+            }
+        }
+        outputBuilder.append(CSV_LINE_BREAK);
+    }
 
-            for(Authentication auth : Authentication.values()){
-                for (Privilege priv : Privilege.values()){
-                    boolean wasTested = privForServer.wasTested(priv, auth);
-                    boolean hasPrivilege = false;
-                    if (wasTested){
-                        hasPrivilege = privForServer.isPrivilegePerAuthentication(priv, auth);
-                    }
-                    reportPrivForServer(outputBuilder, wasTested, hasPrivilege);
+    /**
+     * Makes a JSON object with the endpoint and, per authentication, every privilege as true, false or null if it
+     * was not tested.
+     */
+    private static void makeJsonLine(StringBuilder outputBuilder, String server, AccessPrivileges privForServer) {
+        outputBuilder.append("{\"endpoint\":");
+        appendJsonString(outputBuilder, server);
+        outputBuilder.append(",\"privileges\":{");
+        for (Authentication auth : Authentication.values()){
+            if (auth.ordinal() > 0){
+                outputBuilder.append(',');
+            }
+            outputBuilder.append('"').append(auth).append("\":{");
+            for (Privilege priv : Privilege.values()){
+                if (priv.ordinal() > 0){
+                    outputBuilder.append(',');
+                }
+                outputBuilder.append('"').append(priv).append("\":");
+                if (privForServer.wasTested(priv, auth)){
+                    outputBuilder.append(privForServer.isPrivilegePerAuthentication(priv, auth));
+                } else {
+                    outputBuilder.append("null");
                 }
             }
-            outputBuilder.append(CSV_LINE_BREAK);
+            outputBuilder.append('}');
+        }
+        outputBuilder.append("}}\n");
+    }
+
+    private static void appendJsonString(StringBuilder outputBuilder, String value) {
+        outputBuilder.append('"');
+        for (char c : value.toCharArray()){
+            if (c == '"' || c == '\\'){
+                outputBuilder.append('\\').append(c);
+            } else if (c < 0x20){
+                outputBuilder.append(String.format("\\u%04x", (int) c));
+            } else {
+                outputBuilder.append(c);
+            }
         }
-        return outputBuilder.toString();
+        outputBuilder.append('"');
     }
 
     private static void reportPrivForServer(StringBuilder outputBuilder, boolean wasTested, boolean hasPrivilege) {
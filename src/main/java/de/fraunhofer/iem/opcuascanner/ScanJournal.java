@@ -0,0 +1,432 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Records the progress of a scan in an append-only file, so that a scan which was stopped can be resumed where it
+ * stopped instead of starting over.
+ *
+ * Every line is one entry with tab separated fields, written out as soon as it happens:
+ * <ul>
+ *     <li>SCAN, key: The first line, the key of the settings the scan was started with</li>
+ *     <li>REACHABLE, host and port: A host was reached by the sweep</li>
+ *     <li>SWEEP_POSITION, number of targets: The sweep is done with this many targets from the start of its
+ *     order</li>
+ *     <li>SWEPT: The sweep went through all hosts</li>
+ *     <li>DISCOVERED, host and port, endpoints: The endpoints of a host were retrieved</li>
+ *     <li>RESULT, endpoint, authentication, tested and granted privileges: An authentication was tested on an
+ *     endpoint, the privileges are bits by the ordinal of {@link de.fraunhofer.iem.opcuascanner.logic.Privilege}</li>
+ *     <li>DONE, endpoint: The results of an endpoint were written to the result file</li>
+ *     <li>COMPLETE: The scan finished, the next scan starts over</li>
+ * </ul>
+ * A line which was cut off because the scanner was stopped while writing it is ignored.
+ *
+ * The file is read line by line. Results are only kept in memory until their endpoint is done, the results of done
+ * endpoints are read from the file again when they are needed, see {@link #replayDoneResults(ResultConsumer)}.
+ */
+class ScanJournal implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(ScanJournal.class);
+
+    private static final String SEPARATOR = "\t";
+    private static final String SCAN = "SCAN";
+    private static final String REACHABLE = "REACHABLE";
+    private static final String SWEEP_POSITION = "SWEEP_POSITION";
+    private static final String SWEPT = "SWEPT";
+    private static final String DISCOVERED = "DISCOVERED";
+    private static final String RESULT = "RESULT";
+    private static final String DONE = "DONE";
+    private static final String COMPLETE = "COMPLETE";
+
+    /**
+     * The sweep position is recorded after this many more targets are done, not after every target
+     */
+    static final long SWEEP_POSITION_INTERVAL = 1024;
+
+    private final Path file;
+    private OutputStream output;
+
+    private String scanKey = null;
+
+    private final Set<String> reachableHosts = new LinkedHashSet<>();
+    private long sweepPosition = 0;
+    private boolean sweepDone = false;
+    private boolean complete = false;
+    private final Map<String, List<String>> endpointsOfHosts = new HashMap<>();
+    private final Map<String, Map<Authentication, int[]>> results = new HashMap<>();
+    private final Set<String> doneEndpoints = new LinkedHashSet<>();
+
+    private ScanJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return A journal which records nothing and knows of no earlier progress
+     */
+    static ScanJournal none() {
+        return new ScanJournal(null);
+    }
+
+    /**
+     * Combines the settings which decide what a scan does into a key. A journal is only resumed by a scan with the
+     * same key, since the sweep positions and results of a scan with other settings do not fit.
+     * @param addresses The addresses of the sweep, in the order they are tried
+     * @param ports The ports of the sweep, in the order they are tried
+     * @param settings Further settings the results depend on
+     * @return The key of the scan
+     */
+    static String scanKey(Collection<InetAddress> addresses, Collection<Integer> ports, Collection<?> settings) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        for (InetAddress address : addresses) {
+            hasher.putBytes(address.getAddress());
+        }
+        hasher.putChar(';');
+        for (Integer port : ports) {
+            hasher.putInt(port);
+        }
+        for (Object setting : settings) {
+            hasher.putChar(';').putString(String.valueOf(setting), StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Reads the progress recorded in the file and opens it to record further progress. If the file belongs to a
+     * scan which was completed or to a scan with other settings, it is started over.
+     * @param file The journal file, created if it does not exist
+     * @param scanKey The key of the settings of this scan, see {@link #scanKey(Collection, Collection, Collection)}
+     * @return The journal with the progress of the unfinished scan
+     * @throws IOException If the file can not be read or opened for writing
+     */
+    static ScanJournal open(Path file, String scanKey) throws IOException {
+        ScanJournal journal = new ScanJournal(file);
+        boolean resumed = Files.exists(file) && forEachLine(file, journal::replay);
+        if (journal.complete || (resumed && !scanKey.equals(journal.scanKey))) {
+            if (journal.complete) {
+                logger.info("Scan in journal {} was completed, starting a new scan.", file);
+            } else {
+                logger.info("Scan in journal {} was started with other addresses, ports or settings, starting a new "
+                        + "scan.", file);
+            }
+            Files.delete(file);
+            journal = new ScanJournal(file);
+            resumed = false;
+        }
+        journal.output = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        journal.scanKey = scanKey;
+        if (!resumed) {
+            journal.record(SCAN, scanKey);
+        } else {
+            logger.info("Resuming scan from journal {}: {} targets swept, {} hosts reached, {} endpoints done.",
+                    file, journal.sweepPosition, journal.reachableHosts.size(), journal.doneEndpoints.size());
+            //Start on a new line, in case the last one was cut off
+            journal.output.write('\n');
+        }
+        return journal;
+    }
+
+    /**
+     * Passes the complete lines of the file to the consumer one after another, without the last one if it was cut
+     * off.
+     * @return Whether there was any line
+     */
+    private static boolean forEachLine(Path file, Consumer<String> consumer) throws IOException {
+        boolean lastLineComplete = endsWithNewLine(file);
+        boolean anyLine = false;
+        //Unlike Files.newBufferedReader, this does not fail on a character which was cut off in the last line
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                line = line.trim();
+                if (!line.isEmpty() && (next != null || lastLineComplete)) {
+                    anyLine = true;
+                    consumer.accept(line);
+                }
+                line = next;
+            }
+        }
+        return anyLine;
+    }
+
+    private static boolean endsWithNewLine(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            if (channel.size() == 0) {
+                return false;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private void replay(String line) {
+        String[] fields = line.split(SEPARATOR);
+        try {
+            switch (fields[0]) {
+                case SCAN:
+                    scanKey = fields[1];
+                    break;
+                case REACHABLE:
+                    reachableHosts.add(fields[1]);
+                    break;
+                case SWEEP_POSITION:
+                    sweepPosition = Math.max(sweepPosition, Long.parseLong(fields[1]));
+                    break;
+                case SWEPT:
+                    sweepDone = true;
+                    break;
+                case DISCOVERED:
+                    List<String> endpoints = new ArrayList<>();
+                    Collections.addAll(endpoints, fields);
+                    endpointsOfHosts.put(fields[1], new ArrayList<>(endpoints.subList(2, endpoints.size())));
+                    break;
+                case RESULT:
+                    int[] bits = {Integer.parseInt(fields[3]), Integer.parseInt(fields[4])};
+                    results.computeIfAbsent(fields[1], endpoint -> new EnumMap<>(Authentication.class))
+                            .put(Authentication.valueOf(fields[2]), bits);
+                    break;
+                case DONE:
+                    doneEndpoints.add(fields[1]);
+                    //The results of done endpoints are read again by replayDoneResults
+                    results.remove(fields[1]);
+                    break;
+                case COMPLETE:
+                    complete = true;
+                    break;
+                default:
+                    logger.debug("Ignoring unknown journal entry: {}", line);
+            }
+        } catch (RuntimeException e) { //NOSONAR
+            //Only the line being written when the scanner stopped can be incomplete
+            logger.debug("Ignoring incomplete journal entry: {}", line);
+        }
+    }
+
+    /**
+     * Passes the results of every endpoint which was done by an earlier run to the consumer, in the order the
+     * endpoints were done. The journal file is read again for this, so the results are not kept in memory.
+     * @param consumer Gets every done endpoint with its results
+     * @throws IOException If the journal file can not be read or the consumer failed
+     */
+    void replayDoneResults(ResultConsumer consumer) throws IOException {
+        if (file == null || doneEndpoints.isEmpty()) {
+            return;
+        }
+        Map<String, AccessPrivileges> pending = new HashMap<>();
+        IOException[] consumerError = new IOException[1];
+        forEachLine(file, line -> {
+            String[] fields = line.split(SEPARATOR);
+            try {
+                if (RESULT.equals(fields[0])) {
+                    pending.computeIfAbsent(fields[1], endpoint -> new AccessPrivileges()).setPrivilegesFromBits(
+                            Authentication.valueOf(fields[2]), Integer.parseInt(fields[3]),
+                            Integer.parseInt(fields[4]));
+                } else if (DONE.equals(fields[0]) && consumerError[0] == null) {
+                    AccessPrivileges privileges = pending.remove(fields[1]);
+                    consumer.accept(fields[1], privileges != null ? privileges : new AccessPrivileges());
+                }
+            } catch (IOException e) {
+                consumerError[0] = e;
+            } catch (RuntimeException e) { //NOSONAR
+                logger.debug("Ignoring incomplete journal entry: {}", line);
+            }
+        });
+        if (consumerError[0] != null) {
+            throw consumerError[0];
+        }
+    }
+
+    /**
+     * @return The number of targets from the start of the sweep order which an earlier run is done with
+     */
+    synchronized long getSweepPosition() {
+        return sweepPosition;
+    }
+
+    /**
+     * @return Whether the sweep of an earlier run went through all hosts
+     */
+    synchronized boolean isSweepDone() {
+        return sweepDone;
+    }
+
+    /**
+     * @return The hosts reached by earlier runs, in the order they were reached
+     */
+    synchronized List<InetSocketAddress> getReachableHosts() {
+        List<InetSocketAddress> hosts = new ArrayList<>();
+        for (String host : reachableHosts) {
+            try {
+                hosts.add(parseHost(host));
+            } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                logger.debug("Ignoring journaled host {}: {}", host, e.getMessage());
+            }
+        }
+        return hosts;
+    }
+
+    /**
+     * @param host A reachable host
+     * @return Whether the endpoints of the host were retrieved and all of them are done
+     */
+    synchronized boolean isHostDone(InetSocketAddress host) {
+        List<String> endpoints = endpointsOfHosts.get(formatHost(host));
+        return endpoints != null && doneEndpoints.containsAll(endpoints);
+    }
+
+    /**
+     * @param endpoint The endpoint url with security details
+     * @return Whether the results of the endpoint were written by an earlier run
+     */
+    synchronized boolean isEndpointDone(String endpoint) {
+        return doneEndpoints.contains(endpoint);
+    }
+
+    /**
+     * @return The endpoints whose results were written by earlier runs
+     */
+    synchronized List<String> getDoneEndpoints() {
+        return new ArrayList<>(doneEndpoints);
+    }
+
+    /**
+     * @param endpoint The endpoint url with security details
+     * @param auth The authentication
+     * @return Whether the authentication was tested on the endpoint by an earlier run
+     */
+    synchronized boolean wasTested(String endpoint, Authentication auth) {
+        return results.getOrDefault(endpoint, Collections.emptyMap()).containsKey(auth);
+    }
+
+    /**
+     * @param endpoint The endpoint url with security details
+     * @return The privileges found by earlier runs, for authentications which were not tested yet nothing is known
+     */
+    synchronized AccessPrivileges getResults(String endpoint) {
+        AccessPrivileges privileges = new AccessPrivileges();
+        results.getOrDefault(endpoint, Collections.emptyMap()).forEach((auth, bits) ->
+                privileges.setPrivilegesFromBits(auth, bits[0], bits[1]));
+        return privileges;
+    }
+
+    /**
+     * @param host A reachable host
+     * @return Whether the host was not known to be reachable before
+     */
+    synchronized boolean recordReachable(InetSocketAddress host) {
+        if (reachableHosts.add(formatHost(host))) {
+            record(REACHABLE, formatHost(host));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records how far the sweep got, but only every {@link #SWEEP_POSITION_INTERVAL} targets.
+     * @param position The number of targets from the start of the sweep order which are done
+     */
+    synchronized void recordSweepPosition(long position) {
+        if (position - sweepPosition >= SWEEP_POSITION_INTERVAL) {
+            sweepPosition = position;
+            record(SWEEP_POSITION, Long.toString(position));
+        }
+    }
+
+    synchronized void recordSweepDone() {
+        sweepDone = true;
+        record(SWEPT);
+    }
+
+    synchronized void recordDiscovered(InetSocketAddress host, Collection<String> endpoints) {
+        List<String> fields = new ArrayList<>();
+        fields.add(DISCOVERED);
+        fields.add(formatHost(host));
+        fields.addAll(endpoints);
+        endpointsOfHosts.put(formatHost(host), new ArrayList<>(endpoints));
+        record(fields.toArray(new String[0]));
+    }
+
+    synchronized void recordResult(String endpoint, Authentication auth, AccessPrivileges privileges) {
+        int[] bits = {privileges.getTestedBits(auth), privileges.getGrantedBits(auth)};
+        results.computeIfAbsent(endpoint, e -> new EnumMap<>(Authentication.class)).put(auth, bits);
+        record(RESULT, endpoint, auth.name(), Integer.toString(bits[0]), Integer.toString(bits[1]));
+    }
+
+    synchronized void recordDone(String endpoint) {
+        doneEndpoints.add(endpoint);
+        results.remove(endpoint);
+        record(DONE, endpoint);
+    }
+
+    synchronized void recordComplete() {
+        record(COMPLETE);
+    }
+
+    private void record(String... fields) {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.write((String.join(SEPARATOR, fields) + "\n").getBytes(StandardCharsets.UTF_8));
+            output.flush();
+        } catch (IOException e) {
+            logger.error("Could not write to scan journal: {}", e.getMessage());
+        }
+    }
+
+    private static String formatHost(InetSocketAddress host) {
+        return host.getAddress().getHostAddress() + ":" + host.getPort();
+    }
+
+    private static InetSocketAddress parseHost(String host) throws IOException {
+        int portSeparator = host.lastIndexOf(':');
+        //Only ip addresses are journaled, so this does not look up any names
+        InetAddress address = InetAddress.getByName(host.substring(0, portSeparator));
+        return new InetSocketAddress(address, Integer.parseInt(host.substring(portSeparator + 1)));
+    }
+
+    /**
+     * Gets the results of an endpoint, may fail with an {@link IOException}
+     */
+    interface ResultConsumer {
+        void accept(String endpoint, AccessPrivileges privileges) throws IOException;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (output != null) {
+            output.close();
+        }
+    }
+}
@@ -1,41 +1,100 @@
 package de.fraunhofer.iem.opcuascanner;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.nio.file.Paths;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
-import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfig;
-import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.AnonymousProvider;
 import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
 
 import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
 import de.fraunhofer.iem.opcuascanner.logic.Authentication;
-import de.fraunhofer.iem.opcuascanner.logic.Login;
 import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import de.fraunhofer.iem.opcuascanner.utils.AddressSpaceCache;
 import de.fraunhofer.iem.opcuascanner.utils.CertificateUtil;
 import de.fraunhofer.iem.opcuascanner.utils.CommonCredentialsUtil;
+import de.fraunhofer.iem.opcuascanner.utils.CredentialSource;
+import de.fraunhofer.iem.opcuascanner.utils.EndpointDiscoverer;
+import de.fraunhofer.iem.opcuascanner.utils.HostThrottledExecutor;
 import de.fraunhofer.iem.opcuascanner.utils.NetworkUtil;
 import de.fraunhofer.iem.opcuascanner.utils.OpcuaUtil;
+import de.fraunhofer.iem.opcuascanner.utils.ScanMetrics;
+import de.fraunhofer.iem.opcuascanner.utils.ScanProgress;
+import de.fraunhofer.iem.opcuascanner.utils.VirtualThreads;
 
 /**
  * This scanner detects its own ip, and scans the IPv4 range relative to that IP on the default OPC UA Port (using
  * {@link NetworkUtil}).
  * For all hosts that are reachable, endpoints are retrieved. For these endpoints several methods of
- * {@link Authentication} are tried and several {@link Privilege}s are tried to obtain.
+ * {@link Authentication} are tried and several {@link Privilege}s are tried to obtain. Several endpoints are tested
+ * at the same time, limited overall and per host by the {@link Configuration}.
  *
- * The results are reported to a CSV File using the {@link ResultReporter}. This file can be opened as a table
- * using standard office calculation programs, such as Microsoft Excel or LibreOffice Calc.
+ * The results are reported to a CSV File using the {@link ResultReporter}, one line per endpoint as soon as its tests
+ * are done. This file can be opened as a table using standard office calculation programs, such as Microsoft Excel or
+ * LibreOffice Calc.
+ *
+ * If a journal file is configured, the progress is recorded in a {@link ScanJournal}, and a scan which was stopped
+ * continues where it stopped. If a fingerprint file is configured, endpoints which did not change since an earlier
+ * scan are not tested again, see {@link EndpointFingerprints}. If metrics files are configured, the time spent in the
+ * stages of the scan is written to them while it runs, see {@link ScanMetrics}. The progress of the scan and the
+ * time left are reported regularly by {@link ScanProgress}.
  */
 class ScanningClient {
 
     private static final Logger logger = LogManager.getLogger(ScanningClient.class);
 
-    private static final HashMap<String,AccessPrivileges> results = new HashMap<>();
+    /**
+     * Results of the endpoints which are currently tested, they are removed once they are written to the result file
+     */
+    private static final Map<String,AccessPrivileges> results = new ConcurrentHashMap<>();
+
+    /**
+     * All endpoints which were handed to the testers, to test each endpoint only once
+     */
+    private static final Set<String> testedEndpoints = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The number of reachable hosts that can wait for endpoint discovery before the port sweep pauses
+     */
+    private static final int REACHABLE_HOST_QUEUE_SIZE = 256;
+
+    /**
+     * The number of endpoints per tester that can wait for testing before endpoint discovery pauses
+     */
+    private static final int QUEUED_ENDPOINTS_PER_TESTER = 4;
+
+    /**
+     * The logins to try on every endpoint, read from the configured credential files while testing
+     */
+    private static CredentialSource credentials = CredentialSource.of(CommonCredentialsUtil.logins);
+
+    /**
+     * The progress of the scan, including that of earlier runs which were stopped
+     */
+    private static ScanJournal journal = ScanJournal.none();
+
+    /**
+     * The endpoints tested by earlier scans, to carry their results forward if they did not change
+     */
+    private static EndpointFingerprints fingerprints = EndpointFingerprints.none();
+
+    private static final InetSocketAddress END_OF_SWEEP = InetSocketAddress.createUnresolved("end-of-sweep", 0);
 
     public static void main(String[] args) {
         logger.info("Scanner started");
@@ -44,112 +103,280 @@ class ScanningClient {
             File configFile = new File(args[0]);
             Configuration.tryToLoadConfigFile(configFile);
         }
+        credentials = CommonCredentialsUtil.getCredentialSource();
 
-        Set<InetSocketAddress> reachableHosts = NetworkUtil.getReachableHosts();
+        try {
+            if (Configuration.getJournalFileName() != null){
+                String scanKey = ScanJournal.scanKey(NetworkUtil.getAddressesToTry(), Configuration.getPorts(),
+                        Arrays.asList(Configuration.getCredentialsFileName(), Configuration.getUsernamesFileName(),
+                                Configuration.getPasswordsFileName(), Configuration.isDeleteActivated(),
+                                Configuration.isWriteActivated(), Configuration.isCallActivated()));
+                journal = ScanJournal.open(Paths.get(Configuration.getJournalFileName()), scanKey);
+            }
+        } catch (IOException e) {
+            logger.error("Could not open scan journal, the scan can not be resumed: {}", e.getMessage());
+        }
+        if (Configuration.getFingerprintFileName() != null){
+            fingerprints = EndpointFingerprints.load(Paths.get(Configuration.getFingerprintFileName()),
+                    TimeUnit.HOURS.toMillis(Configuration.getMaxResultAgeInHours()));
+        }
 
-        Set<EndpointDescription> allEndpoints = new HashSet<>();
-        for (InetSocketAddress reachableHost : reachableHosts) {
-            allEndpoints.addAll(OpcuaUtil.tryToGetEndpoints(reachableHost));
+        ScanMetrics.startExport();
+        ScanProgress.startReporting();
+        try (ScanJournal scanJournal = journal;
+             ResultReporter.ResultWriter resultWriter = ResultReporter.openResultWriter()){
+            writeJournaledResults(resultWriter);
+            if (scan(resultWriter)){
+                scanJournal.recordComplete();
+            }
+        } catch (IOException e) {
+            logger.error("Could not write results: {}", e.getMessage());
         }
+        //Also after an interrupted scan, so the endpoints tested so far are not tested again
+        fingerprints.save(System.currentTimeMillis());
+        ScanProgress.stopReporting();
+        ScanMetrics.stopExport();
+    }
+
+    /**
+     * Writes the results of endpoints which were done in earlier runs, since the result file is started over.
+     */
+    private static void writeJournaledResults(ResultReporter.ResultWriter resultWriter) throws IOException {
+        journal.replayDoneResults((endpointKey, privileges) -> {
+            testedEndpoints.add(endpointKey);
+            resultWriter.write(endpointKey, privileges);
+        });
+    }
 
-        for (EndpointDescription endpointDescription : allEndpoints){
-            logger.info("Trying privileges for endpoint {}", OpcuaUtil.getUrlWithSecurityDetail(endpointDescription));
-            results.put(OpcuaUtil.getUrlWithSecurityDetail(endpointDescription), new AccessPrivileges());
-            tryToConnectAnonymously(endpointDescription);
-            tryToConnectWithDumbLogin(endpointDescription);
-            tryToConnectWithExpiredCertificate(endpointDescription);
-            tryToConnectWithCertificateThatsNotValidYet(endpointDescription);
-            tryToConnectWithCertificateWithWrongKeyUsage(endpointDescription);
+    /**
+     * Runs the stages of the scan at the same time: The port sweep hands reachable hosts to endpoint discovery,
+     * discovered endpoints are handed to the testers and the results of each endpoint are written as soon as its
+     * tests are done.
+     *
+     * The stages are connected by bounded queues. If a stage falls behind, the stage before it waits, so the memory
+     * used does not grow with the size of the scanned range.
+     * @param resultWriter The writer for the results of the endpoints
+     * @return True if the scan went through all hosts, false if it was interrupted
+     */
+    private static boolean scan(ResultReporter.ResultWriter resultWriter) {
+        BlockingQueue<InetSocketAddress> reachableHosts = new ArrayBlockingQueue<>(REACHABLE_HOST_QUEUE_SIZE);
+        Thread sweeper = new Thread(() -> sweepForReachableHosts(reachableHosts), "port-sweeper");
+        //Do not keep the scanner alive only for the sweep if the scan stopped for some other reason
+        sweeper.setDaemon(true);
+        sweeper.start();
+
+        HostThrottledExecutor endpointTesters = new HostThrottledExecutor("endpoint-tester",
+                Configuration.getMaxParallelEndpoints(), Configuration.getMaxParallelEndpointsPerHost(),
+                VirtualThreads.isEnabled());
+        EndpointDiscoverer discoverer = new EndpointDiscoverer(Configuration.getMaxParallelDiscoveries(),
+                Configuration.getDiscoveryTimeoutInMs());
+        int maxQueuedEndpoints = Configuration.getMaxParallelEndpoints() * QUEUED_ENDPOINTS_PER_TESTER;
+        Phaser discoveries = new Phaser(1);
+        //Discoveries complete on the threads of the OPC UA stack or the timeout thread, which must not wait for
+        //journal writes, so the endpoints are handed over to the testers on a thread of their own
+        ExecutorService submitter = Executors.newSingleThreadExecutor(
+                VirtualThreads.newThreadFactory("endpoint-submitter", false));
+        try {
+            InetSocketAddress reachableHost = reachableHosts.take();
+            while (reachableHost != END_OF_SWEEP) {
+                //Hosts whose endpoints were all tested by an earlier run do not need to be asked again
+                if (!journal.isHostDone(reachableHost)) {
+                    endpointTesters.awaitUnfinishedBelow(maxQueuedEndpoints);
+                    InetSocketAddress discoveredHost = reachableHost;
+                    discoveries.register();
+                    discoverer.discover(reachableHost)
+                            .thenAcceptAsync(endpoints -> submitEndpoints(endpointTesters, discoveredHost,
+                                    endpoints, resultWriter), submitter)
+                            .whenComplete((ignored, error) -> discoveries.arriveAndDeregister());
+                }
+                reachableHost = reachableHosts.take();
+            }
+            discoveries.arriveAndAwaitAdvance();
+            endpointTesters.awaitCompletion();
+            return true;
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while scanning, the result file only contains the endpoints tested so far.");
+            sweeper.interrupt();
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            submitter.shutdown();
         }
+    }
 
-        ResultReporter.reportToFile(results);
+    private static void sweepForReachableHosts(BlockingQueue<InetSocketAddress> reachableHosts) {
+        try {
+            //The hosts reached by an earlier run are not reached again, its sweep is continued where it stopped
+            for (InetSocketAddress reachableHost : journal.getReachableHosts()){
+                ScanProgress.openPortFound();
+                reachableHosts.put(reachableHost);
+            }
+            if (!journal.isSweepDone()){
+                NetworkUtil.sweepForReachableHosts(journal.getSweepPosition(), reachableHost -> {
+                    //Hosts after the last recorded sweep position may have been reached by the earlier run
+                    if (!journal.recordReachable(reachableHost)){
+                        return;
+                    }
+                    ScanProgress.openPortFound();
+                    try {
+                        reachableHosts.put(reachableHost);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, journal::recordSweepPosition);
+                if (!Thread.currentThread().isInterrupted()){
+                    journal.recordSweepDone();
+                }
+            }
+            if (!Thread.currentThread().isInterrupted()){
+                ScanProgress.sweepDone();
+            }
+            reachableHosts.put(END_OF_SWEEP);
+        } catch (InterruptedException e) {
+            //Only happens if the scan was interrupted, then nobody waits for the end of the sweep
+            Thread.currentThread().interrupt();
+        }
     }
 
+    private static void submitEndpoints(HostThrottledExecutor endpointTesters, InetSocketAddress reachableHost,
+                                        Set<EndpointDescription> endpoints, ResultReporter.ResultWriter resultWriter) {
+        String host = reachableHost.getAddress().getHostAddress();
+        List<String> endpointKeys = new ArrayList<>();
+        for (EndpointDescription endpointDescription : endpoints) {
+            endpointKeys.add(OpcuaUtil.getUrlWithSecurityDetail(endpointDescription));
+            //The same endpoint can be announced on several ports, only test it once
+            if (testedEndpoints.add(OpcuaUtil.getUrlWithSecurityDetail(endpointDescription))){
+                ScanProgress.endpointsDiscovered(1);
+                endpointTesters.submit(host, () -> testEndpoint(endpointDescription, resultWriter));
+            }
+        }
+        journal.recordDiscovered(reachableHost, endpointKeys);
+    }
 
-    private static void tryToConnectWithDumbLogin(EndpointDescription endpoint) {
-        Login loginWithMostPrivileges = null;
-        AccessPrivileges bestAccessPrivilegesYet = new AccessPrivileges();
-        AccessPrivileges privileges = results.get(OpcuaUtil.getUrlWithSecurityDetail(endpoint));
-        for (Login login : CommonCredentialsUtil.logins) {
-            OpcUaClientConfig config = OpcUaClientConfig.builder()
-                    .setEndpoint(endpoint)
-                    .setIdentityProvider(new UsernameProvider(login.getUsername(), login.getPassword()))
-                    .setKeyPair(CertificateUtil.getOrGenerateRsaKeyPair())
-                    .setCertificate(CertificateUtil.getWorkingSelfSignedCertificate())
-                    .setApplicationUri(CertificateUtil.APPLICATION_URI)
-                    .build();
-
-            privileges = PrivilegeTester.testPrivilege(new OpcUaClient(config), privileges,
-                    Authentication.COMMON_CREDENTIALS);
-            if (privileges.betterThan(bestAccessPrivilegesYet, Authentication.COMMON_CREDENTIALS)){
-                results.put(OpcuaUtil.getUrlWithSecurityDetail(endpoint), privileges);
-                bestAccessPrivilegesYet = privileges.copy();
-                loginWithMostPrivileges = login;
+    private static void testEndpoint(EndpointDescription endpointDescription,
+                                     ResultReporter.ResultWriter resultWriter) {
+        String endpointKey = OpcuaUtil.getUrlWithSecurityDetail(endpointDescription);
+        String fingerprint = EndpointFingerprints.fingerprint(endpointDescription);
+        AccessPrivileges unchangedResults = fingerprints.getUnchangedResults(endpointKey, fingerprint,
+                System.currentTimeMillis());
+        if (unchangedResults != null){
+            logger.info("Endpoint {} did not change since it was tested, using the earlier results.", endpointKey);
+            for (Authentication auth : Authentication.values()){
+                journal.recordResult(endpointKey, auth, unchangedResults);
             }
+            writeResults(endpointKey, unchangedResults, resultWriter);
+            return;
+        }
+        long testedAt = System.currentTimeMillis();
+        logger.info("Trying privileges for endpoint {}", endpointKey);
+        //Start with what earlier runs found out about the endpoint
+        results.put(endpointKey, journal.getResults(endpointKey));
+        //The address space is browsed fully by the first identity allowed to, the others only check a sample
+        AddressSpaceCache addressSpace = new AddressSpaceCache();
+        //Anonymous and the logins use the same certificate, so they share one secure channel
+        try (EndpointSession session = new EndpointSession(endpointDescription,
+                CertificateUtil.getWorkingSelfSignedCertificate())){
+            testUnlessJournaled(endpointKey, Authentication.ANONYMOUSLY,
+                    () -> tryToConnectAnonymously(endpointDescription, session, addressSpace));
+            testUnlessJournaled(endpointKey, Authentication.COMMON_CREDENTIALS,
+                    () -> tryToConnectWithDumbLogin(endpointDescription, session, addressSpace));
         }
-        if (loginWithMostPrivileges != null){
-            logger.info("Credentials with most privileges were username=\"{}\" and password=\"{}\".", //NOSONAR
-                    loginWithMostPrivileges.getUsername(), loginWithMostPrivileges.getPassword());
+        testUnlessJournaled(endpointKey, Authentication.EXPIRED_CERTIFICATE,
+                () -> tryToConnectWithExpiredCertificate(endpointDescription, addressSpace));
+        testUnlessJournaled(endpointKey, Authentication.CERTIFICATE_NOT_VALID_YET,
+                () -> tryToConnectWithCertificateThatsNotValidYet(endpointDescription, addressSpace));
+        testUnlessJournaled(endpointKey, Authentication.CERTIFICATE_WRONG_KEY_USAGE,
+                () -> tryToConnectWithCertificateWithWrongKeyUsage(endpointDescription, addressSpace));
+        AccessPrivileges privileges = results.remove(endpointKey);
+        if (!Thread.currentThread().isInterrupted()){
+            fingerprints.record(endpointKey, fingerprint, privileges, testedAt);
+        }
+        writeResults(endpointKey, privileges, resultWriter);
+    }
 
+    private static void writeResults(String endpointKey, AccessPrivileges privileges,
+                                     ResultReporter.ResultWriter resultWriter) {
+        try {
+            resultWriter.write(endpointKey, privileges);
+            journal.recordDone(endpointKey);
+            ScanProgress.endpointTested();
+        } catch (IOException e) {
+            logger.error("Could not write results for endpoint {}: {}", endpointKey, e.getMessage());
         }
     }
 
-    private static void tryToConnectAnonymously(EndpointDescription endpoint) {
-        logger.info("Trying to connect anonymously.");
-        AccessPrivileges privileges = results.get(OpcuaUtil.getUrlWithSecurityDetail(endpoint));
-        OpcUaClientConfig config = OpcUaClientConfig.builder()
-                .setEndpoint(endpoint)
-                .setKeyPair(CertificateUtil.getOrGenerateRsaKeyPair())
-                .setCertificate(CertificateUtil.getWorkingSelfSignedCertificate())
-                .setApplicationUri(CertificateUtil.APPLICATION_URI)
-                .build();
-
-        privileges = PrivilegeTester.testPrivilege(new OpcUaClient(config), privileges, Authentication.ANONYMOUSLY);
-        results.put(OpcuaUtil.getUrlWithSecurityDetail(endpoint), privileges);
+    /**
+     * Runs the test of an authentication unless an earlier run did, and records its results in the journal
+     */
+    private static void testUnlessJournaled(String endpointKey, Authentication auth, Runnable test) {
+        if (journal.wasTested(endpointKey, auth)){
+            logger.info("Skipping {} on {}, it was tested before.", auth, endpointKey);
+            return;
+        }
+        test.run();
+        //An interrupted test is not complete, so it is done again by the next run
+        if (!Thread.currentThread().isInterrupted()){
+            journal.recordResult(endpointKey, auth, results.get(endpointKey));
+        }
     }
 
-    private static void tryToConnectWithExpiredCertificate(EndpointDescription endpoint) {
-        logger.info("Trying to connect with expired certificate.");
+
+    private static void tryToConnectWithDumbLogin(EndpointDescription endpoint, EndpointSession session,
+                                                  AddressSpaceCache addressSpace) {
         AccessPrivileges privileges = results.get(OpcuaUtil.getUrlWithSecurityDetail(endpoint));
-        OpcUaClientConfig config = OpcUaClientConfig.builder()
-                .setEndpoint(endpoint)
-                .setKeyPair(CertificateUtil.getOrGenerateRsaKeyPair())
-                .setCertificate(CertificateUtil.getExpiredCertificate())
-                .setApplicationUri(CertificateUtil.APPLICATION_URI)
-                .build();
-
-        privileges = PrivilegeTester.testPrivilege(new OpcUaClient(config), privileges,
-                Authentication.EXPIRED_CERTIFICATE);
-        results.put(OpcuaUtil.getUrlWithSecurityDetail(endpoint), privileges);
+        CredentialTester credentialTester = new CredentialTester(endpoint, session, credentials.iterator(),
+                privileges, addressSpace);
+        try {
+            credentialTester.testLogins().ifPresent(loginWithMostPrivileges ->
+                logger.info("Credentials with most privileges for {} were username=\"{}\" and password=\"{}\".", //NOSONAR
+                        endpoint.getEndpointUrl(), loginWithMostPrivileges.getUsername(),
+                        loginWithMostPrivileges.getPassword()));
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while trying logins on {}.", endpoint.getEndpointUrl());
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private static void tryToConnectWithCertificateThatsNotValidYet(EndpointDescription endpoint) {
-        logger.info("Trying to connect with certificate which is not valid yet.");
-        AccessPrivileges privileges = results.get(OpcuaUtil.getUrlWithSecurityDetail(endpoint));
-        OpcUaClientConfig config = OpcUaClientConfig.builder()
-                .setEndpoint(endpoint)
-                .setKeyPair(CertificateUtil.getOrGenerateRsaKeyPair())
-                .setCertificate(CertificateUtil.getCertificateThatsNotYetValid())
-                .setApplicationUri(CertificateUtil.APPLICATION_URI)
-                .build();
-
-        privileges = PrivilegeTester.testPrivilege(new OpcUaClient(config), privileges,
-                Authentication.CERTIFICATE_NOT_VALID_YET);
-        results.put(OpcuaUtil.getUrlWithSecurityDetail(endpoint), privileges);
+    private static void tryToConnectAnonymously(EndpointDescription endpoint, EndpointSession session,
+                                                AddressSpaceCache addressSpace) {
+        logger.info("Trying to connect anonymously to {}.", endpoint.getEndpointUrl());
+        tryToConnectOnSession(endpoint, session, Authentication.ANONYMOUSLY, addressSpace);
+    }
+
+    private static void tryToConnectWithExpiredCertificate(EndpointDescription endpoint,
+                                                           AddressSpaceCache addressSpace) {
+        logger.info("Trying to connect with expired certificate to {}.", endpoint.getEndpointUrl());
+        tryToConnectWithCertificate(endpoint, CertificateUtil.getExpiredCertificate(),
+                Authentication.EXPIRED_CERTIFICATE, addressSpace);
+    }
+
+    private static void tryToConnectWithCertificateThatsNotValidYet(EndpointDescription endpoint,
+                                                                    AddressSpaceCache addressSpace) {
+        logger.info("Trying to connect with certificate which is not valid yet to {}.",
+                endpoint.getEndpointUrl());
+        tryToConnectWithCertificate(endpoint, CertificateUtil.getCertificateThatsNotYetValid(),
+                Authentication.CERTIFICATE_NOT_VALID_YET, addressSpace);
+    }
+
+    private static void tryToConnectWithCertificateWithWrongKeyUsage(EndpointDescription endpoint,
+                                                                     AddressSpaceCache addressSpace) {
+        logger.info("Trying to connect with certificate with wrong key usage to {}.",
+                endpoint.getEndpointUrl());
+        tryToConnectWithCertificate(endpoint, CertificateUtil.generateCertificateWithWrongKeyUsage(),
+                Authentication.CERTIFICATE_WRONG_KEY_USAGE, addressSpace);
+    }
+
+    private static void tryToConnectWithCertificate(EndpointDescription endpoint, X509Certificate certificate,
+                                                    Authentication auth, AddressSpaceCache addressSpace) {
+        try (EndpointSession session = new EndpointSession(endpoint, certificate)) {
+            tryToConnectOnSession(endpoint, session, auth, addressSpace);
+        }
     }
 
-    private static void tryToConnectWithCertificateWithWrongKeyUsage(EndpointDescription endpoint) {
-        logger.info("Trying to connect with certificate with wrong key usage.");
+    private static void tryToConnectOnSession(EndpointDescription endpoint, EndpointSession session,
+                                              Authentication auth, AddressSpaceCache addressSpace) {
         AccessPrivileges privileges = results.get(OpcuaUtil.getUrlWithSecurityDetail(endpoint));
-        OpcUaClientConfig config = OpcUaClientConfig.builder()
-                .setEndpoint(endpoint)
-                .setKeyPair(CertificateUtil.getOrGenerateRsaKeyPair())
-                .setCertificate(CertificateUtil.generateCertificateWithWrongKeyUsage())
-                .setApplicationUri(CertificateUtil.APPLICATION_URI)
-                .build();
-
-        privileges = PrivilegeTester.testPrivilege(new OpcUaClient(config), privileges,
-                Authentication.CERTIFICATE_WRONG_KEY_USAGE);
+        privileges = PrivilegeTester.testPrivilege(session, new AnonymousProvider(), privileges, auth, addressSpace);
         results.put(OpcuaUtil.getUrlWithSecurityDetail(endpoint), privileges);
     }
-}
\ No newline at end of file
+}
@@ -1,26 +1,59 @@
 package de.fraunhofer.iem.opcuascanner.logic;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Checks for the product of {@link Privilege} and {@link Authentication} whether this combination was tested
  * and whether it was granted.
  *
  * There should be one set of AccessPrivileges per Endpoint (current implementation) or per Server, depending on
  * what you want to find out.
+ *
+ * The privileges can be set from several threads at the same time.
  */
 public class AccessPrivileges {
-    private final boolean[][] privPerAuth = new boolean[Privilege.values().length][Authentication.values().length];
-    private final boolean[][] wasTested = new boolean[Privilege.values().length][Authentication.values().length];
+    private static final int PRIVILEGES = Privilege.values().length;
+    private static final int PRIVILEGE_MASK = (1 << PRIVILEGES) - 1;
+
+    static {
+        //Every combination of privilege and authentication needs its own bit in a long, checked also without -ea
+        if (PRIVILEGES * Authentication.values().length > Long.SIZE) {
+            throw new IllegalStateException("There are more combinations of privilege and authentication than bits "
+                    + "in a long.");
+        }
+    }
+
+    /**
+     * One bit per combination of privilege and authentication, see {@link #bit(Privilege, Authentication)}. The
+     * privileges are set from several threads, e.g., from the callbacks of the OPC UA stack, so they are only ever
+     * changed atomically.
+     */
+    private final AtomicLong privPerAuth;
+    private final AtomicLong wasTested;
+
+    public AccessPrivileges(){
+        this(0, 0);
+    }
+
+    private AccessPrivileges(long wasTested, long privPerAuth){
+        this.wasTested = new AtomicLong(wasTested);
+        this.privPerAuth = new AtomicLong(privPerAuth);
+    }
+
+    private static long bit(Privilege p, Authentication a){
+        return 1L << (a.ordinal() * PRIVILEGES + p.ordinal());
+    }
 
     public void setPrivilegeWasTested(Privilege p, Authentication a){
-        wasTested[p.ordinal()][a.ordinal()] = true;
+        wasTested.getAndAccumulate(bit(p, a), (bits, bit) -> bits | bit);
     }
 
     public void setPrivilegePerAuthentication(Privilege p, Authentication a){
-        privPerAuth[p.ordinal()][a.ordinal()] = true;
+        privPerAuth.getAndAccumulate(bit(p, a), (bits, bit) -> bits | bit);
     }
 
     public boolean wasTested(Privilege p, Authentication a){
-        return wasTested[p.ordinal()][a.ordinal()];
+        return (wasTested.get() & bit(p, a)) != 0;
     }
 
     /**
@@ -32,8 +65,40 @@ public class AccessPrivileges {
      * @return True if the privilege is given per the authentication kind
      */
     public boolean isPrivilegePerAuthentication(Privilege p, Authentication a){
-        assert wasTested[p.ordinal()][a.ordinal()];
-        return privPerAuth[p.ordinal()][a.ordinal()];
+        assert wasTested(p, a);
+        return (privPerAuth.get() & bit(p, a)) != 0;
+    }
+
+    /**
+     * @param a The authentication
+     * @return The privileges tested for the authentication, as bits by the ordinal of the {@link Privilege}
+     */
+    public int getTestedBits(Authentication a){
+        return (int) (wasTested.get() >>> (a.ordinal() * PRIVILEGES)) & PRIVILEGE_MASK;
+    }
+
+    /**
+     * @param a The authentication
+     * @return The privileges given per the authentication, as bits by the ordinal of the {@link Privilege}
+     */
+    public int getGrantedBits(Authentication a){
+        return (int) (privPerAuth.get() >>> (a.ordinal() * PRIVILEGES)) & PRIVILEGE_MASK;
+    }
+
+    /**
+     * Sets the privileges of an authentication as returned by {@link #getTestedBits(Authentication)} and
+     * {@link #getGrantedBits(Authentication)}, e.g., to restore them from a file.
+     * @param a The authentication
+     * @param testedBits The privileges which were tested
+     * @param grantedBits The privileges which are given, only those which were tested are used
+     */
+    public void setPrivilegesFromBits(Authentication a, int testedBits, int grantedBits){
+        int shift = a.ordinal() * PRIVILEGES;
+        long authMask = (long) PRIVILEGE_MASK << shift;
+        long tested = ((long) testedBits << shift) & authMask;
+        long granted = ((long) (grantedBits & testedBits) << shift) & authMask;
+        wasTested.getAndUpdate(bits -> (bits & ~authMask) | tested);
+        privPerAuth.getAndUpdate(bits -> (bits & ~authMask) | granted);
     }
 
     /**
@@ -48,43 +113,18 @@ public class AccessPrivileges {
      * @return True iff these access privileges allow more than the others for the given authentication
      */
     public boolean betterThan(AccessPrivileges other, Authentication auth){
-        int scoreForThis = 0;
-        int testedForThis = 0;
-        int scoreForOther = 0;
-        int testedForOther = 0;
-        for (Privilege privilege : Privilege.values()){
-            if (this.wasTested(privilege, auth)){
-                testedForThis++;
-                if (this.isPrivilegePerAuthentication(privilege, auth)) {
-                    scoreForThis++;
-                }
-            }
-            if (other.wasTested(privilege, auth)){
-                testedForOther++;
-                if (other.isPrivilegePerAuthentication(privilege, auth)) {
-                    scoreForOther++;
-                }
-            }
-        }
+        int scoreForThis = Integer.bitCount(getGrantedBits(auth) & getTestedBits(auth));
+        int testedForThis = Integer.bitCount(getTestedBits(auth));
+        int scoreForOther = Integer.bitCount(other.getGrantedBits(auth) & other.getTestedBits(auth));
+        int testedForOther = Integer.bitCount(other.getTestedBits(auth));
         return scoreForThis > scoreForOther || (scoreForThis == scoreForOther && testedForThis > testedForOther);
     }
 
     /**
-     * Returns deep copy of this access privilege object. Necessary for comparison with previous privileges.
-     * @return A copy of these access privileges, but pointing to new arrays with the same values.
+     * Returns a copy of this access privilege object. Necessary for comparison with previous privileges.
+     * @return A copy of these access privileges, which does not change when these change.
      */
     public AccessPrivileges copy(){
-        AccessPrivileges newPriv = new AccessPrivileges();
-        for (Privilege privilege : Privilege.values()){
-            for (Authentication authentication : Authentication.values()){
-                if (wasTested(privilege, authentication)){
-                    newPriv.setPrivilegeWasTested(privilege, authentication);
-                    if (isPrivilegePerAuthentication(privilege, authentication)){
-                        newPriv.setPrivilegePerAuthentication(privilege, authentication);
-                    }
-                }
-            }
-        }
-        return newPriv;
+        return new AccessPrivileges(wasTested.get(), privPerAuth.get());
     }
 }
@@ -0,0 +1,297 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseDirection;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+
+/**
+ * Browses the address space of a server breadth-first, without recursion.
+ *
+ * Many nodes are browsed with a single Browse request, and several requests are pending at once. References which
+ * did not fit into a response are fetched with BrowseNext. Every node is browsed only once, even if several nodes
+ * reference it. If the server refuses a request for having too many nodes, the following requests get smaller.
+ */
+public class AddressSpaceBrowser {
+
+    private static final Logger logger = LogManager.getLogger(AddressSpaceBrowser.class);
+
+    /**
+     * The metrics of all Browse and BrowseNext requests, also of those sent by the {@link AddressSpaceUpdater}
+     */
+    static final StageMetrics browseRequests = ScanMetrics.stage("browse");
+
+    /**
+     * Methods are reported as well, to find methods to call, but their children are not browsed
+     */
+    static final UInteger NODE_CLASS_MASK = uint(NodeClass.Object.getValue() | NodeClass.Variable.getValue()
+            | NodeClass.Method.getValue());
+
+    /**
+     * The references per node the server should return at most, further references are fetched with BrowseNext
+     */
+    static final UInteger MAX_REFERENCES_PER_NODE = uint(1000);
+
+    static final ViewDescription DEFAULT_VIEW = new ViewDescription(NodeId.NULL_VALUE, DateTime.MIN_VALUE,
+            uint(0));
+
+    /**
+     * Receives the references found while browsing.
+     */
+    public interface ReferenceListener {
+        /**
+         * Called once for every reference found, from the thread running the browse. The source node was reported as
+         * the target of a reference before, unless it is the root of the browse.
+         * @param source The node the reference belongs to
+         * @param reference The reference to the target node
+         */
+        void onReference(NodeId source, ReferenceDescription reference);
+    }
+
+    private final OpcUaClient client;
+    private final int maxNodesPerRequest;
+    private final int maxParallelRequests;
+    private final int maxNodes;
+
+    /**
+     * @param client The connected client to browse with
+     * @param maxNodesPerRequest The maximum number of nodes browsed with a single request
+     * @param maxParallelRequests The maximum number of requests pending at the same time
+     * @param maxNodes The maximum number of nodes to browse, further nodes are only reported as references
+     */
+    public AddressSpaceBrowser(OpcUaClient client, int maxNodesPerRequest, int maxParallelRequests, int maxNodes) {
+        if (maxNodesPerRequest < 1 || maxParallelRequests < 1 || maxNodes < 1) {
+            throw new IllegalArgumentException("Limits for browsing must be positive.");
+        }
+        this.client = client;
+        this.maxNodesPerRequest = maxNodesPerRequest;
+        this.maxParallelRequests = maxParallelRequests;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Browses the root and everything reachable from it by forward hierarchical references.
+     * @param root The node to start at
+     * @param listener Receives every reference found
+     * @return The number of browsed nodes
+     * @throws InterruptedException If interrupted while waiting for responses
+     */
+    public int browse(NodeId root, ReferenceListener listener) throws InterruptedException {
+        return browse(root, new HashSet<>(), listener);
+    }
+
+    /**
+     * Browses the root and everything reachable from it which is not visited yet. Nodes which are already visited are
+     * still reported as targets of references, but not browsed.
+     * @param root The node to start at, it is browsed even if it is visited already
+     * @param visited The nodes which are browsed or taken care of otherwise, the browsed nodes are added to it
+     * @param listener Receives every reference found
+     * @return The number of visited nodes afterwards
+     * @throws InterruptedException If interrupted while waiting for responses
+     */
+    int browse(NodeId root, Set<NodeId> visited, ReferenceListener listener) throws InterruptedException {
+        return new Traversal(listener, visited).run(root);
+    }
+
+    static BrowseDescription describe(NodeId nodeId) {
+        return describe(nodeId, BrowseResultMask.All);
+    }
+
+    /**
+     * @param nodeId The node to browse
+     * @param resultMask What to return about the target nodes besides their ids
+     * @return The description to browse the node like the whole address space is browsed
+     */
+    static BrowseDescription describe(NodeId nodeId, BrowseResultMask resultMask) {
+        return new BrowseDescription(
+                nodeId,
+                BrowseDirection.Forward,
+                Identifiers.HierarchicalReferences,
+                true,
+                NODE_CLASS_MASK,
+                uint(resultMask.getValue())
+        );
+    }
+
+    /**
+     * State of a single run of {@link #browse(NodeId, ReferenceListener)}. Only the thread running the browse
+     * touches it, responses are handed over through the completed queue.
+     */
+    private class Traversal {
+        private final ReferenceListener listener;
+        private final ArrayDeque<NodeId> toBrowse = new ArrayDeque<>();
+        private final ArrayDeque<Continuation> toContinue = new ArrayDeque<>();
+        private final Set<NodeId> visited;
+        private final BlockingQueue<Completed> completed = new LinkedBlockingQueue<>();
+        private int inFlight = 0;
+        private int nodesPerRequest = maxNodesPerRequest;
+        private boolean limitReported = false;
+
+        private Traversal(ReferenceListener listener, Set<NodeId> visited) {
+            this.listener = listener;
+            this.visited = visited;
+        }
+
+        private int run(NodeId root) throws InterruptedException {
+            visited.add(root);
+            toBrowse.add(root);
+            while (!toBrowse.isEmpty() || !toContinue.isEmpty() || inFlight > 0) {
+                while (inFlight < maxParallelRequests && (!toBrowse.isEmpty() || !toContinue.isEmpty())) {
+                    //Continuation points hold resources on the server, so they are followed first
+                    if (!toContinue.isEmpty()) {
+                        sendBrowseNext();
+                    } else {
+                        sendBrowse();
+                    }
+                }
+                process(completed.take());
+            }
+            return visited.size();
+        }
+
+        private void sendBrowse() {
+            List<NodeId> sources = new ArrayList<>();
+            List<BrowseDescription> descriptions = new ArrayList<>();
+            while (sources.size() < nodesPerRequest && !toBrowse.isEmpty()) {
+                NodeId nodeId = toBrowse.poll();
+                sources.add(nodeId);
+                descriptions.add(describe(nodeId));
+            }
+            inFlight++;
+            browseRequests.track(client.browse(DEFAULT_VIEW, MAX_REFERENCES_PER_NODE, descriptions)).whenComplete(
+                    (BrowseResponse response, Throwable error) -> completed.add(new Completed(sources, null,
+                            response != null ? response.getResults() : null, error)));
+        }
+
+        private void sendBrowseNext() {
+            List<Continuation> continuations = new ArrayList<>();
+            List<ByteString> continuationPoints = new ArrayList<>();
+            while (continuations.size() < nodesPerRequest && !toContinue.isEmpty()) {
+                Continuation continuation = toContinue.poll();
+                continuations.add(continuation);
+                continuationPoints.add(continuation.continuationPoint);
+            }
+            List<NodeId> sources = new ArrayList<>();
+            continuations.forEach(continuation -> sources.add(continuation.source));
+            inFlight++;
+            browseRequests.track(client.browseNext(false, continuationPoints)).whenComplete(
+                    (BrowseNextResponse response, Throwable error) -> completed.add(new Completed(sources,
+                            continuations, response != null ? response.getResults() : null, error)));
+        }
+
+        private void process(Completed response) {
+            inFlight--;
+            if (response.error != null || response.results == null) {
+                handleFailedRequest(response);
+                return;
+            }
+            ScanProgress.nodesBrowsed(Math.min(response.results.length, response.sources.size()));
+            for (int i = 0; i < response.results.length && i < response.sources.size(); i++) {
+                processResult(response.sources.get(i), response.results[i]);
+            }
+        }
+
+        private void handleFailedRequest(Completed response) {
+            long status = response.error == null ? StatusCodes.Bad_UnexpectedError
+                    : UaException.extract(response.error).map(e -> e.getStatusCode().getValue())
+                            .orElse(StatusCodes.Bad_UnexpectedError);
+            if (status == StatusCodes.Bad_TooManyOperations && response.sources.size() > 1) {
+                //The server allows less nodes per request, try again with smaller requests
+                nodesPerRequest = Math.max(1, response.sources.size() / 2);
+                logger.debug("Server refused {} nodes per request, using {}.", response.sources.size(),
+                        nodesPerRequest);
+                if (response.continuations != null) {
+                    response.continuations.forEach(toContinue::addFirst);
+                } else {
+                    response.sources.forEach(toBrowse::addFirst);
+                }
+                return;
+            }
+            logger.debug("Browsing {} nodes failed: {}", response.sources.size(),
+                    response.error != null ? response.error.getMessage() : "no results");
+        }
+
+        private void processResult(NodeId source, BrowseResult result) {
+            if (result.getStatusCode() != null && result.getStatusCode().isBad()) {
+                logger.debug("Browsing nodeId={} failed: {}", source, result.getStatusCode());
+                return;
+            }
+            ReferenceDescription[] references = result.getReferences();
+            if (references != null) {
+                for (ReferenceDescription reference : references) {
+                    listener.onReference(source, reference);
+                    if (reference.getNodeClass() != NodeClass.Method) {
+                        reference.getNodeId().local().ifPresent(this::enqueue);
+                    }
+                }
+            }
+            ByteString continuationPoint = result.getContinuationPoint();
+            if (continuationPoint != null && continuationPoint.isNotNull() && continuationPoint.length() > 0) {
+                toContinue.add(new Continuation(source, continuationPoint));
+            }
+        }
+
+        private void enqueue(NodeId nodeId) {
+            if (visited.size() >= maxNodes) {
+                if (!limitReported) {
+                    limitReported = true;
+                    logger.info("Stopped browsing after {} nodes.", maxNodes);
+                }
+                return;
+            }
+            if (visited.add(nodeId)) {
+                toBrowse.add(nodeId);
+            }
+        }
+    }
+
+    private static class Continuation {
+        private final NodeId source;
+        private final ByteString continuationPoint;
+
+        private Continuation(NodeId source, ByteString continuationPoint) {
+            this.source = source;
+            this.continuationPoint = continuationPoint;
+        }
+    }
+
+    private static class Completed {
+        private final List<NodeId> sources;
+        private final List<Continuation> continuations;
+        private final BrowseResult[] results;
+        private final Throwable error;
+
+        private Completed(List<NodeId> sources, List<Continuation> continuations, BrowseResult[] results,
+                          Throwable error) {
+            this.sources = sources;
+            this.continuations = continuations;
+            this.results = results;
+            this.error = error;
+        }
+    }
+}
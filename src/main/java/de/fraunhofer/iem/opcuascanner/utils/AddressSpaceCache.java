@@ -0,0 +1,47 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+
+/**
+ * Holds the address space of one endpoint, so it is browsed fully only once, no matter how many identities are tested
+ * on the endpoint.
+ *
+ * The address space is browsed with the first identity allowed to browse. If identities see different parts of the
+ * address space, the snapshot shows the part visible to that identity.
+ */
+public class AddressSpaceCache {
+
+    private AddressSpaceSnapshot snapshot;
+
+    public AddressSpaceCache() {
+        this(null);
+    }
+
+    /**
+     * @param snapshot The address space as known from before, or null if it is not known
+     */
+    AddressSpaceCache(AddressSpaceSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The snapshot of the address space, or null if it was not browsed yet
+     */
+    public synchronized AddressSpaceSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Browses the full address space with the client, unless this was already done. Other identities wait for the
+     * browse to finish instead of browsing themselves.
+     * @param client The client to browse with, if needed
+     * @return The snapshot of the address space
+     * @throws InterruptedException If interrupted while browsing
+     */
+    synchronized AddressSpaceSnapshot getOrBrowse(OpcUaClient client) throws InterruptedException {
+        if (snapshot == null) {
+            snapshot = BrowseUtil.browseFully(client);
+        }
+        return snapshot;
+    }
+}
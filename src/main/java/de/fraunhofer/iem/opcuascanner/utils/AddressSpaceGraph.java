@@ -0,0 +1,349 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The browsed address space of a server, stored compactly enough to keep millions of nodes in memory.
+ *
+ * Every node gets an int index in the order it was found, the root has index 0. Node class, browse name and access
+ * level are stored in one array each, indexed by node. The references are stored in compressed sparse rows: the
+ * targets of node i are {@code targets[offsets[i]]} up to, but not including, {@code targets[offsets[i + 1]]}.
+ *
+ * Besides the NodeId objects and the browse names, which are shared between equal names, a node costs two
+ * references, an int offset and two bytes, and a reference costs one int. The index from node id to node is an int
+ * table kept between a quarter and half full, so it adds 8 to 16 bytes per node and no object. It is handed over by
+ * the builder, or built on the first lookup for a graph read from a file.
+ */
+public class AddressSpaceGraph {
+
+    /**
+     * Bit of the access level which is set if the current value of a variable can be written
+     */
+    public static final int ACCESS_LEVEL_CURRENT_WRITE = 0x02;
+
+    private static final NodeClass[] NODE_CLASSES = NodeClass.values();
+
+    private final NodeId[] nodeIds;
+    private volatile NodeIndex indices;
+    private final byte[] nodeClasses;
+    private final String[] browseNames;
+    private final byte[] accessLevels;
+    private final int[] offsets;
+    private final int[] targets;
+
+    /**
+     * @param nodeIds The id of every node, the root first
+     * @param nodeClasses The ordinal of the node class of every node
+     * @param browseNames The browse name of every node
+     * @param accessLevels The access level of every node
+     * @param offsets Where the targets of every node start in the targets, with the number of references at the end
+     * @param targets The indices of the targets of all references, grouped by source node
+     */
+    AddressSpaceGraph(NodeId[] nodeIds, byte[] nodeClasses, String[] browseNames, byte[] accessLevels, int[] offsets,
+                      int[] targets) {
+        this(nodeIds, null, nodeClasses, browseNames, accessLevels, offsets, targets);
+    }
+
+    private AddressSpaceGraph(NodeId[] nodeIds, NodeIndex indices, byte[] nodeClasses, String[] browseNames,
+                              byte[] accessLevels, int[] offsets, int[] targets) {
+        this.nodeIds = nodeIds;
+        this.indices = indices;
+        this.nodeClasses = nodeClasses;
+        this.browseNames = browseNames;
+        this.accessLevels = accessLevels;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * @param root The node the browse started at
+     * @return A builder for the graph below the root
+     */
+    public static Builder builder(NodeId root) {
+        return new Builder(root);
+    }
+
+    /**
+     * @return The number of nodes, including the root
+     */
+    public int size() {
+        return nodeIds.length;
+    }
+
+    /**
+     * @return The number of references between the nodes
+     */
+    public int getReferenceCount() {
+        return targets.length;
+    }
+
+    /**
+     * @param nodeId The id of a node
+     * @return The index of the node, or -1 if it is not part of the graph
+     */
+    public int indexOf(NodeId nodeId) {
+        NodeIndex index = indices;
+        if (index == null) {
+            synchronized (this) {
+                index = indices;
+                if (index == null) {
+                    index = new NodeIndex(nodeIds.length);
+                    for (int node = 0; node < nodeIds.length; node++) {
+                        index.add(nodeIds, node);
+                    }
+                    indices = index;
+                }
+            }
+        }
+        return index.get(nodeIds, nodeId);
+    }
+
+    public NodeId getNodeId(int node) {
+        return nodeIds[node];
+    }
+
+    public NodeClass getNodeClass(int node) {
+        return NODE_CLASSES[nodeClasses[node]];
+    }
+
+    public String getBrowseName(int node) {
+        return browseNames[node];
+    }
+
+    /**
+     * @param node The index of a variable
+     * @return The access level bits of the variable, 0 for other nodes or if the access level could not be read
+     */
+    public int getAccessLevel(int node) {
+        return accessLevels[node] & 0xFF;
+    }
+
+    void setAccessLevel(int node, int accessLevel) {
+        accessLevels[node] = (byte) accessLevel;
+    }
+
+    /**
+     * @param node The index of a node
+     * @return The number of references of the node
+     */
+    public int getReferenceCount(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /**
+     * @param node The index of a node
+     * @return The indices of the nodes the node references
+     */
+    public int[] getTargets(int node) {
+        return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+    }
+
+    /**
+     * @param nodeClass The node class to look for
+     * @return The ids of all nodes of the class, in the order they were found
+     */
+    public List<NodeId> getNodesOfClass(NodeClass nodeClass) {
+        List<NodeId> nodes = new ArrayList<>();
+        for (int node = 0; node < nodeIds.length; node++) {
+            if (nodeClasses[node] == nodeClass.ordinal()) {
+                nodes.add(nodeIds[node]);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * @return The ids of all variables whose current value can be written, as far as their access level was read
+     */
+    public List<NodeId> getWritableVariables() {
+        List<NodeId> nodes = new ArrayList<>();
+        for (int node = 0; node < nodeIds.length; node++) {
+            if (nodeClasses[node] == NodeClass.Variable.ordinal()
+                    && (accessLevels[node] & ACCESS_LEVEL_CURRENT_WRITE) != 0) {
+                nodes.add(nodeIds[node]);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * @return The raw byte of the node class of the node, for writing the graph to a file
+     */
+    byte getNodeClassOrdinal(int node) {
+        return nodeClasses[node];
+    }
+
+    int getOffset(int node) {
+        return offsets[node];
+    }
+
+    int getTarget(int reference) {
+        return targets[reference];
+    }
+
+    /**
+     * Passes every method together with every node referencing it, so each method can be called on all its objects.
+     * @param consumer Gets the id of the referencing node and of the method
+     */
+    public void forEachMethod(BiConsumer<NodeId, NodeId> consumer) {
+        for (int node = 0; node < nodeIds.length; node++) {
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                if (nodeClasses[targets[i]] == NodeClass.Method.ordinal()) {
+                    consumer.accept(nodeIds[node], nodeIds[targets[i]]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps node ids to nodes without boxing. Holds node + 1 in an int table with open addressing, 0 marks a free
+     * slot, and looks the id up in the node id array to compare it.
+     */
+    private static class NodeIndex {
+        private int[] slots;
+        private int size = 0;
+
+        NodeIndex(int expectedSize) {
+            slots = new int[tableSizeFor(expectedSize)];
+        }
+
+        private static int tableSizeFor(int size) {
+            return Integer.highestOneBit(Math.max(2 * size, 1)) << 1;
+        }
+
+        private static int slotOf(NodeId nodeId, int mask) {
+            int hash = nodeId.hashCode() * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        int get(NodeId[] nodeIds, NodeId nodeId) {
+            int mask = slots.length - 1;
+            for (int slot = slotOf(nodeId, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (nodeIds[slots[slot] - 1].equals(nodeId)) {
+                    return slots[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @param nodeIds The node ids, the id of the node must not be in the index yet
+         * @param node The node to add
+         */
+        void add(NodeId[] nodeIds, int node) {
+            if (2 * (size + 1) > slots.length) {
+                int[] old = slots;
+                slots = new int[tableSizeFor(size + 1)];
+                for (int entry : old) {
+                    if (entry != 0) {
+                        insert(nodeIds, entry);
+                    }
+                }
+            }
+            insert(nodeIds, node + 1);
+            size++;
+        }
+
+        private void insert(NodeId[] nodeIds, int entry) {
+            int mask = slots.length - 1;
+            int slot = slotOf(nodeIds[entry - 1], mask);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry;
+        }
+    }
+
+    /**
+     * Collects the nodes and references while browsing. Not thread-safe, like the browse listener it is fed from.
+     */
+    public static class Builder {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final NodeIndex indices = new NodeIndex(INITIAL_CAPACITY);
+        private final Map<String, String> names = new HashMap<>();
+        private NodeId[] nodeIds = new NodeId[INITIAL_CAPACITY];
+        private byte[] nodeClasses = new byte[INITIAL_CAPACITY];
+        private String[] browseNames = new String[INITIAL_CAPACITY];
+        private int size = 0;
+
+        private int[] sources = new int[INITIAL_CAPACITY];
+        private int[] targets = new int[INITIAL_CAPACITY];
+        private int references = 0;
+
+        private Builder(NodeId root) {
+            intern(root, NodeClass.Object, null);
+        }
+
+        /**
+         * Adds a reference and its target node. References to nodes of other servers are left out.
+         * @param source The node the reference belongs to, it must have been added as target before or be the root
+         * @param reference The reference found while browsing the source
+         */
+        public void addReference(NodeId source, ReferenceDescription reference) {
+            int sourceIndex = indices.get(nodeIds, source);
+            if (sourceIndex == -1 || !reference.getNodeId().local().isPresent()) {
+                return;
+            }
+            String name = reference.getBrowseName() != null ? reference.getBrowseName().getName() : null;
+            int target = intern(reference.getNodeId().local().get(), reference.getNodeClass(), name);
+            if (references == sources.length) {
+                sources = Arrays.copyOf(sources, 2 * references);
+                targets = Arrays.copyOf(targets, 2 * references);
+            }
+            sources[references] = sourceIndex;
+            targets[references] = target;
+            references++;
+        }
+
+        private int intern(NodeId nodeId, NodeClass nodeClass, String browseName) {
+            int known = indices.get(nodeIds, nodeId);
+            if (known != -1) {
+                return known;
+            }
+            if (size == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * size);
+                nodeClasses = Arrays.copyOf(nodeClasses, 2 * size);
+                browseNames = Arrays.copyOf(browseNames, 2 * size);
+            }
+            nodeIds[size] = nodeId;
+            nodeClasses[size] = (byte) (nodeClass != null ? nodeClass : NodeClass.Unspecified).ordinal();
+            //Many nodes share names like "EngineeringUnits", store each name only once
+            browseNames[size] = browseName == null ? null : names.computeIfAbsent(browseName, name -> name);
+            indices.add(nodeIds, size);
+            return size++;
+        }
+
+        /**
+         * Hands the index of the nodes over to the graph, so the builder must not be used afterwards.
+         * @return The graph of all references added so far
+         */
+        public AddressSpaceGraph build() {
+            int[] offsets = new int[size + 1];
+            int[] sortedTargets = new int[references];
+            //Count the references of every node, then place each reference behind those of the nodes before
+            for (int i = 0; i < references; i++) {
+                offsets[sources[i] + 1]++;
+            }
+            for (int node = 0; node < size; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] next = Arrays.copyOf(offsets, size);
+            for (int i = 0; i < references; i++) {
+                sortedTargets[next[sources[i]]++] = targets[i];
+            }
+            //The trimmed copy holds the same node at every index, so the index stays valid for it
+            return new AddressSpaceGraph(Arrays.copyOf(nodeIds, size), indices, Arrays.copyOf(nodeClasses, size),
+                    Arrays.copyOf(browseNames, size), new byte[size], offsets, sortedTargets);
+        }
+    }
+}
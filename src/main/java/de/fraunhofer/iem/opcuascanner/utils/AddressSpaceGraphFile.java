@@ -0,0 +1,180 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes an {@link AddressSpaceGraph} in a compact binary format through memory mapped files.
+ *
+ * The file starts with a magic number, the format version, the endpoint url and application uri it was browsed from,
+ * and the number of nodes and references. Then for every node follow its id, node class, browse name and access
+ * level, and at last the offsets and targets of the references. Strings are stored as their length followed by their
+ * UTF-8 bytes, a length of -1 stands for null.
+ */
+class AddressSpaceGraphFile {
+
+    private static final int MAGIC = 0x4F554147;
+    private static final int VERSION = 1;
+
+    private AddressSpaceGraphFile() {
+        //Do not instantiate this, this a util class.
+        //Private constructor hides implicit public one
+    }
+
+    /**
+     * Writes the graph to a temporary file next to the file and then replaces the file, so readers never see half a
+     * graph, even if several endpoints of the same server are written at once.
+     * @param file The file to write
+     * @param endpointUrl The url of the endpoint the graph was browsed from
+     * @param applicationUri The application uri of the server the graph was browsed from
+     * @param graph The graph to write
+     * @throws IOException If the file can not be written
+     */
+    static void write(Path file, String endpointUrl, String applicationUri, AddressSpaceGraph graph)
+            throws IOException {
+        byte[][] nodeIds = new byte[graph.size()][];
+        byte[][] browseNames = new byte[graph.size()][];
+        long size = 4L * Integer.BYTES + sizeOf(encode(endpointUrl)) + sizeOf(encode(applicationUri));
+        for (int node = 0; node < graph.size(); node++) {
+            nodeIds[node] = encode(graph.getNodeId(node).toParseableString());
+            browseNames[node] = encode(graph.getBrowseName(node));
+            size += sizeOf(nodeIds[node]) + sizeOf(browseNames[node]) + 2;
+        }
+        size += (graph.size() + 1L + graph.getReferenceCount()) * Integer.BYTES;
+
+        Path temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION);
+                putString(buffer, encode(endpointUrl));
+                putString(buffer, encode(applicationUri));
+                buffer.putInt(graph.size()).putInt(graph.getReferenceCount());
+                for (int node = 0; node < graph.size(); node++) {
+                    putString(buffer, nodeIds[node]);
+                    buffer.put(graph.getNodeClassOrdinal(node));
+                    putString(buffer, browseNames[node]);
+                    buffer.put((byte) graph.getAccessLevel(node));
+                }
+                for (int node = 0; node <= graph.size(); node++) {
+                    buffer.putInt(graph.getOffset(node));
+                }
+                for (int reference = 0; reference < graph.getReferenceCount(); reference++) {
+                    buffer.putInt(graph.getTarget(reference));
+                }
+                buffer.force();
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * @param file The file to read
+     * @param endpointUrl The url of the endpoint the graph is needed for
+     * @param applicationUri The application uri of the server the graph is needed for
+     * @return The graph in the file, or null if it was browsed from another endpoint or server
+     * @throws IOException If the file can not be read or is no valid graph file
+     */
+    static AddressSpaceGraph read(Path file, String endpointUrl, String applicationUri) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not an address space file of this version: " + file);
+            }
+            if (!endpointUrl.equals(getString(buffer)) || !applicationUri.equals(getString(buffer))) {
+                return null;
+            }
+            int size = buffer.getInt();
+            int referenceCount = buffer.getInt();
+            //Every node and reference takes at least four bytes, so larger counts can only come from a corrupt file
+            if (size < 1 || referenceCount < 0 || size > buffer.remaining() / 4
+                    || referenceCount > buffer.remaining() / 4) {
+                throw new IOException("Invalid counts in address space file: " + file);
+            }
+            NodeId[] nodeIds = new NodeId[size];
+            byte[] nodeClasses = new byte[size];
+            String[] browseNames = new String[size];
+            byte[] accessLevels = new byte[size];
+            Map<String, String> names = new HashMap<>();
+            for (int node = 0; node < size; node++) {
+                nodeIds[node] = NodeId.parse(getString(buffer));
+                nodeClasses[node] = (byte) checkIndex(buffer.get(), NodeClass.values().length);
+                String name = getString(buffer);
+                browseNames[node] = name == null ? null : names.computeIfAbsent(name, n -> n);
+                accessLevels[node] = buffer.get();
+            }
+            int[] offsets = new int[size + 1];
+            for (int node = 0; node <= size; node++) {
+                offsets[node] = checkIndex(buffer.getInt(), referenceCount + 1);
+                if (node > 0 && offsets[node] < offsets[node - 1]) {
+                    throw new IOException("Invalid offsets in address space file: " + file);
+                }
+            }
+            int[] targets = new int[referenceCount];
+            for (int reference = 0; reference < referenceCount; reference++) {
+                targets[reference] = checkIndex(buffer.getInt(), size);
+            }
+            return new AddressSpaceGraph(nodeIds, nodeClasses, browseNames, accessLevels, offsets, targets);
+        } catch (RuntimeException e) { //NOSONAR
+            //Thrown for truncated files, indices out of range and node ids which can not be parsed
+            throw new IOException("Corrupt address space file: " + file, e);
+        }
+    }
+
+    private static int checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range " + size);
+        }
+        return index;
+    }
+
+    private static byte[] encode(String string) {
+        return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long sizeOf(byte[] encoded) {
+        return Integer.BYTES + (encoded == null ? 0 : encoded.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] encoded) {
+        if (encoded == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(encoded.length).put(encoded);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a full browse found out about the address space of a server. This is what later identities need, so they do
+ * not have to browse everything again.
+ */
+public class AddressSpaceSnapshot {
+
+    /**
+     * The number of nodes besides the root which later identities browse to check if they may browse
+     */
+    private static final int SAMPLE_SIZE = 8;
+
+    private final AddressSpaceGraph graph;
+    private final List<NodeId> sampleNodes;
+
+    /**
+     * @param graph The browsed address space
+     */
+    AddressSpaceSnapshot(AddressSpaceGraph graph) {
+        this.graph = graph;
+        this.sampleNodes = Collections.unmodifiableList(sample(graph));
+    }
+
+    /**
+     * @return The root and some other nodes spread evenly over the address space, methods are left out since they
+     * can not be browsed further. The same address space always gives the same sample, so repeated scans of a server
+     * can be compared.
+     */
+    private static List<NodeId> sample(AddressSpaceGraph graph) {
+        int[] candidates = new int[graph.size()];
+        int count = 0;
+        for (int node = 1; node < graph.size(); node++) {
+            if (graph.getNodeClass(node) != NodeClass.Method) {
+                candidates[count++] = node;
+            }
+        }
+        List<NodeId> sample = new ArrayList<>();
+        sample.add(graph.getNodeId(0));
+        int sampleSize = Math.min(SAMPLE_SIZE, count);
+        for (int i = 0; i < sampleSize; i++) {
+            //The node in the middle of each of sampleSize equal parts of the candidates
+            sample.add(graph.getNodeId(candidates[(int) ((2L * i + 1) * count / (2L * sampleSize))]));
+        }
+        return sample;
+    }
+
+    public AddressSpaceGraph getGraph() {
+        return graph;
+    }
+
+    public List<NodeId> getSampleNodes() {
+        return sampleNodes;
+    }
+}
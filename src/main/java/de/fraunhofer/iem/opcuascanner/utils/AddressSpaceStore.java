@@ -0,0 +1,84 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import com.google.common.hash.Hashing;
+import de.fraunhofer.iem.opcuascanner.Configuration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Keeps the browsed address spaces of previous scans in a directory, one file per endpoint url and server.
+ */
+class AddressSpaceStore {
+
+    private static final Logger logger = LogManager.getLogger(AddressSpaceStore.class);
+
+    private final Path directory;
+
+    /**
+     * @param directory The directory to keep the files in, it is created when the first address space is saved
+     */
+    AddressSpaceStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return The store in the configured directory, or null if address spaces should not be kept
+     */
+    static AddressSpaceStore fromConfiguration() {
+        String directory = Configuration.getSnapshotDirectory();
+        return directory == null ? null : new AddressSpaceStore(Paths.get(directory));
+    }
+
+    /**
+     * @param endpointUrl The url of the endpoint
+     * @param applicationUri The application uri of the server
+     * @return The address space saved for the endpoint and server, or null if there is none which can be read
+     */
+    AddressSpaceGraph load(String endpointUrl, String applicationUri) {
+        Path file = fileFor(endpointUrl, applicationUri);
+        try {
+            AddressSpaceGraph graph = AddressSpaceGraphFile.read(file, endpointUrl, applicationUri);
+            if (graph != null) {
+                logger.info("Loaded address space of {} with {} nodes from {}", endpointUrl, graph.size(), file);
+            }
+            return graph;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.error("Could not load address space of {}: {}", endpointUrl, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param endpointUrl The url of the endpoint
+     * @param applicationUri The application uri of the server
+     * @param graph The address space of the endpoint, it replaces the saved one
+     */
+    void save(String endpointUrl, String applicationUri, AddressSpaceGraph graph) {
+        try {
+            Files.createDirectories(directory);
+            AddressSpaceGraphFile.write(fileFor(endpointUrl, applicationUri), endpointUrl, applicationUri, graph);
+        } catch (IOException e) {
+            logger.error("Could not save address space of {}: {}", endpointUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * Uses host and port for readable file names, and a hash of url and application uri so different servers behind
+     * the same host and port, or endpoints with different paths, do not collide.
+     */
+    Path fileFor(String endpointUrl, String applicationUri) {
+        String key = endpointUrl + "\n" + applicationUri;
+        String hash = Hashing.sha1().hashString(key, StandardCharsets.UTF_8).toString().substring(0, 16);
+        return directory.resolve("AddressSpaceOf" + OpcuaUtil.getHostAndPortForFileName(endpointUrl) + "_" + hash
+                + ".bin");
+    }
+}
@@ -0,0 +1,240 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Updates an address space saved by a previous scan, browsing fully only where it changed.
+ *
+ * Every saved node with references is browsed once more, many nodes per request and without asking for anything but
+ * the ids of the targets, so the check costs one browse per saved node with references, not per saved node. Targets
+ * which did not fit into a response are fetched with BrowseNext until they differ from the saved ones. Nodes whose
+ * targets are the same as before are taken over from the saved address space.
+ * Nodes whose targets changed are browsed again, together with everything below them. Saved nodes without any
+ * references are not checked, references added to them are only found once their parent changes.
+ */
+class AddressSpaceUpdater {
+
+    private static final Logger logger = LogManager.getLogger(AddressSpaceUpdater.class);
+
+    private final OpcUaClient client;
+    private final AddressSpaceBrowser browser;
+    private final int maxNodesPerRequest;
+    private final int maxParallelRequests;
+
+    /**
+     * @param client The connected client to browse with
+     * @param maxNodesPerRequest The maximum number of nodes browsed with a single request
+     * @param maxParallelRequests The maximum number of requests pending at the same time
+     * @param maxNodes The maximum number of nodes to browse again in changed parts of the address space
+     */
+    AddressSpaceUpdater(OpcUaClient client, int maxNodesPerRequest, int maxParallelRequests, int maxNodes) {
+        this.client = client;
+        this.browser = new AddressSpaceBrowser(client, maxNodesPerRequest, maxParallelRequests, maxNodes);
+        this.maxNodesPerRequest = maxNodesPerRequest;
+        this.maxParallelRequests = maxParallelRequests;
+    }
+
+    /**
+     * Reports the references of the current address space, taken from the saved one where it did not change.
+     * @param saved The address space saved by a previous scan
+     * @param listener Receives every reference of the current address space
+     * @return The number of nodes in the current address space, not counting methods
+     * @throws InterruptedException If interrupted while browsing
+     */
+    int update(AddressSpaceGraph saved, AddressSpaceBrowser.ReferenceListener listener) throws InterruptedException {
+        boolean[] changed = findChangedNodes(saved);
+        int changedNodes = 0;
+        for (boolean nodeChanged : changed) {
+            changedNodes += nodeChanged ? 1 : 0;
+        }
+        logger.info("{} of {} saved nodes of {} changed.", changedNodes, saved.size(),
+                client.getStackClient().getEndpointUrl());
+        return takeOverUnchangedNodes(saved, changed, listener);
+    }
+
+    /**
+     * @param saved The address space saved by a previous scan
+     * @return For every saved node, whether its references changed or could not be checked
+     * @throws InterruptedException If interrupted while browsing
+     */
+    boolean[] findChangedNodes(AddressSpaceGraph saved) throws InterruptedException {
+        boolean[] changed = new boolean[saved.size()];
+        List<Integer> nodesToCheck = new ArrayList<>();
+        for (int node = 0; node < saved.size(); node++) {
+            if (node == 0 || saved.getReferenceCount(node) > 0) {
+                nodesToCheck.add(node);
+            }
+        }
+        List<List<Integer>> batches = Lists.partition(nodesToCheck, maxNodesPerRequest);
+        for (List<List<Integer>> window : Lists.partition(batches, maxParallelRequests)) {
+            List<CompletableFuture<BrowseResponse>> responses = new ArrayList<>();
+            for (List<Integer> batch : window) {
+                List<BrowseDescription> descriptions = new ArrayList<>();
+                batch.forEach(node -> descriptions.add(AddressSpaceBrowser.describe(saved.getNodeId(node),
+                        BrowseResultMask.None)));
+                responses.add(AddressSpaceBrowser.browseRequests.track(client.browse(AddressSpaceBrowser.DEFAULT_VIEW,
+                        AddressSpaceBrowser.MAX_REFERENCES_PER_NODE, descriptions)));
+            }
+            for (int i = 0; i < window.size(); i++) {
+                List<Integer> batch = window.get(i);
+                BrowseResult[] results = null;
+                try {
+                    results = responses.get(i).get().getResults();
+                    ScanProgress.nodesBrowsed(batch.size());
+                } catch (ExecutionException e) {
+                    logger.debug("Checking {} saved nodes failed: {}", batch.size(), e.getMessage());
+                }
+                List<Check> toContinue = new ArrayList<>();
+                for (int j = 0; j < batch.size(); j++) {
+                    Check check = new Check(saved, batch.get(j));
+                    changed[check.node] = results == null || j >= results.length
+                            || !check.compare(results[j], toContinue);
+                }
+                continueChecks(toContinue, changed);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Fetches the remaining targets of nodes whose targets did not fit into a response, until they are complete or
+     * differ from the saved ones.
+     * @param toContinue The checks with a continuation point, which are all unchanged so far
+     * @param changed Set for every node whose targets differ or could not be fetched
+     * @throws InterruptedException If interrupted while browsing
+     */
+    private void continueChecks(List<Check> toContinue, boolean[] changed) throws InterruptedException {
+        while (!toContinue.isEmpty()) {
+            List<Check> continued = new ArrayList<>();
+            for (List<Check> batch : Lists.partition(toContinue, maxNodesPerRequest)) {
+                List<ByteString> continuationPoints = new ArrayList<>();
+                batch.forEach(check -> continuationPoints.add(check.continuationPoint));
+                BrowseResult[] results = null;
+                try {
+                    results = AddressSpaceBrowser.browseRequests.track(client.browseNext(false, continuationPoints))
+                            .get().getResults();
+                } catch (ExecutionException e) {
+                    logger.debug("Continuing the check of {} saved nodes failed: {}", batch.size(), e.getMessage());
+                }
+                for (int j = 0; j < batch.size(); j++) {
+                    Check check = batch.get(j);
+                    changed[check.node] = results == null || j >= results.length
+                            || !check.compare(results[j], continued);
+                }
+            }
+            toContinue = continued;
+        }
+    }
+
+    /**
+     * Compares the targets the server returns for a saved node with the saved targets, over as many responses as
+     * the server splits them into.
+     */
+    private class Check {
+        private final AddressSpaceGraph saved;
+        private final int node;
+        private final Set<NodeId> savedTargets = new HashSet<>();
+        private int targets = 0;
+        private ByteString continuationPoint = null;
+
+        private Check(AddressSpaceGraph saved, int node) {
+            this.saved = saved;
+            this.node = node;
+            for (int target : saved.getTargets(node)) {
+                savedTargets.add(saved.getNodeId(target));
+            }
+        }
+
+        /**
+         * @param result The next part of the targets of the node
+         * @param toContinue Gets this check if the targets are the same so far and more are to be fetched
+         * @return False if the targets differ from the saved ones or could not be fetched
+         */
+        private boolean compare(BrowseResult result, List<Check> toContinue) {
+            continuationPoint = result.getContinuationPoint();
+            boolean hasMore = continuationPoint != null && continuationPoint.isNotNull()
+                    && continuationPoint.length() > 0;
+            boolean same = (result.getStatusCode() == null || !result.getStatusCode().isBad()) && addTargets(result);
+            if (hasMore && same) {
+                toContinue.add(this);
+                return true;
+            }
+            if (hasMore) {
+                //Already known to have changed, free the continuation point
+                client.browseNext(true, Collections.singletonList(continuationPoint));
+            }
+            return same && targets == saved.getReferenceCount(node);
+        }
+
+        private boolean addTargets(BrowseResult result) {
+            ReferenceDescription[] references = result.getReferences();
+            for (int i = 0; references != null && i < references.length; i++) {
+                NodeId target = references[i].getNodeId().local().orElse(null);
+                if (target != null) {
+                    if (!savedTargets.contains(target)) {
+                        return false;
+                    }
+                    targets++;
+                }
+            }
+            return targets <= saved.getReferenceCount(node);
+        }
+    }
+
+    private int takeOverUnchangedNodes(AddressSpaceGraph saved, boolean[] changed,
+                                       AddressSpaceBrowser.ReferenceListener listener) throws InterruptedException {
+        //Shared with the browser, so nodes are neither browsed again nor taken over twice
+        Set<NodeId> visited = new HashSet<>();
+        ArrayDeque<Integer> toTakeOver = new ArrayDeque<>();
+        visited.add(saved.getNodeId(0));
+        toTakeOver.add(0);
+        while (!toTakeOver.isEmpty()) {
+            int node = toTakeOver.poll();
+            NodeId nodeId = saved.getNodeId(node);
+            if (changed[node]) {
+                browser.browse(nodeId, visited, listener);
+                continue;
+            }
+            for (int target : saved.getTargets(node)) {
+                listener.onReference(nodeId, savedReference(saved, target));
+                if (saved.getNodeClass(target) != NodeClass.Method && visited.add(saved.getNodeId(target))) {
+                    toTakeOver.add(target);
+                }
+            }
+        }
+        return visited.size();
+    }
+
+    /**
+     * @return The reference to the saved target, with everything which was saved about the target
+     */
+    private static ReferenceDescription savedReference(AddressSpaceGraph saved, int target) {
+        String name = saved.getBrowseName(target);
+        return new ReferenceDescription(null, true, new ExpandedNodeId(saved.getNodeId(target)),
+                new QualifiedName(0, name), LocalizedText.english(name), saved.getNodeClass(target),
+                ExpandedNodeId.NULL_VALUE);
+    }
+}
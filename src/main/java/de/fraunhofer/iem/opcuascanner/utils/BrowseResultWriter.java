@@ -0,0 +1,22 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+
+/**
+ * Writes the references found while browsing the address space of a server to an XML file.
+ */
+interface BrowseResultWriter extends AutoCloseable {
+
+    /**
+     * @param source The node the reference belongs to
+     * @param reference The reference found while browsing the source
+     */
+    void writeReference(NodeId source, ReferenceDescription reference);
+
+    /**
+     * Finishes the file. Errors are logged, they do not affect the scan.
+     */
+    @Override
+    void close();
+}
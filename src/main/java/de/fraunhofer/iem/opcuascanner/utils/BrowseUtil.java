@@ -1,43 +1,36 @@
 package de.fraunhofer.iem.opcuascanner.utils;
 
+import com.google.common.collect.Lists;
+import de.fraunhofer.iem.opcuascanner.Configuration;
 import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
 import de.fraunhofer.iem.opcuascanner.logic.Authentication;
 import de.fraunhofer.iem.opcuascanner.logic.Privilege;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
-import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseDirection;
-import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
 import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
 import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
-import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
-import static org.eclipse.milo.opcua.stack.core.util.ConversionUtil.toList;
 
 public class BrowseUtil {
 
@@ -50,139 +43,182 @@ public class BrowseUtil {
     }
 
     /**
-     * Try to browse the root node and if that works, create an XML file and try to browse all nodes recursively and
-     * output them to an xml file
+     * Try to browse some nodes to find out if browsing is allowed. If the address space of the endpoint was not browsed
+     * yet, only the root node is tried and if that works, all nodes are browsed breadth-first and output to an xml
+     * file. Otherwise a sample of the nodes found before is tried.
      * @param privileges The privileges to update
      * @param auth The authentication method to update the privileges about
      * @param client The client used to browse
-     * @return Returns a list of found objects that contain methods
+     * @param cache The address space of the endpoint, filled by the first identity allowed to browse
+     * @return Returns the address space, which is known once any identity could browse, otherwise an empty graph
      */
-    public static Map<NodeId, NodeId> tryBrowsing(AccessPrivileges privileges, Authentication auth, OpcUaClient client) {
-        HashMap<NodeId, NodeId> methodNodes = new HashMap<>();
-        //First, try if browsing works at all
+    public static AddressSpaceGraph tryBrowsing(AccessPrivileges privileges, Authentication auth, OpcUaClient client,
+                                                  AddressSpaceCache cache) {
         privileges.setPrivilegeWasTested(Privilege.BROWSE, auth);
-        BrowseDescription browse = new BrowseDescription(
-                Identifiers.RootFolder,
-                BrowseDirection.Forward,
-                Identifiers.References,
-                true,
-                uint(NodeClass.Object.getValue() | NodeClass.Variable.getValue()),
-                uint(BrowseResultMask.All.getValue())
-        );
+        AddressSpaceSnapshot snapshot = cache.getSnapshot();
+        List<NodeId> sampleNodes = snapshot == null ? Collections.singletonList(Identifiers.RootFolder)
+                : snapshot.getSampleNodes();
         try {
-            client.browse(browse).get();
-            privileges.setPrivilegePerAuthentication(Privilege.BROWSE, auth);
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Browsing nodeId={} failed: {}", Identifiers.RootFolder, e.getMessage(), e);
+            if (canBrowseAnyOf(client, sampleNodes, ScanMetrics.privilege(auth, Privilege.BROWSE))){
+                privileges.setPrivilegePerAuthentication(Privilege.BROWSE, auth);
+                //If browsing worked, browse everything once and log the results to an xml file
+                snapshot = cache.getOrBrowse(client);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Browsing nodeIds={} failed: {}", sampleNodes, e.getMessage(), e);
         }
-        //If browsing worked, try to log the results of a full browse to an xml file
-        if (privileges.isPrivilegePerAuthentication(Privilege.BROWSE, auth)){
-            methodNodes.putAll(writeOutXmlFileOfFullBrowse(client));
+        return snapshot == null ? AddressSpaceGraph.builder(Identifiers.RootFolder).build() : snapshot.getGraph();
+    }
+
+    private static boolean canBrowseAnyOf(OpcUaClient client, List<NodeId> nodeIds, StageMetrics metrics)
+            throws InterruptedException, ExecutionException {
+        List<BrowseDescription> descriptions = new ArrayList<>();
+        nodeIds.forEach(nodeId -> descriptions.add(AddressSpaceBrowser.describe(nodeId)));
+        BrowseResult[] results = metrics.track(FutureUtil.withTimeout(client.browse(AddressSpaceBrowser.DEFAULT_VIEW,
+                uint(0), descriptions), Configuration.getOperationTimeoutInMs())).get().getResults();
+        if (results != null){
+            for (BrowseResult result : results){
+                if (result.getStatusCode() == null || result.getStatusCode().isGood()){
+                    return true;
+                }
+            }
         }
-        return methodNodes;
+        return false;
     }
 
-    private static Map<NodeId, NodeId> writeOutXmlFileOfFullBrowse(OpcUaClient client) {
-        HashMap<NodeId, NodeId> methodNodes = new HashMap<>();
-        //Cut off prefix and suffix from endpoint url for filename
-        String endpoint = client.getStackClient().getEndpointUrl();
-        endpoint = endpoint.split(OpcuaUtil.ADDR_PREFIX)[1];
-        endpoint = endpoint.split(OpcuaUtil.ADDR_SUFFIX)[0];
-        if (endpoint.contains(".")){
-            endpoint = endpoint.split(".")[0];
+    /**
+     * Browses all nodes and writes them to an xml file, unless the file already exists
+     * @param client The client with which to browse
+     * @return What was found out about the address space
+     * @throws InterruptedException If interrupted while browsing
+     */
+    static AddressSpaceSnapshot browseFully(OpcUaClient client) throws InterruptedException {
+        //Use host and port of the endpoint url for the filename, so servers on different ports do not collide
+        String endpointUrl = client.getStackClient().getEndpointUrl();
+        String endpoint = OpcuaUtil.getHostAndPortForFileName(endpointUrl);
+        File xmlFile = new File(Configuration.getBrowseResultDirectory(), "BrowseResultOf"+ endpoint + ".xml");
+
+        //If the address space was saved by an earlier scan, only browse where it changed
+        AddressSpaceStore store = AddressSpaceStore.fromConfiguration();
+        String applicationUri = client.getStackClient().getEndpoint()
+                .map(endpointDescription -> endpointDescription.getServer().getApplicationUri()).orElse("");
+        AddressSpaceGraph saved = store == null ? null : store.load(endpointUrl, applicationUri);
+
+        //Do the actual browsing with or without xml file, gather objects with methods
+        AddressSpaceGraph graph;
+        try (BrowseResultWriter writer = openXmlFile(xmlFile)) {
+            graph = browseAllNodes(writer, client, saved);
+        }
+        if (store != null){
+            store.save(endpointUrl, applicationUri, graph);
         }
-        String xmlFileName = "BrowseResultOf"+ endpoint + ".xml";
+        return new AddressSpaceSnapshot(graph);
+    }
 
-        //Make xml file to fill while browsing
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        DocumentBuilder db;
-        Document dom = null;
+    /**
+     * @param xmlFile The file to write the browse results to
+     * @return A writer to the file, or null if the file already exists or can not be written
+     */
+    private static BrowseResultWriter openXmlFile(File xmlFile) {
         try {
-            db = dbf.newDocumentBuilder();
-            dom = db.newDocument();
+            File directory = xmlFile.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()){
+                logger.error("Could not create directory for XML output: {}", directory);
+                return null;
+            }
+            if (!xmlFile.createNewFile()){
+                return null;
+            }
+            if (Configuration.isStreamBrowseResults()){
+                return new StreamingBrowseResultWriter(xmlFile.toPath());
+            }
+            return new DomBrowseResultWriter(xmlFile);
         } catch (ParserConfigurationException e) {
             logger.error("Can't make XML output of browse results.");
+        } catch (IOException e) {
+            logger.error("Could not create XML output file: {}", e.getMessage());
         }
-        Element rootElement = null;
-        if (dom != null){
-            rootElement = dom.createElement("RootFolder");
-            dom.appendChild(rootElement);
-        }
-        //Do the actual browsing with or without document, gather objects with methods
-        try{
-            methodNodes.putAll(browseNode(dom, rootElement, client, Identifiers.RootFolder));
-        } catch (DOMException ex){
-            logger.info("Error writing XML File: {}", ex.getMessage());
-        }
+        return null;
+    }
 
-        //Try to write the xml file
-        if (dom != null) {
-            try {
-                File xmlFile = new File(xmlFileName);
-                if (!xmlFile.createNewFile()){
-                    return methodNodes;
-                }
-                Transformer tr = TransformerFactory.newInstance().newTransformer();
-                tr.setOutputProperty(OutputKeys.INDENT, "yes");
-                tr.setOutputProperty(OutputKeys.METHOD, "xml");
-                tr.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-                tr.transform(new DOMSource(dom),
-                        new StreamResult(new FileOutputStream(xmlFileName)));
-
-            } catch (FileNotFoundException e) {
-                logger.error("File for XML output of browse results not found: {}", e.getMessage());
-            } catch (TransformerException e) {
-                logger.error("Could not write XML output of browse results: {}", e.getMessage());
-            } catch (IOException e) {
-                logger.error("Could not create XML output file: {}", e.getMessage());
+    /**
+     * Browses all nodes below the root folder, each of them once, then reads the access level of all variables
+     * @param writer The writer to write the found references to, may be null
+     * @param client The client with which to browse
+     * @param saved The address space saved by an earlier scan, or null to browse everything
+     * @return The browsed address space
+     * @throws InterruptedException If interrupted while browsing
+     */
+    private static AddressSpaceGraph browseAllNodes(BrowseResultWriter writer, OpcUaClient client,
+                                                    AddressSpaceGraph saved) throws InterruptedException {
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(Identifiers.RootFolder);
+        AddressSpaceBrowser.ReferenceListener listener = (source, rd) -> {
+            if (writer != null){
+                writer.writeReference(source, rd);
             }
+            builder.addReference(source, rd);
+        };
+        int browsedNodes;
+        if (saved == null){
+            AddressSpaceBrowser browser = new AddressSpaceBrowser(client, Configuration.getMaxNodesPerBrowse(),
+                    Configuration.getMaxParallelBrowses(), Configuration.getMaxBrowsedNodes());
+            browsedNodes = browser.browse(Identifiers.RootFolder, listener);
+        } else {
+            AddressSpaceUpdater updater = new AddressSpaceUpdater(client, Configuration.getMaxNodesPerBrowse(),
+                    Configuration.getMaxParallelBrowses(), Configuration.getMaxBrowsedNodes());
+            browsedNodes = updater.update(saved, listener);
         }
-        return methodNodes;
+        AddressSpaceGraph graph = builder.build();
+        readAccessLevels(client, graph, saved);
+        logger.info("Browsed {} nodes of {}", browsedNodes, client.getStackClient().getEndpointUrl());
+        return graph;
     }
 
-
     /**
-     * Browses a node and all its children
-     * @param document The XML document to write the data to
-     * @param parent The parent node of the current elements
-     * @param client The client with which to browse
-     * @param browseRoot The id of the node to browse
+     * Reads the access level of all variables in the graph, several requests at a time. Variables whose access level
+     * can not be read keep an access level of 0. Variables which were saved before keep their saved access level.
      */
-    private static Map<NodeId, NodeId> browseNode(Document document, Element parent, OpcUaClient client, NodeId browseRoot) {
-        HashMap<NodeId, NodeId> methodNodes = new HashMap<>();
-        BrowseDescription browse = new BrowseDescription(
-                browseRoot,
-                BrowseDirection.Forward,
-                Identifiers.References,
-                true,
-                uint(NodeClass.Object.getValue() | NodeClass.Variable.getValue()),
-                uint(BrowseResultMask.All.getValue())
-        );
-
-        try {
-            BrowseResult browseResult = client.browse(browse).get();
-
-            List<ReferenceDescription> references = toList(browseResult.getReferences());
-
-            for (ReferenceDescription rd : references) {
-                if (document != null && parent != null){
-                    Element e = document.createElement("reference");
-                    e.appendChild(document.createTextNode(rd.getBrowseName().getName()));
-                    parent.appendChild(e);
-                    rd.getNodeId().local().ifPresent(nodeId -> browseNode(document, e, client, nodeId));
-                    //Check if you find any methods while you're browsing, to test CALL later
-                    if (rd.getNodeClass().equals(NodeClass.Method)){
-                        rd.getNodeId().local().ifPresent(nodeId -> methodNodes.put(browseRoot, nodeId));
-                    }
+    private static void readAccessLevels(OpcUaClient client, AddressSpaceGraph graph, AddressSpaceGraph saved)
+            throws InterruptedException {
+        List<Integer> variables = new ArrayList<>();
+        for (int node = 0; node < graph.size(); node++){
+            if (graph.getNodeClass(node) == NodeClass.Variable){
+                int savedNode = saved == null ? -1 : saved.indexOf(graph.getNodeId(node));
+                if (savedNode >= 0){
+                    graph.setAccessLevel(node, saved.getAccessLevel(savedNode));
+                } else {
+                    variables.add(node);
+                }
+            }
+        }
+        int batchSize = Configuration.getMaxNodesPerBrowse();
+        List<List<Integer>> batches = Lists.partition(variables, batchSize);
+        for (List<List<Integer>> window : Lists.partition(batches, Configuration.getMaxParallelBrowses())){
+            List<CompletableFuture<ReadResponse>> responses = new ArrayList<>();
+            for (List<Integer> batch : window){
+                List<ReadValueId> readValueIds = new ArrayList<>();
+                batch.forEach(node -> readValueIds.add(new ReadValueId(graph.getNodeId(node),
+                        AttributeId.AccessLevel.uid(), null, QualifiedName.NULL_VALUE)));
+                responses.add(client.read(0.0, TimestampsToReturn.Neither, readValueIds));
+            }
+            for (int i = 0; i < window.size(); i++){
+                try {
+                    setAccessLevels(graph, window.get(i), responses.get(i).get().getResults());
+                } catch (ExecutionException e) {
+                    logger.debug("Reading access levels failed: {}", e.getMessage());
                 }
+            }
+        }
+    }
 
-                // recursively browse to children
-                rd.getNodeId().local().ifPresent(nodeId ->
-                        methodNodes.putAll(browseNode(null, null, client, nodeId)));
+    private static void setAccessLevels(AddressSpaceGraph graph, List<Integer> nodes, DataValue[] values) {
+        for (int i = 0; values != null && i < values.length && i < nodes.size(); i++){
+            Object value = values[i].getValue().getValue();
+            if (values[i].getStatusCode() != null && values[i].getStatusCode().isGood() && value instanceof UByte){
+                graph.setAccessLevel(nodes.get(i), ((UByte) value).intValue());
             }
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Browsing nodeId={} failed: {}", browseRoot, e.getMessage(), e);
         }
-        return methodNodes;
     }
 }
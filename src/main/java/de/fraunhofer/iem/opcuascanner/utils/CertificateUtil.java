@@ -54,7 +54,8 @@ public class CertificateUtil {
 
     private static final Logger logger = LogManager.getLogger(CertificateUtil.class);
 
-    // Store all the generated stuff, so we do not keep generating it, for example when testing multiple endpoints
+    // Store all the generated stuff, so we do not keep generating it, for example when testing multiple endpoints.
+    // The getters are synchronized, since endpoints are tested in parallel and must all use the same key pair.
     private static KeyPair keyPair;
     private static X509Certificate workingSelfSignedCertificate;
     private static X509Certificate expiredCertificate;
@@ -67,7 +68,7 @@ public class CertificateUtil {
         //Private constructor hides implicit public one
     }
 
-    public static KeyPair getOrGenerateRsaKeyPair(){
+    public static synchronized KeyPair getOrGenerateRsaKeyPair(){
         if (keyPair == null){
             try {
                 KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
@@ -80,7 +81,7 @@ public class CertificateUtil {
         return keyPair;
     }
 
-    public static X509Certificate getWorkingSelfSignedCertificate(){
+    public static synchronized X509Certificate getWorkingSelfSignedCertificate(){
         if (workingSelfSignedCertificate == null) {
             keyPair = getOrGenerateRsaKeyPair();
             try {
@@ -92,7 +93,7 @@ public class CertificateUtil {
         return workingSelfSignedCertificate;
     }
 
-    public static X509Certificate getExpiredCertificate(){
+    public static synchronized X509Certificate getExpiredCertificate(){
         if (expiredCertificate == null) {
             keyPair = getOrGenerateRsaKeyPair();
             try {
@@ -104,7 +105,7 @@ public class CertificateUtil {
         return expiredCertificate;
     }
 
-    public static X509Certificate getCertificateThatsNotYetValid(){
+    public static synchronized X509Certificate getCertificateThatsNotYetValid(){
         if (notYetValidCertificate == null) {
             keyPair = getOrGenerateRsaKeyPair();
             try {
@@ -116,7 +117,7 @@ public class CertificateUtil {
         return notYetValidCertificate;
     }
 
-    public static X509Certificate generateCertificateWithWrongKeyUsage(){
+    public static synchronized X509Certificate generateCertificateWithWrongKeyUsage(){
         if (certificateWithWrongKeyUsage == null) {
             keyPair = getOrGenerateRsaKeyPair();
             try {
@@ -129,7 +130,7 @@ public class CertificateUtil {
     }
 
     //Part below taken from eclipse milo with minor alterations
-    private static X509Certificate generateSelfSigned(Date notBefore, Date notAfter, boolean correctKeyUsage)
+    static X509Certificate generateSelfSigned(Date notBefore, Date notAfter, boolean correctKeyUsage)
             throws CertIOException, NoSuchAlgorithmException, OperatorCreationException, CertificateException {
 
         X500NameBuilder nameBuilder = new X500NameBuilder();
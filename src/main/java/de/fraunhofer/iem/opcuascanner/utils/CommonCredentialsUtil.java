@@ -1,7 +1,13 @@
 package de.fraunhofer.iem.opcuascanner.utils;
 
+import de.fraunhofer.iem.opcuascanner.Configuration;
 import de.fraunhofer.iem.opcuascanner.logic.Login;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,6 +19,8 @@ import java.util.List;
  */
 public class CommonCredentialsUtil {
 
+    private static final Logger logger = LogManager.getLogger(CommonCredentialsUtil.class);
+
     private CommonCredentialsUtil() {
         //Do not instantiate this, this a util class.
         //Private constructor hides implicit public one
@@ -34,4 +42,33 @@ public class CommonCredentialsUtil {
         logins.add(new Login("admin", "server"));
     }
 
+    /**
+     * The logins to try on every endpoint: The common logins above, followed by the logins from the credential
+     * files in the {@link Configuration}, if any.
+     * @return A source of all logins to try
+     */
+    public static CredentialSource getCredentialSource() {
+        List<CredentialSource> sources = new ArrayList<>();
+        sources.add(CredentialSource.of(logins));
+        if (isReadable(Configuration.getCredentialsFileName())) {
+            sources.add(CredentialSource.fromLoginFile(Paths.get(Configuration.getCredentialsFileName())));
+        }
+        if (isReadable(Configuration.getUsernamesFileName()) && isReadable(Configuration.getPasswordsFileName())) {
+            sources.add(CredentialSource.combining(new MappedLines(Paths.get(Configuration.getUsernamesFileName())),
+                    new MappedLines(Paths.get(Configuration.getPasswordsFileName()))));
+        }
+        return CredentialSource.concat(sources);
+    }
+
+    private static boolean isReadable(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        if (!Files.isReadable(Paths.get(fileName))) {
+            logger.error("Can not read credentials from {}, skipping it.", fileName);
+            return false;
+        }
+        return true;
+    }
+
 }
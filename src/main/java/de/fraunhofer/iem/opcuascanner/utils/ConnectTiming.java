@@ -0,0 +1,209 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long the {@link PortSweeper} waits for a connect and how many connects it keeps pending, from the
+ * answers it got so far. Only used by the thread running the sweep.
+ *
+ * Round trip times are measured per /24 subnet from connects which were accepted or refused, and the timeout of a
+ * subnet is derived from them like the retransmission timeout of TCP: the smoothed round trip time plus four times its
+ * variation, within the minimum and maximum timeout. Subnets without measurements wait for the initial timeout, or
+ * longer if the subnets measured so far are slower.
+ *
+ * The number of pending connects is controlled like a TCP congestion window. It starts at the maximum. A connect
+ * to a host which answered before but that is not answered is tried once more, since the port may be filtered by a
+ * firewall or the connect may have been lost. Only if the retry is answered, the first connect is taken as lost.
+ * A loss halves the window, at most once for all connects started before the last decrease. Every answer raises the
+ * window again, by one per answer up to the level of the last decrease and by one per window of answers above it.
+ * Connects to addresses which never answered are not counted either way, since most addresses of a sweep are not in
+ * use.
+ */
+class ConnectTiming {
+
+    /**
+     * The window is not made smaller than this, unless the maximum is smaller
+     */
+    static final int MIN_WINDOW = 16;
+
+    private static final long CLOCK_GRANULARITY_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean adaptive;
+    private final int maxWindow;
+    private final long initialTimeoutInNanos;
+    private final long minTimeoutInNanos;
+    private final long maxTimeoutInNanos;
+
+    private final Map<Long, RttEstimator> subnets = new HashMap<>();
+    private final RttEstimator allSubnets = new RttEstimator();
+    private final Set<InetAddress> answeringHosts = new HashSet<>();
+    /**
+     * Targets which are tried again after a timeout, with the time the first connect was started
+     */
+    private final Map<InetSocketAddress, Long> retries = new HashMap<>();
+
+    private double window;
+    private double slowStartThreshold;
+    private boolean decreased = false;
+    private long lastDecreaseAt;
+
+    /**
+     * Fixed timing: every connect waits for the timeout and the window is always the maximum.
+     * @param maxWindow The maximum number of connects pending at the same time
+     * @param timeoutInMs The time after which a pending connect is given up
+     */
+    ConnectTiming(int maxWindow, int timeoutInMs) {
+        this(false, maxWindow, timeoutInMs, timeoutInMs, timeoutInMs);
+    }
+
+    /**
+     * Adaptive timing.
+     * @param maxWindow The maximum number of connects pending at the same time
+     * @param initialTimeoutInMs The time after which a connect to a subnet without measurements is given up
+     * @param minTimeoutInMs The shortest timeout derived from measurements
+     * @param maxTimeoutInMs The longest timeout derived from measurements
+     */
+    ConnectTiming(int maxWindow, int initialTimeoutInMs, int minTimeoutInMs, int maxTimeoutInMs) {
+        this(true, maxWindow, initialTimeoutInMs, minTimeoutInMs, maxTimeoutInMs);
+    }
+
+    private ConnectTiming(boolean adaptive, int maxWindow, int initialTimeoutInMs, int minTimeoutInMs,
+                          int maxTimeoutInMs) {
+        if (maxWindow < 1 || minTimeoutInMs < 1 || minTimeoutInMs > maxTimeoutInMs
+                || initialTimeoutInMs < minTimeoutInMs || initialTimeoutInMs > maxTimeoutInMs) {
+            throw new IllegalArgumentException("Window and timeouts must be positive, with the initial timeout "
+                    + "between the minimum and maximum timeout.");
+        }
+        this.adaptive = adaptive;
+        this.maxWindow = maxWindow;
+        this.initialTimeoutInNanos = TimeUnit.MILLISECONDS.toNanos(initialTimeoutInMs);
+        this.minTimeoutInNanos = TimeUnit.MILLISECONDS.toNanos(minTimeoutInMs);
+        this.maxTimeoutInNanos = TimeUnit.MILLISECONDS.toNanos(maxTimeoutInMs);
+        this.window = maxWindow;
+        this.slowStartThreshold = maxWindow;
+    }
+
+    /**
+     * @return The number of connects which may be pending at the same time
+     */
+    int getWindow() {
+        return (int) window;
+    }
+
+    /**
+     * @param target The address to connect to
+     * @return The time after which the connect is given up
+     */
+    long getTimeoutInNanos(InetSocketAddress target) {
+        if (!adaptive) {
+            return initialTimeoutInNanos;
+        }
+        RttEstimator subnet = subnets.get(subnetOf(target.getAddress()));
+        if (subnet != null) {
+            return subnet.getTimeoutInNanos();
+        }
+        //Unknown subnets may be behind the same slow link as the ones measured, but are not expected to be faster
+        return allSubnets.hasSamples() ? Math.max(initialTimeoutInNanos, allSubnets.getTimeoutInNanos())
+                : initialTimeoutInNanos;
+    }
+
+    /**
+     * Records that the target accepted or refused the connect.
+     * @param target The address connected to
+     * @param startedAt The time the connect was started, from {@link System#nanoTime()}
+     * @param answeredAt The time the answer arrived, from {@link System#nanoTime()}
+     */
+    void onAnswer(InetSocketAddress target, long startedAt, long answeredAt) {
+        if (!adaptive) {
+            return;
+        }
+        Long lostConnectStartedAt = retries.remove(target);
+        if (lostConnectStartedAt != null) {
+            //It is unclear which of the two connects was answered, so the round trip time is not sampled
+            onLoss(lostConnectStartedAt, answeredAt);
+            return;
+        }
+        long rtt = answeredAt - startedAt;
+        subnets.computeIfAbsent(subnetOf(target.getAddress()), subnet -> new RttEstimator()).sample(rtt);
+        allSubnets.sample(rtt);
+        answeringHosts.add(target.getAddress());
+        if (window < slowStartThreshold) {
+            window = Math.min(maxWindow, window + 1);
+        } else {
+            window = Math.min(maxWindow, window + 1 / window);
+        }
+    }
+
+    /**
+     * Records that the target did not answer before the timeout.
+     * @param target The address connected to
+     * @param startedAt The time the connect was started, from {@link System#nanoTime()}
+     * @return Whether the connect should be tried once more
+     */
+    boolean onTimeout(InetSocketAddress target, long startedAt) {
+        if (!adaptive || !answeringHosts.contains(target.getAddress())) {
+            return false;
+        }
+        if (retries.remove(target) != null) {
+            //The retry was not answered either, so the port is filtered
+            return false;
+        }
+        retries.put(target, startedAt);
+        return true;
+    }
+
+    private void onLoss(long lostConnectStartedAt, long detectedAt) {
+        if (decreased && lostConnectStartedAt - lastDecreaseAt <= 0) {
+            return;
+        }
+        //The connect was started after the last decrease, so the smaller window did not prevent the loss
+        window = Math.max(Math.min(MIN_WINDOW, maxWindow), window / 2);
+        slowStartThreshold = window;
+        decreased = true;
+        lastDecreaseAt = detectedAt;
+    }
+
+    private static long subnetOf(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return ((bytes[0] & 0xffL) << 16) | ((bytes[1] & 0xffL) << 8) | (bytes[2] & 0xffL);
+        }
+        //The /64 prefix of IPv6 addresses, above all IPv4 subnets
+        return (1L << 32) | (Arrays.hashCode(Arrays.copyOf(bytes, 8)) & 0xffffffffL);
+    }
+
+    /**
+     * Smoothed round trip time and its variation as in RFC 6298
+     */
+    private class RttEstimator {
+        private double smoothedRtt = -1;
+        private double rttVariation;
+
+        private boolean hasSamples() {
+            return smoothedRtt >= 0;
+        }
+
+        private void sample(long rtt) {
+            if (smoothedRtt < 0) {
+                smoothedRtt = rtt;
+                rttVariation = rtt / 2.0;
+            } else {
+                rttVariation = 0.75 * rttVariation + 0.25 * Math.abs(smoothedRtt - rtt);
+                smoothedRtt = 0.875 * smoothedRtt + 0.125 * rtt;
+            }
+        }
+
+        private long getTimeoutInNanos() {
+            long timeout = (long) (smoothedRtt + Math.max(CLOCK_GRANULARITY_IN_NANOS, 4 * rttVariation));
+            return Math.max(minTimeoutInNanos, Math.min(maxTimeoutInNanos, timeout));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+
+import de.fraunhofer.iem.opcuascanner.logic.Login;
+
+/**
+ * The logins to try on an endpoint.
+ *
+ * The logins are produced lazily while iterating, so even sources with millions of logins do not sit on the heap.
+ * Every call to {@link #iterator()} starts from the first login again, which is needed since every endpoint gets
+ * its own iterator.
+ */
+public interface CredentialSource extends Iterable<Login> {
+
+    /**
+     * @param logins The logins to try, in this order
+     * @return A source of the given logins
+     */
+    static CredentialSource of(Iterable<Login> logins) {
+        return logins::iterator;
+    }
+
+    /**
+     * Reads logins from a file with one login per line. Username and password are separated by the first colon in
+     * the line, lines without a colon are skipped.
+     * @param file The file to read
+     * @return A source of the logins in the file
+     */
+    static CredentialSource fromLoginFile(Path file) {
+        Iterable<String> lines = new MappedLines(file);
+        return () -> Iterators.filter(Iterators.transform(lines.iterator(), line -> {
+            int separator = line.indexOf(':');
+            if (separator < 0) {
+                return null;
+            }
+            return new Login(line.substring(0, separator), line.substring(separator + 1));
+        }), login -> login != null);
+    }
+
+    /**
+     * Combines every username with every password. Each password is tried for all usernames before the next
+     * password, so the failed logins for any single username are spread out over the whole run, which makes account
+     * lockouts less likely.
+     * @param usernames The usernames to try, iterated once per password
+     * @param passwords The passwords to try
+     * @return A source of all combinations
+     */
+    static CredentialSource combining(Iterable<String> usernames, Iterable<String> passwords) {
+        return () -> new Iterator<Login>() {
+            private final Iterator<String> passwordIterator = passwords.iterator();
+            private Iterator<String> usernameIterator = Collections.emptyIterator();
+            private String password = null;
+
+            @Override
+            public boolean hasNext() {
+                while (!usernameIterator.hasNext()) {
+                    if (!passwordIterator.hasNext()) {
+                        return false;
+                    }
+                    password = passwordIterator.next();
+                    usernameIterator = usernames.iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Login next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new Login(usernameIterator.next(), password);
+            }
+        };
+    }
+
+    /**
+     * @param sources The sources to try one after the other
+     * @return A source of the logins of all given sources
+     */
+    static CredentialSource concat(Iterable<CredentialSource> sources) {
+        return Iterables.concat(sources)::iterator;
+    }
+}
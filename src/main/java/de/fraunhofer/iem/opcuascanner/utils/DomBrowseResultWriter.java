@@ -0,0 +1,85 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects the browse results in a document and writes it when closed. Every reference is nested in the element of
+ * its source node, but the whole address space is kept in memory until the browse is finished.
+ */
+class DomBrowseResultWriter implements BrowseResultWriter {
+
+    private static final Logger logger = LogManager.getLogger(DomBrowseResultWriter.class);
+
+    private final File file;
+    private final Document document;
+
+    /**
+     * The element of every node, so the references of a node can be added below it
+     */
+    private final Map<NodeId, Element> elements = new HashMap<>();
+
+    /**
+     * @param file The file to write the document to when closed
+     * @throws ParserConfigurationException If no document can be made
+     */
+    DomBrowseResultWriter(File file) throws ParserConfigurationException {
+        this.file = file;
+        document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element rootElement = document.createElement("RootFolder");
+        document.appendChild(rootElement);
+        elements.put(Identifiers.RootFolder, rootElement);
+    }
+
+    @Override
+    public void writeReference(NodeId source, ReferenceDescription reference) {
+        Element parent = elements.get(source);
+        if (parent == null) {
+            return;
+        }
+        try {
+            Element e = document.createElement("reference");
+            e.appendChild(document.createTextNode(reference.getBrowseName().getName()));
+            parent.appendChild(e);
+            reference.getNodeId().local().ifPresent(nodeId -> elements.putIfAbsent(nodeId, e));
+        } catch (DOMException ex) {
+            logger.info("Error writing XML File: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try (OutputStream out = new FileOutputStream(file)) {
+            Transformer tr = TransformerFactory.newInstance().newTransformer();
+            tr.setOutputProperty(OutputKeys.INDENT, "yes");
+            tr.setOutputProperty(OutputKeys.METHOD, "xml");
+            tr.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            tr.transform(new DOMSource(document), new StreamResult(out));
+        } catch (TransformerException e) {
+            logger.error("Could not write XML output of browse results: {}", e.getMessage());
+        } catch (IOException e) {
+            logger.error("Could not create XML output file: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.client.UaTcpStackClient;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+
+/**
+ * Retrieves the endpoints of reachable hosts without waiting for one host before asking the next.
+ *
+ * Every host is asked at its base url and at its discovery url at the same time. Each request is given up after
+ * the timeout, and at most maxInFlight requests are pending at once. Asking for more blocks the caller until a
+ * pending request completes. A request given up after the timeout still counts as pending until the OPC UA stack
+ * ends it with its own timeout and closes its connection, so the number of open connections stays bounded.
+ */
+public class EndpointDiscoverer {
+
+    private static final Logger logger = LogManager.getLogger(EndpointDiscoverer.class);
+
+    private static final StageMetrics discoveries = ScanMetrics.stage("discovery");
+
+    private final Semaphore inFlight;
+    private final int timeoutInMs;
+
+    /**
+     * @param maxInFlight The maximum number of GetEndpoints requests pending at the same time, at least two
+     * @param timeoutInMs The time after which a single GetEndpoints request is given up
+     */
+    public EndpointDiscoverer(int maxInFlight, int timeoutInMs) {
+        if (maxInFlight < 2 || timeoutInMs < 1) {
+            throw new IllegalArgumentException("Need at least two requests in flight and a positive timeout.");
+        }
+        this.inFlight = new Semaphore(maxInFlight);
+        this.timeoutInMs = timeoutInMs;
+    }
+
+    /**
+     * Asks the host for its endpoints at the base url and at /discovery.
+     * @param reachableHost The host and port to ask
+     * @return A future completing with all endpoints found at either url, never completing exceptionally
+     * @throws InterruptedException If interrupted while waiting for other requests to complete
+     */
+    public CompletableFuture<Set<EndpointDescription>> discover(InetSocketAddress reachableHost)
+            throws InterruptedException {
+        String fullHostAddress = OpcuaUtil.ADDR_PREFIX + reachableHost.getHostString() + ":" + reachableHost.getPort();
+        String fullHostAddressWithDiscovery = OpcuaUtil.ADDR_PREFIX + reachableHost.getHostString()
+                + OpcuaUtil.DISCOVERY_SUFFIX + ":" + reachableHost.getPort();
+
+        //Both permits are taken at once, so two callers can not each hold one and wait for the other
+        inFlight.acquire(2);
+        CompletableFuture<Set<EndpointDescription>> endpoints = requestEndpoints(fullHostAddress);
+        CompletableFuture<Set<EndpointDescription>> endpointsAtDiscovery =
+                requestEndpoints(fullHostAddressWithDiscovery);
+        return endpoints.thenCombine(endpointsAtDiscovery, (first, second) -> {
+            Set<EndpointDescription> endpointDescriptionSet = new HashSet<>(first);
+            endpointDescriptionSet.addAll(second);
+            return endpointDescriptionSet;
+        });
+    }
+
+    private CompletableFuture<Set<EndpointDescription>> requestEndpoints(String url) {
+        logger.info("Trying to get endpoints for reachable host at {}", url);
+        CompletableFuture<EndpointDescription[]> request;
+        long startedAt = discoveries.start();
+        try {
+            request = UaTcpStackClient.getEndpoints(url);
+            //The stack disconnects once the request is done, only then is there room for another connection
+            request.whenComplete((endpoints, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            discoveries.finish(startedAt, e);
+            return CompletableFuture.completedFuture(Collections.emptySet());
+        }
+        return FutureUtil.withTimeout(request, timeoutInMs).handle((endpoints, error) -> {
+            discoveries.finish(startedAt, error);
+            Set<EndpointDescription> endpointDescriptionSet = new HashSet<>();
+            if (error != null) {
+                //It's okay if we do not find endpoints
+                logger.debug("No endpoints at {}: {}", url, error.getMessage());
+                return endpointDescriptionSet;
+            }
+            for (EndpointDescription endpoint : endpoints) {
+                logger.info("Found endpoint {} with SecurityPolicy {} and MessageSecurityMode {}",
+                        endpoint.getEndpointUrl(), endpoint.getSecurityPolicyUri(), endpoint.getSecurityMode());
+                endpointDescriptionSet.add(endpoint);
+            }
+            return endpointDescriptionSet;
+        });
+    }
+}
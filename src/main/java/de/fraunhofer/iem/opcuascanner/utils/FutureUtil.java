@@ -0,0 +1,52 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helpers for {@link CompletableFuture}s returned by the OPC UA stack, which do not time out on their own.
+ */
+public class FutureUtil {
+
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "future-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        //Most futures complete before their timeout, so do not keep the cancelled timeouts around
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private FutureUtil() {
+        //Do not instantiate this, this a util class.
+        //Private constructor hides implicit public one
+    }
+
+    /**
+     * Returns a future that completes like the given future, or exceptionally with a {@link TimeoutException} if
+     * the given future did not complete within the timeout. The given future itself is not cancelled.
+     * @param future The future to wait for
+     * @param timeoutInMs The time after which to give up waiting
+     * @param <T> The type of the result
+     * @return A future completing with the result of the given future or a {@link TimeoutException}
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeoutInMs) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = timer.schedule(() -> result.completeExceptionally(
+                new TimeoutException("No result after " + timeoutInMs + " ms")), timeoutInMs, TimeUnit.MILLISECONDS);
+        future.whenComplete((value, error) -> {
+            timeout.cancel(false);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+}
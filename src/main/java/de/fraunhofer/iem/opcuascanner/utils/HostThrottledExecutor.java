@@ -0,0 +1,140 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs tasks on a fixed number of worker threads, while limiting how many tasks for the same host run at once.
+ *
+ * Tasks for a host that already has the maximum number of running tasks wait in a queue of that host and do not
+ * occupy a worker thread, so a single slow host can not stall the tasks for all other hosts.
+ *
+ * With virtual threads every task gets its own thread, and a semaphore limits how many tasks run at once overall.
+ */
+public class HostThrottledExecutor {
+
+    private static final Logger logger = LogManager.getLogger(HostThrottledExecutor.class);
+
+    private final ExecutorService workers;
+    private final Semaphore runningTasks;
+    private final int maxParallelPerHost;
+
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private final Map<String, Deque<Runnable>> waitingPerHost = new HashMap<>();
+    private int unfinishedTasks = 0;
+
+    /**
+     * @param name The prefix for the names of the worker threads
+     * @param maxParallel The maximum number of tasks running at once overall
+     * @param maxParallelPerHost The maximum number of tasks running at once for the same host
+     */
+    public HostThrottledExecutor(String name, int maxParallel, int maxParallelPerHost) {
+        this(name, maxParallel, maxParallelPerHost, false);
+    }
+
+    /**
+     * @param name The prefix for the names of the worker threads
+     * @param maxParallel The maximum number of tasks running at once overall
+     * @param maxParallelPerHost The maximum number of tasks running at once for the same host
+     * @param virtualThreads Whether to run every task on its own virtual thread, see {@link VirtualThreads}
+     */
+    public HostThrottledExecutor(String name, int maxParallel, int maxParallelPerHost, boolean virtualThreads) {
+        if (maxParallel < 1 || maxParallelPerHost < 1) {
+            throw new IllegalArgumentException("Number of parallel tasks must be positive.");
+        }
+        if (virtualThreads) {
+            this.workers = VirtualThreads.newThreadPerTaskExecutor(name);
+            this.runningTasks = new Semaphore(maxParallel);
+        } else {
+            this.workers = Executors.newFixedThreadPool(maxParallel, VirtualThreads.newThreadFactory(name, false));
+            this.runningTasks = null;
+        }
+        this.maxParallelPerHost = maxParallelPerHost;
+    }
+
+    /**
+     * Runs the task as soon as there is a free worker and the host has less than the maximum number of running
+     * tasks.
+     * @param host The host the task works on
+     * @param task The task to run
+     */
+    public synchronized void submit(String host, Runnable task) {
+        unfinishedTasks++;
+        int running = runningPerHost.getOrDefault(host, 0);
+        if (running < maxParallelPerHost) {
+            runningPerHost.put(host, running + 1);
+            workers.execute(() -> run(host, task));
+        } else {
+            waitingPerHost.computeIfAbsent(host, h -> new ArrayDeque<>()).add(task);
+        }
+    }
+
+    private void run(String host, Runnable task) {
+        if (runningTasks != null) {
+            runningTasks.acquireUninterruptibly();
+        }
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.error("Task for host {} failed: {}", host, e.getMessage(), e);
+        } finally {
+            if (runningTasks != null) {
+                runningTasks.release();
+            }
+            taskFinished(host);
+        }
+    }
+
+    private synchronized void taskFinished(String host) {
+        unfinishedTasks--;
+        Deque<Runnable> waiting = waitingPerHost.get(host);
+        if (waiting != null) {
+            //Hand the slot of the finished task directly to the next waiting task of the same host
+            Runnable next = waiting.poll();
+            if (waiting.isEmpty()) {
+                waitingPerHost.remove(host);
+            }
+            workers.execute(() -> run(host, next));
+        } else {
+            int running = runningPerHost.get(host) - 1;
+            if (running == 0) {
+                runningPerHost.remove(host);
+            } else {
+                runningPerHost.put(host, running);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Blocks until less than the given number of submitted tasks are unfinished. Used to stop producing new tasks
+     * while the workers are behind.
+     * @param limit The number of unfinished tasks to get below
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public synchronized void awaitUnfinishedBelow(int limit) throws InterruptedException {
+        while (unfinishedTasks >= limit) {
+            wait();
+        }
+    }
+
+    /**
+     * Blocks until all submitted tasks are finished, including the ones still waiting for their host, and stops
+     * the worker threads afterwards. No tasks can be submitted after this.
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public synchronized void awaitCompletion() throws InterruptedException {
+        while (unfinishedTasks > 0) {
+            wait();
+        }
+        workers.shutdown();
+    }
+}
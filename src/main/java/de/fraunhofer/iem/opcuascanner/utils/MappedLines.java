@@ -0,0 +1,166 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The non-empty lines of a text file in UTF-8, read lazily from a memory mapped window of the file.
+ *
+ * Only the window is mapped, so files of any size can be read without holding them on the heap, and the file is
+ * not kept open while the lines are consumed. Every call to {@link #iterator()} reads the file from the start.
+ *
+ * A file which fits into one window is mapped only once and the mapping is shared by all iterators, so a short list
+ * which is iterated once for every entry of a long one does not pile up mappings until the garbage collector frees
+ * them. Changes to such a file after it was first read are not seen.
+ */
+public class MappedLines implements Iterable<String> {
+
+    private static final int DEFAULT_WINDOW_SIZE = 16 * 1024 * 1024;
+
+    private final Path file;
+    private final int windowSize;
+    //The mapping of the whole file if it fits into one window, shared by all iterators
+    private volatile MappedByteBuffer wholeFile = null;
+
+    /**
+     * @param file The file to read the lines of
+     */
+    public MappedLines(Path file) {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param file The file to read the lines of
+     * @param windowSize The number of bytes mapped at once, lines longer than this are split
+     */
+    MappedLines(Path file, int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive.");
+        }
+        this.file = file;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * @return An iterator over the non-empty lines, which throws an {@link UncheckedIOException} if the file can not
+     * be read
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new LineIterator();
+    }
+
+    private class LineIterator implements Iterator<String> {
+        private long fileSize = -1;
+        private long windowStart = 0;
+        private ByteBuffer window = null;
+        private String next = null;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = readNextLine();
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = next;
+            next = null;
+            return line;
+        }
+
+        private String readNextLine() {
+            while (true) {
+                if (window == null || !window.hasRemaining()) {
+                    if (!mapNextWindow()) {
+                        return null;
+                    }
+                }
+                int lineStart = window.position();
+                int lineEnd = indexOfLineBreak(lineStart);
+                boolean endOfFile = windowStart + window.limit() >= fileSize;
+                if (lineEnd < 0 && !endOfFile && lineStart > 0) {
+                    //The line continues in the next window, map again starting at this line
+                    windowStart += lineStart;
+                    window = null;
+                    continue;
+                }
+                if (lineEnd < 0) {
+                    //Last line of the file without line break, or a line longer than the window
+                    lineEnd = window.limit();
+                    window.position(lineEnd);
+                } else {
+                    window.position(lineEnd + 1);
+                }
+                String line = decode(lineStart, lineEnd);
+                if (!line.isEmpty()) {
+                    return line;
+                }
+            }
+        }
+
+        private boolean mapNextWindow() {
+            if (window != null) {
+                if (windowStart + window.limit() >= fileSize) {
+                    return false;
+                }
+                windowStart += window.position();
+            }
+            MappedByteBuffer shared = wholeFile;
+            if (windowStart == 0 && shared != null) {
+                fileSize = shared.capacity();
+                window = shared.duplicate();
+                return true;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                fileSize = channel.size();
+                if (windowStart >= fileSize) {
+                    return false;
+                }
+                long length = Math.min(windowSize, fileSize - windowStart);
+                //The mapping stays valid after the channel is closed
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+                if (windowStart == 0 && length == fileSize) {
+                    wholeFile = mapped;
+                }
+                window = mapped.duplicate();
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read " + file, e);
+            }
+        }
+
+        private int indexOfLineBreak(int from) {
+            for (int i = from; i < window.limit(); i++) {
+                if (window.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String decode(int start, int end) {
+            if (end > start && window.get(end - 1) == '\r') {
+                end--;
+            }
+            byte[] bytes = new byte[end - start];
+            ByteBuffer line = window.duplicate();
+            line.position(start);
+            line.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
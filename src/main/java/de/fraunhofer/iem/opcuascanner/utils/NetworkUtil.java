@@ -4,15 +4,19 @@ import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
-import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 import org.apache.commons.net.util.SubnetUtils;
 import org.apache.logging.log4j.LogManager;
@@ -22,8 +26,6 @@ import de.fraunhofer.iem.opcuascanner.Configuration;
 
 public class NetworkUtil {
 
-    private static final int DEFAULT_TIMEOUT_IN_MS = 500;
-
     private static final int DEFAULT_CIDR_SUFFIX = 28;
 
     private static final Logger logger = LogManager.getLogger(NetworkUtil.class);
@@ -88,37 +90,111 @@ public class NetworkUtil {
      * Scans ip addresses for reachable hosts. Ip addresses are read from configuration, if there aren't any, the scan
      * is conducted relative to the own ip address with a CIDR suffix of {@link #DEFAULT_CIDR_SUFFIX}.
      *
-     * @return A list of addresses including all hosts which could be reached
+     * @return A list of addresses including all hosts which could be reached, each with the port it was reached on
      */
     public static Set<InetSocketAddress> getReachableHosts() {
         Set<InetSocketAddress> reachableHosts = new HashSet<>();
+        sweepForReachableHosts(reachableHosts::add);
+        return reachableHosts;
+    }
+
+    /**
+     * Scans ip addresses for reachable hosts like {@link #getReachableHosts()}, but hands every reachable host to
+     * onReachable as soon as it is found.
+     *
+     * Every configured port is tried on every host in a single sweep by a {@link PortSweeper}, limited by the number
+     * of parallel connects and the connect timeout from the {@link Configuration}. With adaptive timing, the connect
+     * timeout is only the timeout for subnets whose round trip time was not measured yet, and the minimum and maximum
+     * timeout are widened to include it if needed.
+     *
+     * @param onReachable Called with every host which could be reached, together with the port it was reached on
+     */
+    public static void sweepForReachableHosts(Consumer<InetSocketAddress> onReachable) {
+        sweepForReachableHosts(0, onReachable, swept -> { });
+    }
+
+    /**
+     * @return The ip addresses a sweep tries, in the order it tries them on every port
+     */
+    public static List<InetAddress> getAddressesToTry() {
         //If there are ip addresses configured use these, else scan relative to your own
         Set<InetAddress> addressesToTry = !Configuration.getIpAddresses().isEmpty() ? Configuration.getIpAddresses() : getDefaultIpAddresses();
+        List<InetAddress> ipv4Addresses = new ArrayList<>();
         for (InetAddress inetAddress : addressesToTry) {
             if (inetAddress instanceof Inet4Address) {
-                logger.info("Trying to reach host {}", inetAddress);
-                if (isPortOpen(inetAddress, Configuration.getPort())) {
-                    reachableHosts.add(new InetSocketAddress((Inet4Address) inetAddress, Configuration.getPort()));
-                }
+                ipv4Addresses.add(inetAddress);
             }
         }
-        return reachableHosts;
+        return ipv4Addresses;
     }
 
     /**
-     * Checks whether the given port is open on the given ip address by trying to connect
-     * to it by socket. Uses the {@link NetworkUtil#DEFAULT_TIMEOUT_IN_MS} and reports the port as not
-     * open if the timeout is exceeded.
-     * @param ipAddress The ip address to which to try to connect
-     * @param port The port on which to connect to the host with the ip address
-     * @return true if a socket connection could be opened, else false
+     * Like {@link #sweepForReachableHosts(Consumer)}, but continues a sweep which was stopped.
+     *
+     * @param skippedTargets The number of address and port combinations from the start of the sweep order which
+     *                       were tried before and are left out
+     * @param onReachable Called with every host which could be reached, together with the port it was reached on
+     * @param onSwept Called with the number of combinations from the start of the sweep order, including the
+     *                skipped ones, which are all done, every time it grows
      */
-    private static boolean isPortOpen(InetAddress ipAddress, int port) {
-        try (Socket socket = new Socket()){
-            socket.connect(new InetSocketAddress(ipAddress, port), DEFAULT_TIMEOUT_IN_MS);
-        } catch (Exception e) {
-            return false;
+    public static void sweepForReachableHosts(long skippedTargets, Consumer<InetSocketAddress> onReachable,
+                                              LongConsumer onSwept) {
+        List<InetAddress> ipv4Addresses = getAddressesToTry();
+        Set<Integer> ports = Configuration.getPorts();
+        logger.info("Trying to reach {} hosts on ports {}", ipv4Addresses.size(), ports);
+        Iterator<InetSocketAddress> targets = getTargets(ipv4Addresses, ports);
+        long skipped = 0;
+        while (skipped < skippedTargets && targets.hasNext()) {
+            targets.next();
+            skipped++;
         }
-        return true;
+        if (skipped > 0) {
+            logger.info("Continuing the sweep of an earlier run after {} combinations of host and port", skipped);
+        }
+        ScanProgress.addressesQueued((long) ipv4Addresses.size() * ports.size() - skipped);
+        int timeoutInMs = Configuration.getConnectTimeoutInMs();
+        PortSweeper sweeper = Configuration.isAdaptiveTiming()
+                ? new PortSweeper(Configuration.getMaxParallelConnects(), timeoutInMs,
+                        Math.min(timeoutInMs, Configuration.getMinConnectTimeoutInMs()),
+                        Math.max(timeoutInMs, Configuration.getMaxConnectTimeoutInMs()))
+                : new PortSweeper(Configuration.getMaxParallelConnects(), timeoutInMs);
+        long sweptBefore = skipped;
+        sweeper.sweep(targets, reachableHost -> {
+            logger.info("Reached host {}", reachableHost);
+            onReachable.accept(reachableHost);
+        }, swept -> onSwept.accept(sweptBefore + swept));
+    }
+
+    /**
+     * Combines every address with every port. The combinations are made while iterating, so that the full product
+     * is never held in memory. All hosts are tried on one port before moving to the next port, so that a single host
+     * is not hit with all its ports at once.
+     * @param addresses The addresses to try
+     * @param ports The ports to try on every address
+     * @return An iterator over all address and port combinations
+     */
+    static Iterator<InetSocketAddress> getTargets(Collection<InetAddress> addresses, Collection<Integer> ports) {
+        return new Iterator<InetSocketAddress>() {
+            private final Iterator<Integer> portIterator = ports.iterator();
+            private Iterator<InetAddress> addressIterator = Collections.emptyIterator();
+            private int currentPort;
+
+            @Override
+            public boolean hasNext() {
+                while (!addressIterator.hasNext() && portIterator.hasNext() && !addresses.isEmpty()) {
+                    currentPort = portIterator.next();
+                    addressIterator = addresses.iterator();
+                }
+                return addressIterator.hasNext();
+            }
+
+            @Override
+            public InetSocketAddress next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new InetSocketAddress(addressIterator.next(), currentPort);
+            }
+        };
     }
 }
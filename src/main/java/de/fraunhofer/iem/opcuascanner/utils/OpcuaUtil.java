@@ -9,7 +9,6 @@ import java.util.concurrent.CompletableFuture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
-import org.eclipse.milo.opcua.stack.client.UaTcpStackClient;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
@@ -18,12 +17,13 @@ import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
 
 import com.google.common.collect.ImmutableList;
 
+import de.fraunhofer.iem.opcuascanner.Configuration;
+
 public class OpcuaUtil {
 
     private static final Logger logger = LogManager.getLogger(OpcuaUtil.class);
 
     public static final String ADDR_PREFIX = "opc.tcp://";
-    public static final String ADDR_SUFFIX = ":4840";
     static final String DISCOVERY_SUFFIX = "/discovery";
 
     private OpcuaUtil(){
@@ -45,37 +45,35 @@ public class OpcuaUtil {
         return endpoint.getEndpointUrl() + securityPolicyUri + "#" + endpoint.getSecurityMode();
     }
 
-    public static Set<EndpointDescription> tryToGetEndpoints(InetSocketAddress reachableHost) {
-        Set<EndpointDescription> endpointDescriptionSet = new HashSet<>();
-        String fullHostAddress = ADDR_PREFIX + reachableHost.getHostName() + ":" + reachableHost.getPort();
-        String fullHostAddressWithDiscovery = ADDR_PREFIX + reachableHost.getHostName() + DISCOVERY_SUFFIX + ":"
-                + reachableHost.getPort();
-        EndpointDescription[] endpoints;
-        try {
-            logger.info("Trying to get endpoints for reachable host at {}", fullHostAddress);
-            endpoints = UaTcpStackClient.getEndpoints(fullHostAddress).get();
-
-            for (EndpointDescription endpoint : endpoints) {
-                logger.info("Found endpoint {} with SecurityPolicy {} and MessageSecurityMode {}",
-                        endpoint.getEndpointUrl(), endpoint.getSecurityPolicyUri(), endpoint.getSecurityMode());
-                endpointDescriptionSet.add(endpoint);
-            }
-        } catch (Exception e) {
-            //It's okay if we do not find endpoints
+    /**
+     * Cuts the prefix and path off an endpoint url and joins host and port with an underscore, so the result can be
+     * used as part of a file name, e.g., opc.tcp://192.168.0.5:4840/discovery becomes 192.168.0.5_4840.
+     * @param endpointUrl The url of the endpoint
+     * @return Host and port of the url
+     */
+    public static String getHostAndPortForFileName(String endpointUrl){
+        String hostAndPort = endpointUrl.startsWith(ADDR_PREFIX) ? endpointUrl.substring(ADDR_PREFIX.length())
+                : endpointUrl;
+        int pathStart = hostAndPort.indexOf('/');
+        if (pathStart >= 0){
+            hostAndPort = hostAndPort.substring(0, pathStart);
         }
-        //Try for address at /discovery
-        try {
-            logger.info("Trying to get endpoints for reachable host at {}", fullHostAddressWithDiscovery);
-            endpoints = UaTcpStackClient.getEndpoints(fullHostAddressWithDiscovery).get();
+        return hostAndPort.replaceAll("[^\\w.-]", "_");
+    }
 
-            for (EndpointDescription endpoint : endpoints) {
-                logger.info("Found endpoint {} with SecurityPolicy {} and MessageSecurityMode {}",
-                        endpoint.getEndpointUrl(), endpoint.getSecurityPolicyUri(), endpoint.getSecurityMode());
-                endpointDescriptionSet.add(endpoint);
-            }
-        } catch (Exception e) {
-            //It's okay if we do not find endpoints
+    /**
+     * Asks the host for its endpoints at the base url and at /discovery and waits for both answers.
+     * Use an {@link EndpointDiscoverer} to ask many hosts at the same time.
+     * @param reachableHost The host and port to ask
+     * @return All endpoints found at either url
+     */
+    public static Set<EndpointDescription> tryToGetEndpoints(InetSocketAddress reachableHost) {
+        try {
+            return new EndpointDiscoverer(2, Configuration.getDiscoveryTimeoutInMs()).discover(reachableHost).join();
+        } catch (InterruptedException e) {
+            logger.info("Interrupted while getting endpoints for {}", reachableHost);
+            Thread.currentThread().interrupt();
         }
-        return endpointDescriptionSet;
+        return new HashSet<>();
     }
 }
@@ -0,0 +1,303 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Checks which of many ip address and port combinations accept tcp connections. Instead of trying one blocking
+ * socket after another, non-blocking {@link SocketChannel}s are opened and all pending connects are waited for on a
+ * single {@link Selector}.
+ *
+ * At most maxInFlight connects are pending at any time, which also limits the number of open file descriptors.
+ * A connect that has not completed after the timeout is given up and the port is regarded as not open. With adaptive
+ * timing, the timeout and the number of pending connects follow the round trip times and losses measured during the
+ * sweep, and a connect to a host which answered before is tried once more after its timeout, see
+ * {@link ConnectTiming}.
+ */
+public class PortSweeper {
+
+    private static final Logger logger = LogManager.getLogger(PortSweeper.class);
+
+    private static final StageMetrics connects = ScanMetrics.stage("connect");
+
+    private final int maxInFlight;
+    private final boolean adaptive;
+    private final int timeoutInMs;
+    private final int minTimeoutInMs;
+    private final int maxTimeoutInMs;
+
+    /**
+     * Creates a sweeper with a fixed timeout and number of pending connects.
+     * @param maxInFlight The maximum number of connects that are pending at the same time
+     * @param timeoutInMs The time after which a pending connect is given up
+     */
+    public PortSweeper(int maxInFlight, int timeoutInMs) {
+        this(false, maxInFlight, timeoutInMs, timeoutInMs, timeoutInMs);
+    }
+
+    /**
+     * Creates a sweeper with adaptive timing.
+     * @param maxInFlight The maximum number of connects that are pending at the same time
+     * @param initialTimeoutInMs The time after which a connect to a subnet without measured round trip times is given
+     *                           up
+     * @param minTimeoutInMs The shortest timeout derived from measured round trip times
+     * @param maxTimeoutInMs The longest timeout derived from measured round trip times
+     */
+    public PortSweeper(int maxInFlight, int initialTimeoutInMs, int minTimeoutInMs, int maxTimeoutInMs) {
+        this(true, maxInFlight, initialTimeoutInMs, minTimeoutInMs, maxTimeoutInMs);
+    }
+
+    private PortSweeper(boolean adaptive, int maxInFlight, int timeoutInMs, int minTimeoutInMs, int maxTimeoutInMs) {
+        if (maxInFlight < 1 || minTimeoutInMs < 1) {
+            throw new IllegalArgumentException("Number of parallel connects and timeout must be positive.");
+        }
+        if (timeoutInMs < minTimeoutInMs || timeoutInMs > maxTimeoutInMs) {
+            throw new IllegalArgumentException("Initial timeout must be between the minimum and maximum timeout.");
+        }
+        this.maxInFlight = maxInFlight;
+        this.adaptive = adaptive;
+        this.timeoutInMs = timeoutInMs;
+        this.minTimeoutInMs = minTimeoutInMs;
+        this.maxTimeoutInMs = maxTimeoutInMs;
+    }
+
+    /**
+     * Tries to connect to all targets and collects the ones which accepted the connection.
+     * @param targets The addresses to try, they are only read when there is room for another connect
+     * @return All targets which accepted a connection
+     */
+    public Set<InetSocketAddress> sweep(Iterator<InetSocketAddress> targets) {
+        Set<InetSocketAddress> reachable = new HashSet<>();
+        sweep(targets, reachable::add);
+        return reachable;
+    }
+
+    /**
+     * Tries to connect to all targets and passes each target which accepted the connection to onReachable as soon
+     * as the connection is established. onReachable is called from the thread running the sweep and should return
+     * quickly, since no other connect is handled while it runs.
+     * @param targets The addresses to try, they are only read when there is room for another connect
+     * @param onReachable Called once for every target which accepted a connection
+     */
+    public void sweep(Iterator<InetSocketAddress> targets, Consumer<InetSocketAddress> onReachable) {
+        sweep(targets, onReachable, swept -> { });
+    }
+
+    /**
+     * Like {@link #sweep(Iterator, Consumer)}, but also tells how far the sweep got. Connects complete in any order,
+     * so a sweep which is stopped can only be continued after the targets which are all done.
+     * @param targets The addresses to try, they are only read when there is room for another connect
+     * @param onReachable Called once for every target which accepted a connection
+     * @param onSwept Called from the thread running the sweep with the number of targets from the start which are
+     *                all done, every time it grows
+     */
+    public void sweep(Iterator<InetSocketAddress> targets, Consumer<InetSocketAddress> onReachable,
+                      LongConsumer onSwept) {
+        try (Selector selector = Selector.open()) {
+            new Sweep(selector, onReachable, onSwept).run(targets);
+        } catch (IOException e) {
+            logger.error("Could not open selector for scanning ports: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * State of a single run of {@link #sweep(Iterator, Consumer)}, so one sweeper can be used for several sweeps.
+     */
+    private class Sweep {
+        private final Selector selector;
+        private final Consumer<InetSocketAddress> onReachable;
+        private final LongConsumer onSwept;
+        private final ConnectTiming timing = adaptive
+                ? new ConnectTiming(maxInFlight, timeoutInMs, minTimeoutInMs, maxTimeoutInMs)
+                : new ConnectTiming(maxInFlight, timeoutInMs);
+        //Subnets can have different timeouts, so the attempt expiring first is not always the oldest
+        private final PriorityQueue<Attempt> pending =
+                new PriorityQueue<>((first, second) -> Long.signum(first.deadline - second.deadline));
+        private final Queue<Attempt> retries = new ArrayDeque<>();
+        private int inFlight = 0;
+        //Positions of the targets read so far which are not done yet, including the ones waiting for a retry
+        private final TreeSet<Long> unfinished = new TreeSet<>();
+        private long read = 0;
+        private long swept = 0;
+
+        private Sweep(Selector selector, Consumer<InetSocketAddress> onReachable, LongConsumer onSwept) {
+            this.selector = selector;
+            this.onReachable = onReachable;
+            this.onSwept = onSwept;
+        }
+
+        private void run(Iterator<InetSocketAddress> targets) throws IOException {
+            try {
+                while ((targets.hasNext() || !retries.isEmpty() || inFlight > 0)
+                        && !Thread.currentThread().isInterrupted()) {
+                    while (inFlight < timing.getWindow() && (!retries.isEmpty() || targets.hasNext())) {
+                        if (retries.isEmpty()) {
+                            unfinished.add(read);
+                            startConnect(targets.next(), read++);
+                        } else {
+                            Attempt retry = retries.poll();
+                            startConnect(retry.target, retry.position);
+                        }
+                    }
+                    waitForConnects();
+                    expireAttempts();
+                }
+            } finally {
+                for (Attempt attempt : pending) {
+                    finish(attempt, StageMetrics.Outcome.ERROR);
+                }
+            }
+        }
+
+        private void startConnect(InetSocketAddress target, long position) {
+            SocketChannel channel = null;
+            long startedAt = connects.start();
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                if (channel.connect(target)) {
+                    //Happens for local addresses, the connection was established right away
+                    channel.close();
+                    connects.finish(startedAt, StageMetrics.Outcome.SUCCESS);
+                    onReachable.accept(target);
+                    targetDone(position);
+                    return;
+                }
+                Attempt attempt = new Attempt(target, position, channel, startedAt,
+                        startedAt + timing.getTimeoutInNanos(target));
+                channel.register(selector, SelectionKey.OP_CONNECT, attempt);
+                pending.add(attempt);
+                inFlight++;
+            } catch (IOException e) {
+                //Unreachable networks or similar fail right away, which just means the port is not open
+                logger.debug("Could not start connect to {}: {}", target, e.getMessage());
+                closeQuietly(channel);
+                connects.finish(startedAt, StageMetrics.Outcome.ERROR);
+                targetDone(position);
+            }
+        }
+
+        private void waitForConnects() throws IOException {
+            if (inFlight == 0) {
+                return;
+            }
+            long waitInMs = TimeUnit.NANOSECONDS.toMillis(pending.peek().deadline - System.nanoTime());
+            if (waitInMs > 0) {
+                selector.select(waitInMs);
+            } else {
+                selector.selectNow();
+            }
+            Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+            while (selectedKeys.hasNext()) {
+                SelectionKey key = selectedKeys.next();
+                selectedKeys.remove();
+                Attempt attempt = (Attempt) key.attachment();
+                boolean connected = false;
+                try {
+                    connected = attempt.channel.finishConnect();
+                } catch (ConnectException e) {
+                    //Connection refused, the port is not open but the host answered as fast as it could
+                    timing.onAnswer(attempt.target, attempt.startedAt, System.nanoTime());
+                    finish(attempt, StageMetrics.Outcome.ERROR);
+                } catch (IOException e) {
+                    //No route to the host or similar, the port is not open
+                    finish(attempt, StageMetrics.Outcome.ERROR);
+                }
+                if (connected) {
+                    timing.onAnswer(attempt.target, attempt.startedAt, System.nanoTime());
+                    finish(attempt, StageMetrics.Outcome.SUCCESS);
+                    onReachable.accept(attempt.target);
+                }
+                if (attempt.done) {
+                    targetDone(attempt.position);
+                }
+            }
+        }
+
+        private void expireAttempts() {
+            long now = System.nanoTime();
+            //Finished attempts stay in the queue until they reach its head, they are dropped there
+            while (!pending.isEmpty() && (pending.peek().done || pending.peek().deadline - now <= 0)) {
+                Attempt attempt = pending.poll();
+                if (!attempt.done) {
+                    if (timing.onTimeout(attempt.target, attempt.startedAt)) {
+                        retries.add(attempt);
+                    } else {
+                        targetDone(attempt.position);
+                    }
+                }
+                finish(attempt, StageMetrics.Outcome.TIMEOUT);
+            }
+        }
+
+        private void targetDone(long position) {
+            ScanProgress.addressProbed();
+            unfinished.remove(position);
+            long nowSwept = unfinished.isEmpty() ? read : unfinished.first();
+            if (nowSwept > swept) {
+                swept = nowSwept;
+                onSwept.accept(swept);
+            }
+        }
+
+        private void finish(Attempt attempt, StageMetrics.Outcome outcome) {
+            if (!attempt.done) {
+                attempt.close();
+                inFlight--;
+                connects.finish(attempt.startedAt, outcome);
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Could not close channel: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static class Attempt {
+        private final InetSocketAddress target;
+        private final long position;
+        private final SocketChannel channel;
+        private final long startedAt;
+        private final long deadline;
+        private boolean done = false;
+
+        private Attempt(InetSocketAddress target, long position, SocketChannel channel, long startedAt,
+                        long deadline) {
+            this.target = target;
+            this.position = position;
+            this.channel = channel;
+            this.startedAt = startedAt;
+            this.deadline = deadline;
+        }
+
+        private void close() {
+            if (!done) {
+                done = true;
+                closeQuietly(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.fraunhofer.iem.opcuascanner.Configuration;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+
+/**
+ * Collects the {@link StageMetrics} of the stages of the scan and writes them to the configured metrics files while
+ * the scan is running, as JSON and in the Prometheus text format. The Prometheus file can be read by the textfile
+ * collector of the node exporter.
+ *
+ * The stages are:
+ * <ul>
+ *     <li>connect: tcp connects of the port sweep</li>
+ *     <li>discovery: GetEndpoints requests</li>
+ *     <li>privilege: testing a privilege, labelled with the authentication and the privilege</li>
+ *     <li>browse: Browse and BrowseNext requests while browsing the address space</li>
+ *     <li>result_write: writing the results of an endpoint</li>
+ * </ul>
+ */
+public class ScanMetrics {
+
+    private static final Logger logger = LogManager.getLogger(ScanMetrics.class);
+
+    private static final String PROMETHEUS_PREFIX = "opcua_scanner_";
+
+    /**
+     * All metrics by stage and labels, sorted so the files list them in the same order every time
+     */
+    private static final Map<String, StageMetrics> stages = new ConcurrentSkipListMap<>();
+
+    private static ScheduledThreadPoolExecutor exporter = null;
+
+    private ScanMetrics() {
+        //Do not instantiate this, this a util class.
+        //Private constructor hides implicit public one
+    }
+
+    /**
+     * @param name The name of the stage
+     * @param labels Names and values of labels, alternating, for what the metrics are about within the stage
+     * @return The metrics of the stage with these labels, created when first asked for
+     */
+    public static StageMetrics stage(String name, String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Every label needs a name and a value.");
+        }
+        StringBuilder key = new StringBuilder(name);
+        for (String label : labels) {
+            key.append('\0').append(label);
+        }
+        return stages.computeIfAbsent(key.toString(), ignored -> {
+            Map<String, String> labelMap = new LinkedHashMap<>();
+            for (int i = 0; i < labels.length; i += 2) {
+                labelMap.put(labels[i], labels[i + 1]);
+            }
+            return new StageMetrics(name, labelMap);
+        });
+    }
+
+    /**
+     * @param auth The authentication the privilege is tested with
+     * @param privilege The tested privilege
+     * @return The metrics of testing the privilege with the authentication
+     */
+    public static StageMetrics privilege(Authentication auth, Privilege privilege) {
+        return stage("privilege", "authentication", auth.name(), "privilege", privilege.name());
+    }
+
+    /**
+     * @param name The name of the stage
+     * @param label The name of a label the metrics need to have, or null for all metrics of the stage
+     * @param value The value the label needs to have
+     * @return The number of finished operations of the matching metrics
+     */
+    static long countFinished(String name, String label, String value) {
+        long count = 0;
+        for (StageMetrics stage : stages.values()) {
+            if (stage.getName().equals(name) && (label == null || value.equals(stage.getLabels().get(label)))) {
+                for (StageMetrics.Outcome outcome : StageMetrics.Outcome.values()) {
+                    count += stage.getCount(outcome);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the configured metrics files every metrics interval until {@link #stopExport()} is called. Does nothing
+     * if no metrics file is configured.
+     */
+    public static synchronized void startExport() {
+        if (exporter != null || (Configuration.getMetricsFileName() == null
+                && Configuration.getPrometheusFileName() == null)) {
+            return;
+        }
+        exporter = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int intervalInMs = Configuration.getMetricsIntervalInMs();
+        exporter.scheduleWithFixedDelay(ScanMetrics::writeFiles, intervalInMs, intervalInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops writing the metrics files and writes them a last time, so they contain the whole scan.
+     */
+    public static synchronized void stopExport() {
+        if (exporter == null) {
+            return;
+        }
+        exporter.shutdown();
+        try {
+            exporter.awaitTermination(Configuration.getMetricsIntervalInMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exporter = null;
+        writeFiles();
+    }
+
+    private static void writeFiles() {
+        if (Configuration.getMetricsFileName() != null) {
+            writeAtomically(Paths.get(Configuration.getMetricsFileName()), toJson(System.currentTimeMillis()));
+        }
+        if (Configuration.getPrometheusFileName() != null) {
+            writeAtomically(Paths.get(Configuration.getPrometheusFileName()), toPrometheus());
+        }
+    }
+
+    /**
+     * Writes to a file next to the target and moves it over the target, so readers never see half a file.
+     */
+    static void writeAtomically(Path file, String content) {
+        Path absolute = file.toAbsolutePath();
+        Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            Files.write(temporary, content.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.error("Could not write {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * @param timestamp The time of the snapshot in milliseconds since the epoch
+     * @return All metrics as a JSON object, the latency buckets count the operations which took at most as long as
+     * their bound in milliseconds
+     */
+    static String toJson(long timestamp) {
+        StringBuilder json = new StringBuilder("{\"timestampInMs\":").append(timestamp).append(",\"stages\":[");
+        boolean firstStage = true;
+        for (StageMetrics stage : stages.values()) {
+            json.append(firstStage ? "" : ",").append("\n{\"stage\":");
+            firstStage = false;
+            appendJsonString(json, stage.getName());
+            json.append(",\"labels\":{");
+            boolean firstLabel = true;
+            for (Map.Entry<String, String> label : stage.getLabels().entrySet()) {
+                json.append(firstLabel ? "" : ",");
+                firstLabel = false;
+                appendJsonString(json, label.getKey());
+                json.append(':');
+                appendJsonString(json, label.getValue());
+            }
+            json.append("},\"inFlight\":").append(stage.getInFlight());
+            for (StageMetrics.Outcome outcome : StageMetrics.Outcome.values()) {
+                json.append(",\"").append(outcome.name().toLowerCase()).append("\":").append(stage.getCount(outcome));
+            }
+            json.append(",\"durationInSeconds\":").append(stage.getDurationInSeconds());
+            json.append(",\"latencyBucketsInMs\":{");
+            long[] counts = stage.getCumulativeBucketCounts();
+            for (int i = 0; i < counts.length; i++) {
+                json.append(i == 0 ? "\"" : ",\"").append(i < StageMetrics.BUCKET_BOUNDS_IN_MS.length
+                        ? String.valueOf(StageMetrics.BUCKET_BOUNDS_IN_MS[i]) : "+Inf").append("\":").append(counts[i]);
+            }
+            json.append("}}");
+        }
+        return json.append("\n]}\n").toString();
+    }
+
+    /**
+     * @return All metrics in the Prometheus text exposition format
+     */
+    static String toPrometheus() {
+        Collection<StageMetrics> snapshot = stages.values();
+        StringBuilder text = new StringBuilder();
+        String duration = PROMETHEUS_PREFIX + "operation_duration_seconds";
+        text.append("# HELP ").append(duration).append(" Time taken by the operations of a scan stage.\n");
+        text.append("# TYPE ").append(duration).append(" histogram\n");
+        for (StageMetrics stage : snapshot) {
+            long[] counts = stage.getCumulativeBucketCounts();
+            for (int i = 0; i < counts.length; i++) {
+                String bound = i < StageMetrics.BUCKET_BOUNDS_IN_MS.length
+                        ? BigDecimal.valueOf(StageMetrics.BUCKET_BOUNDS_IN_MS[i], 3).stripTrailingZeros()
+                                .toPlainString() : "+Inf";
+                appendSample(text, duration + "_bucket", stage, "le", bound, counts[i]);
+            }
+            appendSample(text, duration + "_sum", stage, null, null, stage.getDurationInSeconds());
+            appendSample(text, duration + "_count", stage, null, null, counts[counts.length - 1]);
+        }
+        String operations = PROMETHEUS_PREFIX + "operations_total";
+        text.append("# HELP ").append(operations).append(" Finished operations of a scan stage by how they ended.\n");
+        text.append("# TYPE ").append(operations).append(" counter\n");
+        for (StageMetrics stage : snapshot) {
+            for (StageMetrics.Outcome outcome : StageMetrics.Outcome.values()) {
+                appendSample(text, operations, stage, "outcome", outcome.name().toLowerCase(),
+                        stage.getCount(outcome));
+            }
+        }
+        String inFlight = PROMETHEUS_PREFIX + "operations_in_flight";
+        text.append("# HELP ").append(inFlight).append(" Running operations of a scan stage.\n");
+        text.append("# TYPE ").append(inFlight).append(" gauge\n");
+        for (StageMetrics stage : snapshot) {
+            appendSample(text, inFlight, stage, null, null, stage.getInFlight());
+        }
+        return text.toString();
+    }
+
+    private static void appendSample(StringBuilder text, String metric, StageMetrics stage, String extraLabel,
+                                     String extraValue, Object value) {
+        text.append(metric).append("{stage=\"");
+        appendPrometheusLabelValue(text, stage.getName());
+        text.append('"');
+        for (Map.Entry<String, String> label : stage.getLabels().entrySet()) {
+            text.append(',').append(label.getKey()).append("=\"");
+            appendPrometheusLabelValue(text, label.getValue());
+            text.append('"');
+        }
+        if (extraLabel != null) {
+            text.append(',').append(extraLabel).append("=\"").append(extraValue).append('"');
+        }
+        text.append("} ").append(value).append('\n');
+    }
+
+    private static void appendPrometheusLabelValue(StringBuilder text, String value) {
+        text.append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
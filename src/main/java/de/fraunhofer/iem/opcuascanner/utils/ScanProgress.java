@@ -0,0 +1,291 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.fraunhofer.iem.opcuascanner.Configuration;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+
+/**
+ * Tracks how far the scan got and estimates the time left, from what the stages of the scan report. Every progress
+ * interval the progress is logged as a status line and written to the progress file as JSON.
+ *
+ * The stages only add to {@link LongAdder}s, rates and estimates are computed by the reporting thread. Privilege
+ * probes are not counted again, they are taken from the {@link ScanMetrics} of the stages. Probed addresses are
+ * counted by the sweep once the outcome of each is final, since a connect which is tried once more would be counted
+ * twice by the metrics of the connects.
+ *
+ * Rates are averaged over the last minute. The time left is the longer of the time the sweep needs for the remaining
+ * addresses and the time the testers need for the remaining endpoints. Until the sweep is done, the number of
+ * endpoints is extrapolated from the endpoints discovered on the addresses probed so far.
+ */
+public class ScanProgress {
+
+    private static final Logger logger = LogManager.getLogger(ScanProgress.class);
+
+    /**
+     * The time over which rates are averaged
+     */
+    static final long RATE_WINDOW_IN_MS = 60000;
+
+    private static final LongAdder addressesQueued = new LongAdder();
+    private static final LongAdder addressesProbed = new LongAdder();
+    private static final LongAdder openPorts = new LongAdder();
+    private static final LongAdder endpointsDiscovered = new LongAdder();
+    private static final LongAdder endpointsTested = new LongAdder();
+    private static final LongAdder nodesBrowsed = new LongAdder();
+    private static volatile boolean sweepDone = false;
+
+    /**
+     * The snapshots of the rate window, the oldest first, only used while holding the class lock
+     */
+    private static final ArrayDeque<Snapshot> window = new ArrayDeque<>();
+    private static ScheduledThreadPoolExecutor reporter = null;
+    private static long startedAt = 0;
+
+    private ScanProgress() {
+        //Do not instantiate this, this a util class.
+        //Private constructor hides implicit public one
+    }
+
+    /**
+     * @param count The number of address and port combinations added to the sweep
+     */
+    public static void addressesQueued(long count) {
+        addressesQueued.add(count);
+    }
+
+    /**
+     * Records that the sweep knows whether an address and port combination is open, once for every combination.
+     */
+    public static void addressProbed() {
+        addressesProbed.increment();
+    }
+
+    static long getAddressesProbed() {
+        return addressesProbed.sum();
+    }
+
+    /**
+     * Records that the sweep went through all addresses.
+     */
+    public static void sweepDone() {
+        sweepDone = true;
+    }
+
+    public static void openPortFound() {
+        openPorts.increment();
+    }
+
+    /**
+     * @param count The number of endpoints handed to the testers
+     */
+    public static void endpointsDiscovered(int count) {
+        endpointsDiscovered.add(count);
+    }
+
+    public static void endpointTested() {
+        endpointsTested.increment();
+    }
+
+    /**
+     * @param count The number of nodes the server answered a browse request for
+     */
+    public static void nodesBrowsed(int count) {
+        nodesBrowsed.add(count);
+    }
+
+    /**
+     * Reports the progress every progress interval until {@link #stopReporting()} is called. Does nothing if the
+     * progress interval is 0.
+     */
+    public static synchronized void startReporting() {
+        int intervalInMs = Configuration.getProgressIntervalInMs();
+        if (reporter != null || intervalInMs == 0) {
+            return;
+        }
+        startedAt = System.currentTimeMillis();
+        window.clear();
+        window.addLast(takeSnapshot(startedAt));
+        reporter = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "progress-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleWithFixedDelay(ScanProgress::report, intervalInMs, intervalInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reporting the progress and reports it a last time.
+     */
+    public static synchronized void stopReporting() {
+        if (reporter == null) {
+            return;
+        }
+        reporter.shutdown();
+        reporter = null;
+        report();
+    }
+
+    private static Snapshot takeSnapshot(long now) {
+        long[] probes = new long[Authentication.values().length];
+        for (Authentication auth : Authentication.values()) {
+            probes[auth.ordinal()] = ScanMetrics.countFinished("privilege", "authentication", auth.name());
+        }
+        return new Snapshot(now - startedAt, addressesQueued.sum(), addressesProbed.sum(), sweepDone, openPorts.sum(), endpointsDiscovered.sum(), endpointsTested.sum(), nodesBrowsed.sum(),
+                probes);
+    }
+
+    private static synchronized void report() {
+        long now = System.currentTimeMillis();
+        Snapshot current = takeSnapshot(now);
+        window.addLast(current);
+        //Keep the newest snapshot which is at least a window old, to average over the whole window
+        while (window.size() > 1) {
+            Snapshot oldest = window.removeFirst();
+            if (window.peekFirst().elapsedInMs > current.elapsedInMs - RATE_WINDOW_IN_MS) {
+                window.addFirst(oldest);
+                break;
+            }
+        }
+        Snapshot earlier = window.peekFirst();
+        logger.info(statusLine(current, earlier));
+        if (Configuration.getProgressFileName() != null) {
+            ScanMetrics.writeAtomically(Paths.get(Configuration.getProgressFileName()), toJson(now, current, earlier));
+        }
+    }
+
+    /**
+     * @return The number of endpoints the scan will find in total, as far as can be told yet
+     */
+    static long expectedEndpoints(Snapshot current) {
+        if (current.sweepDone || current.addressesProbed == 0 || current.addressesQueued <= current.addressesProbed) {
+            return current.endpointsDiscovered;
+        }
+        return Math.round(current.endpointsDiscovered * (double) current.addressesQueued / current.addressesProbed);
+    }
+
+    /**
+     * @param current The progress now
+     * @param earlier The progress at the start of the rate window
+     * @return The estimated seconds until the scan is done, -1 if nothing progressed in the window
+     */
+    static long secondsLeft(Snapshot current, Snapshot earlier) {
+        long sweepLeft = 0;
+        if (!current.sweepDone && current.addressesQueued > current.addressesProbed) {
+            sweepLeft = secondsLeft(current.addressesQueued - current.addressesProbed,
+                    rate(current, earlier, current.addressesProbed, earlier.addressesProbed));
+        }
+        long testsLeft = secondsLeft(expectedEndpoints(current) - current.endpointsTested,
+                rate(current, earlier, current.endpointsTested, earlier.endpointsTested));
+        return sweepLeft < 0 || testsLeft < 0 ? -1 : Math.max(sweepLeft, testsLeft);
+    }
+
+    private static long secondsLeft(long remaining, double perSecond) {
+        if (remaining <= 0) {
+            return 0;
+        }
+        return perSecond > 0 ? (long) Math.ceil(remaining / perSecond) : -1;
+    }
+
+    private static double rate(Snapshot current, Snapshot earlier, long now, long before) {
+        long intervalInMs = current.elapsedInMs - earlier.elapsedInMs;
+        return intervalInMs > 0 ? (now - before) * 1000.0 / intervalInMs : 0;
+    }
+
+    static String statusLine(Snapshot current, Snapshot earlier) {
+        double sweptPercent = current.sweepDone ? 100 : current.addressesQueued == 0 ? 0
+                : 100.0 * current.addressesProbed / current.addressesQueued;
+        return String.format(Locale.ROOT, "Progress: %.1f%% of %d addresses probed (%.0f/s), %d open ports, "
+                        + "%d of %d endpoints tested (%.1f/s), %d probes (%.0f/s), %d nodes browsed (%.0f/s), "
+                        + "%s left",
+                sweptPercent, current.addressesQueued,
+                rate(current, earlier, current.addressesProbed, earlier.addressesProbed), current.openPorts,
+                current.endpointsTested, expectedEndpoints(current),
+                rate(current, earlier, current.endpointsTested, earlier.endpointsTested),
+                current.getProbes(), rate(current, earlier, current.getProbes(), earlier.getProbes()),
+                current.nodesBrowsed, rate(current, earlier, current.nodesBrowsed, earlier.nodesBrowsed),
+                formatDuration(secondsLeft(current, earlier)));
+    }
+
+    private static String formatDuration(long seconds) {
+        if (seconds < 0) {
+            return "unknown time";
+        }
+        return String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    static String toJson(long timestamp, Snapshot current, Snapshot earlier) {
+        StringBuilder json = new StringBuilder("{\"timestampInMs\":").append(timestamp)
+                .append(",\"elapsedInMs\":").append(current.elapsedInMs)
+                .append(",\"addressesQueued\":").append(current.addressesQueued)
+                .append(",\"addressesProbed\":").append(current.addressesProbed)
+                .append(",\"sweepDone\":").append(current.sweepDone)
+                .append(",\"openPorts\":").append(current.openPorts)
+                .append(",\"endpointsDiscovered\":").append(current.endpointsDiscovered)
+                .append(",\"endpointsExpected\":").append(expectedEndpoints(current))
+                .append(",\"endpointsTested\":").append(current.endpointsTested)
+                .append(",\"nodesBrowsed\":").append(current.nodesBrowsed)
+                .append(",\"probes\":{");
+        for (Authentication auth : Authentication.values()) {
+            json.append(auth.ordinal() == 0 ? "\"" : ",\"").append(auth.name()).append("\":")
+                    .append(current.probes[auth.ordinal()]);
+        }
+        json.append("},\"addressesPerSecond\":")
+                .append(rate(current, earlier, current.addressesProbed, earlier.addressesProbed))
+                .append(",\"endpointsPerSecond\":")
+                .append(rate(current, earlier, current.endpointsTested, earlier.endpointsTested))
+                .append(",\"probesPerSecond\":")
+                .append(rate(current, earlier, current.getProbes(), earlier.getProbes()))
+                .append(",\"nodesPerSecond\":")
+                .append(rate(current, earlier, current.nodesBrowsed, earlier.nodesBrowsed))
+                .append(",\"secondsLeft\":").append(secondsLeft(current, earlier));
+        return json.append("}\n").toString();
+    }
+
+    /**
+     * The progress of the scan at one point in time
+     */
+    static class Snapshot {
+        private final long elapsedInMs;
+        private final long addressesQueued;
+        private final long addressesProbed;
+        private final boolean sweepDone;
+        private final long openPorts;
+        private final long endpointsDiscovered;
+        private final long endpointsTested;
+        private final long nodesBrowsed;
+        private final long[] probes;
+
+        /**
+         * @param probes The finished privilege probes per {@link Authentication}, by its ordinal
+         */
+        Snapshot(long elapsedInMs, long addressesQueued, long addressesProbed, boolean sweepDone, long openPorts,
+                 long endpointsDiscovered, long endpointsTested, long nodesBrowsed, long[] probes) {
+            this.elapsedInMs = elapsedInMs;
+            this.addressesQueued = addressesQueued;
+            this.addressesProbed = addressesProbed;
+            this.sweepDone = sweepDone;
+            this.openPorts = openPorts;
+            this.endpointsDiscovered = endpointsDiscovered;
+            this.endpointsTested = endpointsTested;
+            this.nodesBrowsed = nodesBrowsed;
+            this.probes = probes;
+        }
+
+        private long getProbes() {
+            long sum = 0;
+            for (long probesOfAuth : probes) {
+                sum += probesOfAuth;
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+
+/**
+ * The metrics of one stage of the scan, such as connecting to ports or testing a privilege: how long its operations
+ * took, how they ended and how many of them are running. Get them from {@link ScanMetrics#stage(String, String...)}.
+ *
+ * Operations are counted with {@link LongAdder}s, so the testers can update the same metrics at the same time
+ * without waiting for each other.
+ */
+public class StageMetrics {
+
+    /**
+     * How an operation ended
+     */
+    public enum Outcome {
+        SUCCESS, TIMEOUT, ERROR;
+
+        /**
+         * @param error The error the operation failed with, or null if it did not fail
+         * @return SUCCESS without an error, TIMEOUT if the operation or the server timed out, ERROR otherwise
+         */
+        public static Outcome of(Throwable error) {
+            Throwable cause = error;
+            while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                return SUCCESS;
+            }
+            if (cause instanceof TimeoutException) {
+                return TIMEOUT;
+            }
+            if (cause instanceof UaException) {
+                long status = ((UaException) cause).getStatusCode().getValue();
+                if (status == StatusCodes.Bad_Timeout || status == StatusCodes.Bad_RequestTimeout) {
+                    return TIMEOUT;
+                }
+            }
+            return ERROR;
+        }
+    }
+
+    /**
+     * Upper bounds of the latency buckets in milliseconds, slower operations are counted in one more bucket
+     */
+    static final long[] BUCKET_BOUNDS_IN_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private final String name;
+    private final Map<String, String> labels;
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_IN_MS.length + 1];
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    private final LongAdder durationInNanos = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+
+    /**
+     * @param name The name of the stage
+     * @param labels What the metrics are about within the stage, e.g. the privilege tested, in the order to report them
+     */
+    StageMetrics(String name, Map<String, String> labels) {
+        this.name = name;
+        this.labels = Collections.unmodifiableMap(labels);
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts an operation as running until it is finished.
+     * @return The time the operation started, to pass to {@link #finish(long, Outcome)}
+     */
+    public long start() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration and outcome of an operation started with {@link #start()}.
+     * @param startedAt The time returned by {@link #start()}
+     * @param outcome How the operation ended
+     */
+    public void finish(long startedAt, Outcome outcome) {
+        long duration = System.nanoTime() - startedAt;
+        inFlight.decrement();
+        durationInNanos.add(duration);
+        outcomes[outcome.ordinal()].increment();
+        buckets[bucketOf(duration)].increment();
+    }
+
+    /**
+     * Records the duration and outcome of an operation started with {@link #start()}.
+     * @param startedAt The time returned by {@link #start()}
+     * @param error The error the operation failed with, or null if it did not fail
+     */
+    public void finish(long startedAt, Throwable error) {
+        finish(startedAt, Outcome.of(error));
+    }
+
+    /**
+     * Records the operation of the future, from now until it completes.
+     * @param future The running operation
+     * @param <T> The type of the result
+     * @return The same future
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        long startedAt = start();
+        future.whenComplete((result, error) -> finish(startedAt, error));
+        return future;
+    }
+
+    private static int bucketOf(long durationInNanos) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_IN_MS.length
+                && durationInNanos > TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS_IN_MS[bucket])) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return The number of operations which were started but not finished yet
+     */
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * @param outcome How the operations ended
+     * @return The number of finished operations which ended like this
+     */
+    public long getCount(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    /**
+     * @return The time all finished operations took together, in seconds
+     */
+    public double getDurationInSeconds() {
+        return durationInNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @return For every bound in {@link #BUCKET_BOUNDS_IN_MS}, the number of finished operations which took at most
+     * that long, followed by the number of all finished operations
+     */
+    public long[] getCumulativeBucketCounts() {
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            count += buckets[i].sum();
+            counts[i] = count;
+        }
+        return counts;
+    }
+}
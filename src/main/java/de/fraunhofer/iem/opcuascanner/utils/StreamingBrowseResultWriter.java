@@ -0,0 +1,102 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the browse results to the file as they are found, so memory does not grow with the address space.
+ *
+ * Since nodes are found breadth-first, references can not be nested in the element of their source node. Instead,
+ * every reference is a child of the root element and names its own node and its source node, from which the
+ * hierarchy can be rebuilt.
+ */
+class StreamingBrowseResultWriter implements BrowseResultWriter {
+
+    private static final Logger logger = LogManager.getLogger(StreamingBrowseResultWriter.class);
+
+    private static final String ENCODING = "UTF-8";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final OutputStream out;
+    private final XMLStreamWriter writer;
+    private boolean failed = false;
+
+    /**
+     * @param file The file to write to, it is overwritten
+     * @throws IOException If the file can not be opened
+     */
+    StreamingBrowseResultWriter(Path file) throws IOException {
+        this.file = file;
+        out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+        try {
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, ENCODING);
+            writer.writeStartDocument(ENCODING, "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("RootFolder");
+            writer.writeAttribute("nodeId", Identifiers.RootFolder.toParseableString());
+        } catch (XMLStreamException e) {
+            out.close();
+            throw new IOException("Could not start XML output of browse results", e);
+        }
+    }
+
+    @Override
+    public void writeReference(NodeId source, ReferenceDescription reference) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.writeCharacters("\n    ");
+            writer.writeStartElement("reference");
+            //Nodes of this server are named like their parents, only nodes of other servers need the server index
+            writer.writeAttribute("nodeId", reference.getNodeId().local().map(NodeId::toParseableString)
+                    .orElse(reference.getNodeId().toParseableString()));
+            writer.writeAttribute("parentId", source.toParseableString());
+            String name = reference.getBrowseName().getName();
+            if (name != null) {
+                writer.writeCharacters(name);
+            }
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            failed("Could not write XML output of browse results to {}: {}", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!failed) {
+                writer.writeCharacters("\n");
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.writeCharacters("\n");
+            }
+            writer.close();
+        } catch (XMLStreamException e) {
+            failed("Could not finish XML output of browse results in {}: {}", e);
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.error("Could not close XML output file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void failed(String message, XMLStreamException e) {
+        failed = true;
+        logger.error(message, file, e.getMessage());
+    }
+}
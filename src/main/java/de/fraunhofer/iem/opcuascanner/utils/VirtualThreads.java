@@ -0,0 +1,111 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import de.fraunhofer.iem.opcuascanner.Configuration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads for the blocking stages of the scan, either as platform threads or, if configured and the Java
+ * runtime has them, as virtual threads.
+ *
+ * The scanner is built for Java 8, so virtual threads are only reached by reflection. They are cheap enough to run
+ * every task on its own thread, the number of tasks running at once is then limited with semaphores instead of the
+ * size of a thread pool.
+ */
+public class VirtualThreads {
+
+    private static final Logger logger = LogManager.getLogger(VirtualThreads.class);
+
+    /**
+     * Thread.ofVirtual() and Executors.newThreadPerTaskExecutor(ThreadFactory), null if the runtime has no virtual
+     * threads
+     */
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(Executors.class,
+            "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private static boolean warnedUnsupported = false;
+
+    private VirtualThreads() {
+        //Do not instantiate this, this a util class.
+        //Private constructor hides implicit public one
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether the Java runtime has virtual threads, which it has from Java 21 on
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @return Whether virtual threads are configured and the Java runtime has them
+     */
+    public static synchronized boolean isEnabled() {
+        if (!Configuration.isUseVirtualThreads()) {
+            return false;
+        }
+        if (!isSupported() && !warnedUnsupported) {
+            warnedUnsupported = true;
+            logger.warn("Virtual threads need Java 21 or later, running on {} with platform threads instead.",
+                    System.getProperty("java.version"));
+        }
+        return isSupported();
+    }
+
+    /**
+     * @param name The prefix for the names of the threads, followed by a running number
+     * @param virtual Whether to create virtual threads, which has to be supported
+     * @return A factory for named threads
+     */
+    public static ThreadFactory newThreadFactory(String name, boolean virtual) {
+        if (virtual) {
+            return newVirtualThreadFactory(name);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+    }
+
+    /**
+     * @param name The prefix for the names of the threads, followed by a running number
+     * @return An executor starting a new virtual thread for every task
+     * @throws UnsupportedOperationException If the runtime has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, newVirtualThreadFactory(name));
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Could not create virtual threads.", e);
+        }
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String name) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later.");
+        }
+        try {
+            //Thread.ofVirtual().name(name + "-", 1).factory()
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Could not create virtual threads.", e);
+        }
+    }
+}
@@ -13,6 +13,8 @@ import static org.junit.Assert.*;
 public class ConfigurationTest {
     private static final String TEST_OUTPUT_FILENAME = "testOutputFilename";
     private static final int TEST_PORT = 42;
+    private static final int TEST_PORT_RANGE_START = 4840;
+    private static final int TEST_PORT_RANGE_END = 4842;
     private static final String TEST_HOSTNAME = "fraunhofer.de";
     private static final String TEST_IP_RANGE_BASE = "8.8.8.";
     private static final int TEST_IP_RANGE_START = 8; //NOSONAR
@@ -48,7 +50,17 @@ public class ConfigurationTest {
 
     @Test
     public void testPort(){
-        assertEquals("Port was incorrect.", TEST_PORT, Configuration.getPort());
+        assertTrue("Port was not contained.", Configuration.getPorts().contains(TEST_PORT));
+    }
+
+    @Test
+    public void testPortRange(){
+        Set<Integer> expectedPorts = new HashSet<>();
+        expectedPorts.add(TEST_PORT);
+        for (int port = TEST_PORT_RANGE_START; port <= TEST_PORT_RANGE_END; port++){
+            expectedPorts.add(port);
+        }
+        assertEquals("Ports were incorrect.", expectedPorts, Configuration.getPorts());
     }
 
     @Test
@@ -0,0 +1,154 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Login;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import de.fraunhofer.iem.opcuascanner.utils.AddressSpaceCache;
+import de.fraunhofer.iem.opcuascanner.utils.CertificateUtil;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.UserTokenType;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.UserTokenPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CredentialTesterTest {
+
+    private static final int MANY_LOGINS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String originalBrowseResultDirectory;
+
+    @Before
+    public void writeBrowseResultsToTemporaryFolder() {
+        //Accepted logins browse the loopback server, which writes its address space to an XML file
+        originalBrowseResultDirectory = Configuration.getBrowseResultDirectory();
+        Configuration.setBrowseResultDirectory(folder.getRoot().getPath());
+    }
+
+    @After
+    public void restoreBrowseResultDirectory() {
+        Configuration.setBrowseResultDirectory(originalBrowseResultDirectory);
+    }
+
+    @Test
+    public void testBusyServerIsToldApartFromRejectedLogin(){
+        assertTrue("Too many sessions should count as busy.",
+                CredentialTester.isServerBusy(new StatusCode(StatusCodes.Bad_TooManySessions)));
+        assertTrue("Busy tcp server should count as busy.",
+                CredentialTester.isServerBusy(new StatusCode(StatusCodes.Bad_TcpServerTooBusy)));
+        assertFalse("Denied user should not count as busy.",
+                CredentialTester.isServerBusy(new StatusCode(StatusCodes.Bad_UserAccessDenied)));
+    }
+
+    @Test
+    public void testNoLoginsAreTriedIfEndpointDoesNotAcceptUsernames() throws InterruptedException {
+        UserTokenPolicy anonymousOnly = new UserTokenPolicy("anonymous", UserTokenType.Anonymous, null, null, null);
+        EndpointDescription endpoint = new EndpointDescription("opc.tcp://127.0.0.1:4840", null, null, //NOSONAR
+                MessageSecurityMode.None, SecurityPolicy.None.getSecurityPolicyUri(),
+                new UserTokenPolicy[]{anonymousOnly}, null, null);
+        CountingLogins logins = new CountingLogins(MANY_LOGINS);
+        AccessPrivileges privileges = new AccessPrivileges();
+
+        assertFalse("No login should be found.",
+                testLogins(endpoint, logins, privileges).isPresent());
+        assertEquals("No login should have been read.", 0, logins.read.get());
+        assertConnectTestedButNotGranted(privileges);
+    }
+
+    @Test
+    public void testLoginsAreGivenUpIfEndpointCanNotBeConnected() throws IOException, InterruptedException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())){
+            closedPort = socket.getLocalPort();
+        }
+        EndpointDescription endpoint = new EndpointDescription("opc.tcp://127.0.0.1:" + closedPort, //NOSONAR
+                null, null, MessageSecurityMode.None, SecurityPolicy.None.getSecurityPolicyUri(), null, null, null);
+        CountingLogins logins = new CountingLogins(MANY_LOGINS);
+        AccessPrivileges privileges = new AccessPrivileges();
+
+        assertFalse("No login should be found.",
+                testLogins(endpoint, logins, privileges).isPresent());
+        assertTrue("Logins should have been given up early.", logins.read.get() < MANY_LOGINS);
+        assertConnectTestedButNotGranted(privileges);
+    }
+
+    @Test
+    public void testRejectedLoginsAreFollowedByNextLoginOnSameConnection() throws Exception {
+        int originalLanes = Configuration.getMaxParallelLoginsPerEndpoint();
+        Configuration.setMaxParallelLoginsPerEndpoint(1);
+        try (LoopbackServer server = new LoopbackServer(false);
+             EndpointSession session = new EndpointSession(server.getEndpoint(),
+                     CertificateUtil.getWorkingSelfSignedCertificate())){
+            Login valid = new Login(LoopbackServer.USERNAME, LoopbackServer.PASSWORD);
+            Iterator<Login> logins = Arrays.asList(new Login(LoopbackServer.USERNAME, "wrong"),
+                    new Login("other", LoopbackServer.PASSWORD), valid).iterator();
+            AccessPrivileges privileges = new AccessPrivileges();
+
+            Optional<Login> found = new CredentialTester(server.getEndpoint(), session, logins, privileges,
+                    new AddressSpaceCache()).testLogins();
+            assertEquals("The valid login after the rejected ones should be found.", Optional.of(valid), found);
+            assertTrue("Connect should be granted.",
+                    privileges.isPrivilegePerAuthentication(Privilege.CONNECT, Authentication.COMMON_CREDENTIALS));
+            assertEquals("All logins should be tried on the same connection.", 1, session.getOpenedConnections());
+        } finally {
+            Configuration.setMaxParallelLoginsPerEndpoint(originalLanes);
+        }
+    }
+
+    private static Optional<Login> testLogins(EndpointDescription endpoint, Iterator<Login> logins,
+                                              AccessPrivileges privileges) throws InterruptedException {
+        try (EndpointSession session = new EndpointSession(endpoint,
+                CertificateUtil.getWorkingSelfSignedCertificate())){
+            return new CredentialTester(endpoint, session, logins, privileges, new AddressSpaceCache()).testLogins();
+        }
+    }
+
+    private static void assertConnectTestedButNotGranted(AccessPrivileges privileges) {
+        assertTrue("Connect should be tested.",
+                privileges.wasTested(Privilege.CONNECT, Authentication.COMMON_CREDENTIALS));
+        assertFalse("Connect should not be granted.",
+                privileges.isPrivilegePerAuthentication(Privilege.CONNECT, Authentication.COMMON_CREDENTIALS));
+    }
+
+    private static class CountingLogins implements Iterator<Login> {
+        private final int size;
+        private final AtomicInteger read = new AtomicInteger();
+
+        private CountingLogins(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read.get() < size;
+        }
+
+        @Override
+        public Login next() {
+            int index = read.incrementAndGet();
+            return new Login("user" + index, "password" + index);
+        }
+    }
+}
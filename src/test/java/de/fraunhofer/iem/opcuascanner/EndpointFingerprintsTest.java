@@ -0,0 +1,85 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.UserTokenType;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.UserTokenPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EndpointFingerprintsTest {
+
+    private static final String ENDPOINT_KEY = "opc.tcp://10.0.0.1:4840#None#None";
+    private static final long MAX_AGE = TimeUnit.HOURS.toMillis(1);
+    private static final long NOW = TimeUnit.DAYS.toMillis(1000);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static EndpointDescription endpoint(byte[] certificate, UserTokenType tokenType) {
+        UserTokenPolicy policy = new UserTokenPolicy("policy", tokenType, null, null, null);
+        return new EndpointDescription("opc.tcp://10.0.0.1:4840", null, ByteString.of(certificate), //NOSONAR
+                MessageSecurityMode.None, SecurityPolicy.None.getSecurityPolicyUri(),
+                new UserTokenPolicy[]{policy}, null, null);
+    }
+
+    @Test
+    public void testFingerprintChangesWithCertificateAndPolicies() {
+        String fingerprint = EndpointFingerprints.fingerprint(endpoint(new byte[]{1, 2}, UserTokenType.Anonymous));
+
+        assertEquals("Same endpoint should have the same fingerprint.", fingerprint,
+                EndpointFingerprints.fingerprint(endpoint(new byte[]{1, 2}, UserTokenType.Anonymous)));
+        assertNotEquals("New certificate should change the fingerprint.", fingerprint,
+                EndpointFingerprints.fingerprint(endpoint(new byte[]{1, 3}, UserTokenType.Anonymous)));
+        assertNotEquals("New user token policy should change the fingerprint.", fingerprint,
+                EndpointFingerprints.fingerprint(endpoint(new byte[]{1, 2}, UserTokenType.UserName)));
+    }
+
+    @Test
+    public void testUnchangedResultsAreCarriedForward() {
+        Path file = folder.getRoot().toPath().resolve("fingerprints.txt");
+        AccessPrivileges privileges = new AccessPrivileges();
+        privileges.setPrivilegeWasTested(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        privileges.setPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        EndpointFingerprints fingerprints = EndpointFingerprints.load(file, MAX_AGE);
+        fingerprints.record(ENDPOINT_KEY, "fingerprint", privileges, NOW);
+        fingerprints.save(NOW);
+
+        EndpointFingerprints loaded = EndpointFingerprints.load(file, MAX_AGE);
+        AccessPrivileges carried = loaded.getUnchangedResults(ENDPOINT_KEY, "fingerprint", NOW + 1);
+        assertTrue("Results of unchanged endpoint should be carried forward.",
+                carried.isPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY));
+        assertNull("Changed endpoint should be tested again.",
+                loaded.getUnchangedResults(ENDPOINT_KEY, "other fingerprint", NOW + 1));
+        assertNull("Too old results should be tested again.",
+                loaded.getUnchangedResults(ENDPOINT_KEY, "fingerprint", NOW + MAX_AGE + 1));
+        assertNull("New endpoint should be tested.",
+                loaded.getUnchangedResults("opc.tcp://10.0.0.2:4840#None#None", "fingerprint", NOW + 1));
+    }
+
+    @Test
+    public void testTooOldResultsAreNotSaved() {
+        Path file = folder.getRoot().toPath().resolve("fingerprints.txt");
+        EndpointFingerprints fingerprints = EndpointFingerprints.load(file, MAX_AGE);
+        fingerprints.record(ENDPOINT_KEY, "fingerprint", new AccessPrivileges(), NOW);
+        fingerprints.save(NOW + MAX_AGE + 1);
+
+        assertNull("Too old results should be dropped from the file.", EndpointFingerprints.load(file, Long.MAX_VALUE)
+                .getUnchangedResults(ENDPOINT_KEY, "fingerprint", NOW));
+        assertEquals("Only the fingerprint file should be left.", 1, folder.getRoot().list().length);
+    }
+}
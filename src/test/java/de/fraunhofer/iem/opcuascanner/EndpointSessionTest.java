@@ -0,0 +1,130 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.utils.CertificateUtil;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.AnonymousProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.IdentityProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EndpointSessionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String originalBrowseResultDirectory;
+
+    @Before
+    public void writeBrowseResultsToTemporaryFolder() {
+        //Accepted identities browse the loopback server, which writes its address space to an XML file
+        originalBrowseResultDirectory = Configuration.getBrowseResultDirectory();
+        Configuration.setBrowseResultDirectory(folder.getRoot().getPath());
+    }
+
+    @After
+    public void restoreBrowseResultDirectory() {
+        Configuration.setBrowseResultDirectory(originalBrowseResultDirectory);
+    }
+
+    @Test
+    public void testIdentityRejectionIsToldApartFromUnusableSession(){
+        assertTrue("Denied user should count as rejected identity.",
+                EndpointSession.isIdentityRejected(new StatusCode(StatusCodes.Bad_UserAccessDenied)));
+        assertTrue("Rejected token should count as rejected identity.",
+                EndpointSession.isIdentityRejected(new StatusCode(StatusCodes.Bad_IdentityTokenRejected)));
+        assertFalse("Invalid session should not count as rejected identity.",
+                EndpointSession.isIdentityRejected(new StatusCode(StatusCodes.Bad_SessionIdInvalid)));
+        assertFalse("Unsupported identity change should not count as rejected identity.",
+                EndpointSession.isIdentityRejected(new StatusCode(StatusCodes.Bad_IdentityChangeNotSupported)));
+    }
+
+    @Test
+    public void testFailedConnectIsNotKeptForNextIdentity() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())){
+            closedPort = socket.getLocalPort();
+        }
+        EndpointDescription endpoint = new EndpointDescription("opc.tcp://127.0.0.1:" + closedPort, //NOSONAR
+                null, null, MessageSecurityMode.None, SecurityPolicy.None.getSecurityPolicyUri(), null, null, null);
+
+        try (EndpointSession session = new EndpointSession(endpoint,
+                CertificateUtil.getWorkingSelfSignedCertificate())){
+            for (int i = 0; i < 2; i++){
+                try {
+                    session.activate(new AnonymousProvider());
+                    fail("Activation should fail on a closed port.");
+                } catch (Exception e) {
+                    //Expected, nothing listens on the port
+                }
+            }
+            assertEquals("Each identity should try to connect since no connection was established.", 2,
+                    session.getOpenedConnections());
+        }
+    }
+
+    @Test
+    public void testIdentitiesAreCheckedOnOneConnection() throws Exception {
+        try (LoopbackServer server = new LoopbackServer(false);
+             EndpointSession session = new EndpointSession(server.getEndpoint(),
+                     CertificateUtil.getWorkingSelfSignedCertificate())){
+            assertRejected(session, new AnonymousProvider());
+            assertRejected(session, new UsernameProvider(LoopbackServer.USERNAME, "wrong"));
+
+            OpcUaClient client = session.activate(new UsernameProvider(LoopbackServer.USERNAME,
+                    LoopbackServer.PASSWORD));
+            assertNotNull("The accepted identity should be able to read.", client.readValue(0.0,
+                    TimestampsToReturn.Neither, Identifiers.Server_ServerStatus_State).get().getValue().getValue());
+            assertRejected(session, new UsernameProvider("other", LoopbackServer.PASSWORD));
+            assertEquals("All identities should be checked on the same connection.", 1,
+                    session.getOpenedConnections());
+        }
+    }
+
+    @Test
+    public void testAcceptedIdentitiesShareOneConnection() throws Exception {
+        try (LoopbackServer server = new LoopbackServer(true);
+             EndpointSession session = new EndpointSession(server.getEndpoint(),
+                     CertificateUtil.getWorkingSelfSignedCertificate())){
+            OpcUaClient anonymous = session.activate(new AnonymousProvider());
+            OpcUaClient user = session.activate(new UsernameProvider(LoopbackServer.USERNAME,
+                    LoopbackServer.PASSWORD));
+            assertSame("Both identities should use the same client.", anonymous, user);
+            assertNotNull("The session should still be usable after changing its identity.", user.readValue(0.0,
+                    TimestampsToReturn.Neither, Identifiers.Server_ServerStatus_State).get().getValue().getValue());
+            assertEquals("Both identities should use the same connection.", 1, session.getOpenedConnections());
+        }
+    }
+
+    private static void assertRejected(EndpointSession session, IdentityProvider identity) throws Exception {
+        try {
+            session.activate(identity);
+            fail("The identity should be rejected.");
+        } catch (UaException e) {
+            assertTrue("The identity should be rejected, not the session.",
+                    EndpointSession.isIdentityRejected(e.getStatusCode()));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.utils.CertificateUtil;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig;
+import org.eclipse.milo.opcua.sdk.server.identity.UsernameIdentityValidator;
+import org.eclipse.milo.opcua.stack.client.UaTcpStackClient;
+import org.eclipse.milo.opcua.stack.core.application.DefaultCertificateManager;
+import org.eclipse.milo.opcua.stack.core.application.InsecureCertificateValidator;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An OPC UA server without security on the loopback interface, which accepts one user and optionally anonymous
+ * users, for testing the scanner against a real server.
+ */
+public class LoopbackServer implements AutoCloseable {
+
+    static final String USERNAME = "user";
+    static final String PASSWORD = "secret";
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    private final OpcUaServer server;
+    private final int port;
+
+    /**
+     * @param allowAnonymous Whether anonymous users may connect
+     */
+    public LoopbackServer(boolean allowAnonymous) throws IOException, InterruptedException, ExecutionException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())){
+            port = socket.getLocalPort();
+        }
+        UsernameIdentityValidator identityValidator = new UsernameIdentityValidator(allowAnonymous,
+                challenge -> USERNAME.equals(challenge.getUsername()) && PASSWORD.equals(challenge.getPassword()));
+        OpcUaServerConfig config = OpcUaServerConfig.builder()
+                .setApplicationUri(CertificateUtil.APPLICATION_URI)
+                .setApplicationName(LocalizedText.english("OPC UA Loopback Test Server"))
+                .setBindAddresses(Collections.singletonList(LOOPBACK))
+                .setEndpointAddresses(Collections.singletonList(LOOPBACK))
+                .setBindPort(port)
+                .setSecurityPolicies(EnumSet.of(SecurityPolicy.None))
+                .setUserTokenPolicies(Arrays.asList(OpcUaServerConfig.USER_TOKEN_POLICY_ANONYMOUS,
+                        OpcUaServerConfig.USER_TOKEN_POLICY_USERNAME))
+                .setIdentityValidator(identityValidator)
+                .setCertificateManager(new DefaultCertificateManager(CertificateUtil.getOrGenerateRsaKeyPair(),
+                        CertificateUtil.getWorkingSelfSignedCertificate()))
+                .setCertificateValidator(new InsecureCertificateValidator())
+                .build();
+        server = new OpcUaServer(config);
+        server.startup().get();
+    }
+
+    /**
+     * @return The endpoint of the server, as the server announces it
+     */
+    EndpointDescription getEndpoint() throws InterruptedException, ExecutionException {
+        return UaTcpStackClient.getEndpoints("opc.tcp://" + LOOPBACK + ":" + port).get()[0]; //NOSONAR
+    }
+
+    /**
+     * @return The address and port the server listens on
+     */
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(LOOPBACK, port);
+    }
+
+    @Override
+    public void close() throws InterruptedException, ExecutionException {
+        server.shutdown().get();
+    }
+}
@@ -3,13 +3,194 @@ package de.fraunhofer.iem.opcuascanner;
 import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
 import de.fraunhofer.iem.opcuascanner.logic.Authentication;
 import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import de.fraunhofer.iem.opcuascanner.utils.AddressSpaceCache;
+import de.fraunhofer.iem.opcuascanner.utils.AddressSpaceGraph;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.client.UaTcpStackClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class PrivilegeTesterTest {
 
+    private static final int OPERATION_TIMEOUT_IN_MS = 300;
+
+    private OpcUaClient client;
+    private int originalTimeout;
+    private int originalMaxNodesPerBrowse;
+
+    @Before
+    public void setUp() {
+        originalTimeout = Configuration.getOperationTimeoutInMs();
+        originalMaxNodesPerBrowse = Configuration.getMaxNodesPerBrowse();
+        Configuration.setOperationTimeoutInMs(OPERATION_TIMEOUT_IN_MS);
+        client = mock(OpcUaClient.class);
+        //Browsing is denied, so only reading is of interest
+        BrowseResult[] denied = {new BrowseResult(new StatusCode(StatusCodes.Bad_UserAccessDenied), null, null)};
+        when(client.browse(any(), any(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(new BrowseResponse(null, denied, null)));
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.setOperationTimeoutInMs(originalTimeout);
+        Configuration.setMaxNodesPerBrowse(originalMaxNodesPerBrowse);
+    }
+
+    @Test
+    public void testSlowReadIsStillGranted(){
+        List<DataValue> values = Arrays.asList(new DataValue(new Variant(0)), new DataValue(new Variant(0)));
+        CompletableFuture<List<DataValue>> slowRead = new CompletableFuture<>();
+        when(client.readValues(anyDouble(), any(), anyList())).thenAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> {
+                sleepQuietly(OPERATION_TIMEOUT_IN_MS / 3);
+                slowRead.complete(values);
+            });
+            return slowRead;
+        });
+
+        AccessPrivileges privileges = PrivilegeTester.testPrivilegeOfConnectedClient(client, new AccessPrivileges(),
+                Authentication.ANONYMOUSLY, new AddressSpaceCache());
+
+        assertTrue("Read should be tested.", privileges.wasTested(Privilege.READ, Authentication.ANONYMOUSLY));
+        assertTrue("A read completing within the timeout should be granted.",
+                privileges.isPrivilegePerAuthentication(Privilege.READ, Authentication.ANONYMOUSLY));
+        assertFalse("Browsing was denied.",
+                privileges.isPrivilegePerAuthentication(Privilege.BROWSE, Authentication.ANONYMOUSLY));
+    }
+
+    @Test
+    public void testUnansweredReadTimesOut(){
+        when(client.readValues(anyDouble(), any(), anyList())).thenReturn(new CompletableFuture<>());
+
+        long start = System.nanoTime();
+        AccessPrivileges privileges = PrivilegeTester.testPrivilegeOfConnectedClient(client, new AccessPrivileges(),
+                Authentication.ANONYMOUSLY, new AddressSpaceCache());
+        long elapsedInMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("Testing should wait for the timeout, but took " + elapsedInMs + " ms.",
+                elapsedInMs >= OPERATION_TIMEOUT_IN_MS);
+        assertTrue("Read should be tested.", privileges.wasTested(Privilege.READ, Authentication.ANONYMOUSLY));
+        assertFalse("A read without answer should not be granted.",
+                privileges.isPrivilegePerAuthentication(Privilege.READ, Authentication.ANONYMOUSLY));
+    }
+
+    @Test
+    public void testReadWithOnlyBadValuesIsNotGranted(){
+        DataValue denied = new DataValue(new StatusCode(StatusCodes.Bad_UserAccessDenied));
+        when(client.readValues(anyDouble(), any(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(Arrays.asList(denied, denied)));
+
+        AccessPrivileges privileges = PrivilegeTester.testPrivilegeOfConnectedClient(client, new AccessPrivileges(),
+                Authentication.ANONYMOUSLY, new AddressSpaceCache());
+
+        assertTrue("Read should be tested.", privileges.wasTested(Privilege.READ, Authentication.ANONYMOUSLY));
+        assertFalse("A read whose values were all denied should not be granted.",
+                privileges.isPrivilegePerAuthentication(Privilege.READ, Authentication.ANONYMOUSLY));
+    }
+
+    @Test
+    public void testOneMethodPerObjectIsCalledInBatches() {
+        Configuration.setMaxNodesPerBrowse(2);
+        List<List<CallMethodRequest>> calls = answerCalls(new StatusCode(StatusCodes.Bad_UserAccessDenied));
+
+        boolean called = PrivilegeTester.tryCalling(client, addressSpaceWithMethods(3, 2)).join();
+
+        assertFalse("Calls which were all denied should not grant the privilege.", called);
+        assertEquals("The methods should be called in requests of at most maxNodesPerBrowse.", 2, calls.size());
+        assertEquals("The first request should be full.", 2, calls.get(0).size());
+        Set<NodeId> objects = new HashSet<>();
+        calls.forEach(call -> call.forEach(request -> objects.add(request.getObjectId())));
+        assertEquals("Exactly one method of every object should be called.", 3, objects.size());
+    }
+
+    @Test
+    public void testCallingStopsOnceAMethodWasCalled() {
+        Configuration.setMaxNodesPerBrowse(2);
+        List<List<CallMethodRequest>> calls = answerCalls(StatusCode.GOOD);
+
+        boolean called = PrivilegeTester.tryCalling(client, addressSpaceWithMethods(3, 2)).join();
+
+        assertTrue("A method which was called should grant the privilege.", called);
+        assertEquals("No more methods should be called once the privilege is granted.", 1, calls.size());
+    }
+
+    /**
+     * Lets the client answer every call with the status code and records the requests of every call
+     */
+    private List<List<CallMethodRequest>> answerCalls(StatusCode statusCode) {
+        when(client.getStackClient()).thenReturn(mock(UaTcpStackClient.class));
+        List<List<CallMethodRequest>> calls = new ArrayList<>();
+        when(client.call(anyList())).thenAnswer(invocation -> {
+            List<CallMethodRequest> requests = new ArrayList<>(invocation.getArgument(0));
+            calls.add(requests);
+            CallMethodResult[] results = new CallMethodResult[requests.size()];
+            Arrays.fill(results, new CallMethodResult(statusCode, null, null, null));
+            return CompletableFuture.completedFuture(new CallResponse(null, results, null));
+        });
+        return calls;
+    }
+
+    private static AddressSpaceGraph addressSpaceWithMethods(int objects, int methodsPerObject) {
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(Identifiers.RootFolder);
+        for (int object = 0; object < objects; object++) {
+            NodeId objectId = new NodeId(1, "object" + object);
+            builder.addReference(Identifiers.RootFolder, reference(objectId, NodeClass.Object));
+            for (int method = 0; method < methodsPerObject; method++) {
+                builder.addReference(objectId,
+                        reference(new NodeId(1, "object" + object + "/method" + method), NodeClass.Method));
+            }
+        }
+        return builder.build();
+    }
+
+    private static ReferenceDescription reference(NodeId target, NodeClass nodeClass) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(target),
+                new QualifiedName(1, target.getIdentifier().toString()), LocalizedText.english(""), nodeClass,
+                ExpandedNodeId.NULL_VALUE);
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Test
     public void testSetOtherPrivilegesToTestedOnlySetsIfConnectTested(){
         AccessPrivileges accessPrivileges = new AccessPrivileges();
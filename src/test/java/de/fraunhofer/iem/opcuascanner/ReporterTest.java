@@ -15,6 +15,7 @@ import java.io.*;
 
 import java.nio.file.Files;
 import java.util.HashMap;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -128,6 +129,74 @@ public class ReporterTest {
         }
     }
 
+    @Test
+    public void testResultWriterWritesEachEndpointRightAway() throws IOException {
+        AccessPrivileges accessPrivileges = new AccessPrivileges();
+        accessPrivileges.setPrivilegeWasTested(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        File reportFile = new File(Configuration.getOutputFileName() + ResultReporter.DEFAULT_FILE_EXTENSION);
+        try (ResultReporter.ResultWriter writer = ResultReporter.openResultWriter()){
+            writer.write("FirstEndpoint", accessPrivileges);
+            List<String> lines = Files.readAllLines(reportFile.toPath());
+            assertEquals("Header and first endpoint should be written before closing", 2, lines.size());
+            assertTrue("First endpoint should be written", lines.get(1).startsWith("FirstEndpoint"));
+
+            writer.write("SecondEndpoint", accessPrivileges);
+            lines = Files.readAllLines(reportFile.toPath());
+            assertEquals("Second endpoint should be appended", 3, lines.size());
+            assertTrue("Second endpoint should be written", lines.get(2).startsWith("SecondEndpoint"));
+        }
+    }
+
+    @Test
+    public void testResultWriterWritesJsonLines() throws IOException {
+        AccessPrivileges accessPrivileges = new AccessPrivileges();
+        accessPrivileges.setPrivilegeWasTested(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        accessPrivileges.setPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        accessPrivileges.setPrivilegeWasTested(Privilege.READ, Authentication.ANONYMOUSLY);
+        File reportFile = new File(Configuration.getOutputFileName() + ResultReporter.JSON_LINES_FILE_EXTENSION);
+        try (ResultReporter.ResultWriter writer = new ResultReporter.ResultWriter(reportFile.toPath(), true, 0)){
+            writer.write("opc.tcp://\"quoted\"", accessPrivileges);
+        }
+        List<String> lines = Files.readAllLines(reportFile.toPath());
+        Files.delete(reportFile.toPath());
+
+        assertEquals("There should be one line per endpoint and no header", 1, lines.size());
+        String line = lines.get(0);
+        assertTrue("Endpoint should be escaped", line.startsWith("{\"endpoint\":\"opc.tcp://\\\"quoted\\\"\""));
+        assertTrue("Privileges should be grouped by authentication",
+                line.contains("\"ANONYMOUSLY\":{\"CONNECT\":true,\"READ\":false,\"BROWSE\":null"));
+        assertTrue("Line should be a complete object", line.endsWith("}}"));
+    }
+
+    @Test
+    public void testResultWriterWritesBufferedLinesOnClose() throws IOException {
+        File reportFile = new File(Configuration.getOutputFileName() + ResultReporter.DEFAULT_FILE_EXTENSION);
+        try (ResultReporter.ResultWriter writer = new ResultReporter.ResultWriter(reportFile.toPath(), false,
+                60000)){
+            writer.write("FirstEndpoint", new AccessPrivileges());
+            assertEquals("Lines should be buffered until the flush interval", 0,
+                    Files.readAllLines(reportFile.toPath()).size());
+        }
+        assertEquals("Header and endpoint should be written on close", 2,
+                Files.readAllLines(reportFile.toPath()).size());
+    }
+
+    @Test
+    public void testReportIsSortedByEndpoint(){
+        results.put("b", new AccessPrivileges());
+        results.put("c", new AccessPrivileges());
+        results.put("a", new AccessPrivileges());
+        ResultReporter.reportToFile(results);
+        File reportFile = new File(Configuration.getOutputFileName() + ResultReporter.DEFAULT_FILE_EXTENSION);
+        try {
+            List<String> lines = Files.readAllLines(reportFile.toPath());
+            assertTrue("First endpoint should be written first", lines.get(1).startsWith("a"));
+            assertTrue("Last endpoint should be written last", lines.get(3).startsWith("c"));
+        } catch (IOException e) {
+            fail("Could not read report file");
+        }
+    }
+
     private int getFieldForHeader(String line, String header) {
         String[] headers = line.split(ResultReporter.CSV_DELIMITER);
         for (int i = 1; i < headers.length; i++){
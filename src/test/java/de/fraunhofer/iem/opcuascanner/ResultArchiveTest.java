@@ -0,0 +1,104 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResultArchiveTest {
+
+    private static final int ENDPOINTS = ResultArchive.ROWS_PER_BLOCK + 10;
+    private static final String WRITABLE_ENDPOINT = endpoint(ENDPOINTS - 1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    private static String endpoint(int number) {
+        return "opc.tcp://10.0." + (number / 256) + "." + (number % 256) + ":4840#None#None";
+    }
+
+    /**
+     * Writes two blocks, only the last endpoint of the second block allows anonymous writes
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve("results.bin");
+        try (ResultArchive.Writer writer = ResultArchive.openWriter(file)) {
+            for (int number = 0; number < ENDPOINTS; number++) {
+                AccessPrivileges privileges = new AccessPrivileges();
+                privileges.setPrivilegeWasTested(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+                privileges.setPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+                privileges.setPrivilegeWasTested(Privilege.WRITE, Authentication.ANONYMOUSLY);
+                if (endpoint(number).equals(WRITABLE_ENDPOINT)) {
+                    privileges.setPrivilegePerAuthentication(Privilege.WRITE, Authentication.ANONYMOUSLY);
+                }
+                writer.write(endpoint(number), privileges);
+            }
+        }
+    }
+
+    @Test
+    public void testAllResultsAreReadAsWritten() throws IOException {
+        Map<String, AccessPrivileges> results;
+        try (ResultArchive.Reader reader = ResultArchive.openReader(file)) {
+            results = reader.readAll();
+        }
+
+        assertEquals("All endpoints should be read.", ENDPOINTS, results.size());
+        AccessPrivileges first = results.get(endpoint(0));
+        assertTrue("Granted privilege should be read.",
+                first.isPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY));
+        assertFalse("Refused privilege should be read.",
+                first.isPrivilegePerAuthentication(Privilege.WRITE, Authentication.ANONYMOUSLY));
+        assertFalse("Untested privilege should be read.", first.wasTested(Privilege.READ, Authentication.ANONYMOUSLY));
+        assertTrue("Privilege of last endpoint should be read.", results.get(WRITABLE_ENDPOINT)
+                .isPrivilegePerAuthentication(Privilege.WRITE, Authentication.ANONYMOUSLY));
+    }
+
+    @Test
+    public void testQuerySkipsBlocksWithoutMatches() throws IOException {
+        //Break the compressed data of the first block, which has no endpoint allowing anonymous writes
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            randomAccessFile.seek(64);
+            randomAccessFile.write(new byte[64]);
+        }
+
+        try (ResultArchive.Reader reader = ResultArchive.openReader(file)) {
+            assertEquals("Only the endpoint allowing anonymous writes should be found.",
+                    Collections.singletonList(WRITABLE_ENDPOINT),
+                    reader.findEndpointsGranting(Privilege.WRITE, Authentication.ANONYMOUSLY));
+            try {
+                reader.readAll();
+                fail("Reading the broken block should fail.");
+            } catch (IOException e) {
+                //Expected, reading all endpoints has to decompress the broken block
+            }
+        }
+    }
+
+    @Test
+    public void testQueryByTestedAndGrantedBits() throws IOException {
+        try (ResultArchive.Reader reader = ResultArchive.openReader(file)) {
+            assertEquals("All endpoints tested for anonymous writes should be found.", ENDPOINTS, reader
+                    .findEndpoints(ResultArchive.bit(Privilege.WRITE, Authentication.ANONYMOUSLY), 0).size());
+            assertEquals("No endpoint was tested with expired certificates.", Collections.emptyList(), reader
+                    .findEndpoints(ResultArchive.bit(Privilege.CONNECT, Authentication.EXPIRED_CERTIFICATE), 0));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package de.fraunhofer.iem.opcuascanner;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanJournalTest {
+
+    private static final String ENDPOINT = "opc.tcp://10.0.0.1:4840#None#None";
+    private static final String OTHER_ENDPOINT = "opc.tcp://10.0.0.1:4840#Basic256#SignAndEncrypt";
+    private static final String KEY = "key";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static InetSocketAddress host(String address) throws IOException {
+        return new InetSocketAddress(InetAddress.getByName(address), 4840);
+    }
+
+    @Test
+    public void testProgressIsResumed() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("journal.txt");
+        AccessPrivileges privileges = new AccessPrivileges();
+        privileges.setPrivilegeWasTested(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        privileges.setPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        privileges.setPrivilegeWasTested(Privilege.READ, Authentication.ANONYMOUSLY);
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            journal.recordReachable(host("10.0.0.1"));
+            journal.recordReachable(host("10.0.0.2"));
+            journal.recordSweepDone();
+            journal.recordDiscovered(host("10.0.0.1"), Arrays.asList(ENDPOINT, OTHER_ENDPOINT));
+            journal.recordResult(ENDPOINT, Authentication.ANONYMOUSLY, privileges);
+            journal.recordDone(ENDPOINT);
+            journal.recordResult(OTHER_ENDPOINT, Authentication.ANONYMOUSLY, privileges);
+        }
+
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            assertTrue("Sweep should be known as done.", journal.isSweepDone());
+            assertEquals("Reachable hosts should be known in order.", Arrays.asList(host("10.0.0.1"),
+                    host("10.0.0.2")), journal.getReachableHosts());
+            assertTrue("Done endpoint should be known.", journal.isEndpointDone(ENDPOINT));
+            assertFalse("Host with an endpoint which is not done should not be done.",
+                    journal.isHostDone(host("10.0.0.1")));
+            assertFalse("Host which was not discovered should not be done.", journal.isHostDone(host("10.0.0.2")));
+            assertTrue("Tested authentication should be known.",
+                    journal.wasTested(OTHER_ENDPOINT, Authentication.ANONYMOUSLY));
+            assertFalse("Untested authentication should not be known.",
+                    journal.wasTested(OTHER_ENDPOINT, Authentication.COMMON_CREDENTIALS));
+            AccessPrivileges resumed = journal.getResults(OTHER_ENDPOINT);
+            assertTrue("Granted privilege should be resumed.",
+                    resumed.isPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY));
+            assertFalse("Refused privilege should be resumed.",
+                    resumed.isPrivilegePerAuthentication(Privilege.READ, Authentication.ANONYMOUSLY));
+            assertFalse("Untested privilege should stay untested.",
+                    resumed.wasTested(Privilege.BROWSE, Authentication.ANONYMOUSLY));
+
+            journal.recordDone(OTHER_ENDPOINT);
+            assertTrue("Host should be done once all its endpoints are.", journal.isHostDone(host("10.0.0.1")));
+        }
+    }
+
+    @Test
+    public void testSweepIsContinuedWhereItStopped() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("journal.txt");
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            assertTrue("A new host should be recorded.", journal.recordReachable(host("10.0.0.1")));
+            assertFalse("A known host should not be recorded again.", journal.recordReachable(host("10.0.0.1")));
+            journal.recordSweepPosition(ScanJournal.SWEEP_POSITION_INTERVAL - 1);
+            assertEquals("Positions are only recorded every interval.", 0, journal.getSweepPosition());
+            journal.recordSweepPosition(ScanJournal.SWEEP_POSITION_INTERVAL + 5);
+        }
+
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            assertFalse("Sweep should not be known as done.", journal.isSweepDone());
+            assertEquals("The sweep position should be resumed.", ScanJournal.SWEEP_POSITION_INTERVAL + 5,
+                    journal.getSweepPosition());
+            assertFalse("A host reached before should be known.", journal.recordReachable(host("10.0.0.1")));
+        }
+    }
+
+    @Test
+    public void testResultsOfDoneEndpointsAreReadFromFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("journal.txt");
+        AccessPrivileges privileges = new AccessPrivileges();
+        privileges.setPrivilegeWasTested(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        privileges.setPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY);
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            journal.recordResult(ENDPOINT, Authentication.ANONYMOUSLY, privileges);
+            journal.recordResult(OTHER_ENDPOINT, Authentication.ANONYMOUSLY, privileges);
+            journal.recordDone(ENDPOINT);
+        }
+
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            Map<String, AccessPrivileges> replayed = new LinkedHashMap<>();
+            journal.replayDoneResults(replayed::put);
+            assertEquals("Only the done endpoint should be replayed.", Collections.singleton(ENDPOINT),
+                    replayed.keySet());
+            assertTrue("Granted privilege should be replayed.", replayed.get(ENDPOINT)
+                    .isPrivilegePerAuthentication(Privilege.CONNECT, Authentication.ANONYMOUSLY));
+            assertTrue("Results of an endpoint which is not done should be kept.",
+                    journal.wasTested(OTHER_ENDPOINT, Authentication.ANONYMOUSLY));
+        }
+    }
+
+    @Test
+    public void testLineCutOffWhenStoppedIsIgnored() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("journal.txt");
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            journal.recordDone(ENDPOINT);
+        }
+        Files.write(file, ("RESULT\t" + OTHER_ENDPOINT + "\tANONYMOUSLY\t3").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            assertFalse("Cut off result should be ignored.",
+                    journal.wasTested(OTHER_ENDPOINT, Authentication.ANONYMOUSLY));
+            journal.recordDone(OTHER_ENDPOINT);
+        }
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            assertEquals("Entries after a cut off line should be read.", Arrays.asList(ENDPOINT, OTHER_ENDPOINT),
+                    journal.getDoneEndpoints());
+        }
+    }
+
+    @Test
+    public void testCompletedScanStartsOver() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("journal.txt");
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            journal.recordDone(ENDPOINT);
+            journal.recordComplete();
+        }
+
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            assertEquals("Completed scan should not be resumed.", Collections.emptyList(),
+                    journal.getDoneEndpoints());
+        }
+    }
+
+    @Test
+    public void testScanWithOtherSettingsStartsOver() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("journal.txt");
+        try (ScanJournal journal = ScanJournal.open(file, KEY)) {
+            journal.recordSweepPosition(ScanJournal.SWEEP_POSITION_INTERVAL);
+            journal.recordDone(ENDPOINT);
+        }
+
+        try (ScanJournal journal = ScanJournal.open(file, "otherKey")) {
+            assertEquals("Sweep of a scan with other settings should not be resumed.", 0,
+                    journal.getSweepPosition());
+            assertEquals("Results of a scan with other settings should not be resumed.", Collections.emptyList(),
+                    journal.getDoneEndpoints());
+            journal.recordDone(OTHER_ENDPOINT);
+        }
+        try (ScanJournal journal = ScanJournal.open(file, "otherKey")) {
+            assertEquals("The new scan should be resumed with its own settings.",
+                    Collections.singletonList(OTHER_ENDPOINT), journal.getDoneEndpoints());
+        }
+    }
+
+    @Test
+    public void testScanKeyDependsOnSettings() throws IOException {
+        InetAddress address = InetAddress.getByName("10.0.0.1");
+        String key = ScanJournal.scanKey(Collections.singletonList(address), Arrays.asList(4840, 4841),
+                Arrays.asList("credentials.txt", true));
+        assertEquals("Same settings should give the same key.", key, ScanJournal.scanKey(
+                Collections.singletonList(address), Arrays.asList(4840, 4841), Arrays.asList("credentials.txt", true)));
+        assertFalse("Other ports should give another key.", key.equals(ScanJournal.scanKey(
+                Collections.singletonList(address), Collections.singletonList(4840),
+                Arrays.asList("credentials.txt", true))));
+        assertFalse("Other settings should give another key.", key.equals(ScanJournal.scanKey(
+                Collections.singletonList(address), Arrays.asList(4840, 4841), Arrays.asList("credentials.txt", false))));
+    }
+}
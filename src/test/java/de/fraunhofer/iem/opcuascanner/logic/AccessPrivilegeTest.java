@@ -2,6 +2,10 @@ package de.fraunhofer.iem.opcuascanner.logic;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import static org.junit.Assert.*;
 
 public class AccessPrivilegeTest {
@@ -131,4 +135,61 @@ public class AccessPrivilegeTest {
         assertFalse("Access Privileges which allow more should not be better..",
                 accessPrivileges2.betterThan(accessPrivileges1, Authentication.ANONYMOUSLY));
     }
+
+    @Test
+    public void testPrivilegesCanBeRestoredFromBits(){
+        AccessPrivileges accessPrivileges = new AccessPrivileges();
+        accessPrivileges.setPrivilegeWasTested(Privilege.CONNECT, Authentication.EXPIRED_CERTIFICATE);
+        accessPrivileges.setPrivilegePerAuthentication(Privilege.CONNECT, Authentication.EXPIRED_CERTIFICATE);
+        accessPrivileges.setPrivilegeWasTested(Privilege.WRITE, Authentication.EXPIRED_CERTIFICATE);
+
+        AccessPrivileges restored = new AccessPrivileges();
+        restored.setPrivilegesFromBits(Authentication.EXPIRED_CERTIFICATE,
+                accessPrivileges.getTestedBits(Authentication.EXPIRED_CERTIFICATE),
+                accessPrivileges.getGrantedBits(Authentication.EXPIRED_CERTIFICATE));
+        for (Privilege privilege : Privilege.values()){
+            for (Authentication authentication : Authentication.values()){
+                assertEquals("Tested should be restored for " + privilege + " " + authentication + ".",
+                        accessPrivileges.wasTested(privilege, authentication),
+                        restored.wasTested(privilege, authentication));
+            }
+        }
+        assertTrue("Granted privilege should be restored.",
+                restored.isPrivilegePerAuthentication(Privilege.CONNECT, Authentication.EXPIRED_CERTIFICATE));
+        assertFalse("Refused privilege should be restored.",
+                restored.isPrivilegePerAuthentication(Privilege.WRITE, Authentication.EXPIRED_CERTIFICATE));
+    }
+
+    @Test
+    public void testPrivilegesSetFromSeveralThreadsAreAllKept() throws InterruptedException {
+        AccessPrivileges accessPrivileges = new AccessPrivileges();
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        //One thread per combination, so every thread sets a different bit of the same long at the same time
+        for (Privilege privilege : Privilege.values()){
+            for (Authentication authentication : Authentication.values()){
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    accessPrivileges.setPrivilegeWasTested(privilege, authentication);
+                    accessPrivileges.setPrivilegePerAuthentication(privilege, authentication);
+                });
+                thread.start();
+                threads.add(thread);
+            }
+        }
+        start.countDown();
+        for (Thread thread : threads){
+            thread.join();
+        }
+        for (Privilege privilege : Privilege.values()){
+            for (Authentication authentication : Authentication.values()){
+                assertTrue("Privilege set concurrently should not be lost for " + privilege + " " + authentication
+                        + ".", accessPrivileges.isPrivilegePerAuthentication(privilege, authentication));
+            }
+        }
+    }
 }
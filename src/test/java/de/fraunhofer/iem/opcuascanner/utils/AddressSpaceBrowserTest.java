@@ -0,0 +1,151 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AddressSpaceBrowserTest {
+
+    private static final NodeId ROOT = new NodeId(0, "root");
+    private static final NodeId FIRST = new NodeId(1, "first");
+    private static final NodeId SECOND = new NodeId(1, "second");
+    private static final NodeId SHARED = new NodeId(1, "shared");
+    private static final NodeId METHOD = new NodeId(1, "method");
+
+    private static final ByteString CONTINUATION_POINT = ByteString.of(new byte[]{1});
+
+    private final List<NodeId> browsedNodes = new ArrayList<>();
+    private final Map<NodeId, NodeId> methods = new HashMap<>();
+    private int largestRequest = 0;
+    private int maxNodesAcceptedByServer = Integer.MAX_VALUE;
+
+    private OpcUaClient client;
+
+    @Before
+    public void setUp() {
+        client = mock(OpcUaClient.class);
+        when(client.browse(any(), any(), anyList())).thenAnswer(invocation -> {
+            List<BrowseDescription> descriptions = invocation.getArgument(2);
+            largestRequest = Math.max(largestRequest, descriptions.size());
+            CompletableFuture<BrowseResponse> future = new CompletableFuture<>();
+            if (descriptions.size() > maxNodesAcceptedByServer) {
+                future.completeExceptionally(new UaException(StatusCodes.Bad_TooManyOperations));
+                return future;
+            }
+            BrowseResult[] results = new BrowseResult[descriptions.size()];
+            for (int i = 0; i < results.length; i++) {
+                NodeId nodeId = descriptions.get(i).getNodeId();
+                browsedNodes.add(nodeId);
+                results[i] = browse(nodeId);
+            }
+            future.complete(new BrowseResponse(null, results, null));
+            return future;
+        });
+        when(client.browseNext(anyBoolean(), anyList())).thenAnswer(invocation -> {
+            List<ByteString> continuationPoints = invocation.getArgument(1);
+            BrowseResult[] results = new BrowseResult[continuationPoints.size()];
+            for (int i = 0; i < results.length; i++) {
+                //The only continuation point is the one of the root
+                results[i] = new BrowseResult(StatusCode.GOOD, null,
+                        new ReferenceDescription[]{reference(SECOND, NodeClass.Object)});
+            }
+            return CompletableFuture.completedFuture(new BrowseNextResponse(null, results, null));
+        });
+    }
+
+    /**
+     * The root references first and second, the second only after a continuation point. Both of them reference the
+     * shared node, the shared node has a method.
+     */
+    private static BrowseResult browse(NodeId nodeId) {
+        if (ROOT.equals(nodeId)) {
+            return new BrowseResult(StatusCode.GOOD, CONTINUATION_POINT,
+                    new ReferenceDescription[]{reference(FIRST, NodeClass.Object)});
+        } else if (FIRST.equals(nodeId) || SECOND.equals(nodeId)) {
+            return new BrowseResult(StatusCode.GOOD, null,
+                    new ReferenceDescription[]{reference(SHARED, NodeClass.Variable)});
+        } else if (SHARED.equals(nodeId)) {
+            return new BrowseResult(StatusCode.GOOD, null,
+                    new ReferenceDescription[]{reference(METHOD, NodeClass.Method)});
+        }
+        return new BrowseResult(new StatusCode(StatusCodes.Bad_NodeIdUnknown), null, null);
+    }
+
+    private static ReferenceDescription reference(NodeId target, NodeClass nodeClass) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(target),
+                new QualifiedName(1, target.getIdentifier().toString()), LocalizedText.english(""), nodeClass,
+                ExpandedNodeId.NULL_VALUE);
+    }
+
+    private int browse(int maxNodesPerRequest, int maxParallelRequests) throws InterruptedException {
+        AddressSpaceBrowser browser = new AddressSpaceBrowser(client, maxNodesPerRequest, maxParallelRequests, 100);
+        return browser.browse(ROOT, (source, reference) -> {
+            if (reference.getNodeClass() == NodeClass.Method) {
+                reference.getNodeId().local().ifPresent(nodeId -> methods.put(source, nodeId));
+            }
+        });
+    }
+
+    @Test
+    public void testEveryNodeIsBrowsedOnce() throws InterruptedException {
+        int browsed = browse(10, 2);
+
+        assertEquals("Root, first, second and shared node should be browsed.", 4, browsed);
+        assertEquals("Every node should be browsed exactly once.", 4, browsedNodes.size());
+        assertEquals("Shared node should be browsed once although referenced twice.", 1,
+                Collections.frequency(browsedNodes, SHARED));
+        assertTrue("Node behind continuation point should be browsed.", browsedNodes.contains(SECOND));
+        assertEquals("Method should be found on the shared node.", METHOD, methods.get(SHARED));
+        assertFalse("Methods should not be browsed.", browsedNodes.contains(METHOD));
+    }
+
+    @Test
+    public void testRequestsGetSmallerIfServerRefusesTheirSize() throws InterruptedException {
+        maxNodesAcceptedByServer = 1;
+
+        //With one request at a time, first and second are requested together
+        int browsed = browse(10, 1);
+
+        assertEquals("All nodes should be browsed despite refused requests.", 4, browsed);
+        assertEquals("Every node should be browsed exactly once.", 4, browsedNodes.size());
+        assertTrue("Requests should be tried with more than one node.", largestRequest > 1);
+    }
+
+    @Test
+    public void testBrowsingStopsAtMaxNodes() throws InterruptedException {
+        int browsed = new AddressSpaceBrowser(client, 10, 2, 2).browse(ROOT, (source, reference) -> { });
+
+        assertEquals("Only the allowed number of nodes should be browsed.", 2, browsed);
+        assertEquals("Only the allowed number of nodes should be requested.", 2, browsedNodes.size());
+    }
+}
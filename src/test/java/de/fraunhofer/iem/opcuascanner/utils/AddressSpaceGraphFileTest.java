@@ -0,0 +1,98 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AddressSpaceGraphFileTest {
+
+    private static final String URL = "opc.tcp://localhost:4840";
+    private static final String APPLICATION_URI = "urn:test:server";
+    private static final NodeId OBJECT = new NodeId(1, "object");
+    private static final NodeId VARIABLE = new NodeId(2, 42);
+    private static final NodeId METHOD = new NodeId(1, "method");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AddressSpaceGraph graph;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(Identifiers.RootFolder);
+        builder.addReference(Identifiers.RootFolder, reference(OBJECT, NodeClass.Object, "Machine"));
+        builder.addReference(OBJECT, reference(VARIABLE, NodeClass.Variable, "Temperature °C"));
+        builder.addReference(OBJECT, reference(METHOD, NodeClass.Method, "Start"));
+        graph = builder.build();
+        graph.setAccessLevel(graph.indexOf(VARIABLE), 0x83);
+        file = folder.getRoot().toPath().resolve("graph.bin");
+        AddressSpaceGraphFile.write(file, URL, APPLICATION_URI, graph);
+    }
+
+    private static ReferenceDescription reference(NodeId target, NodeClass nodeClass, String name) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(target), new QualifiedName(1, name),
+                LocalizedText.english(name), nodeClass, ExpandedNodeId.NULL_VALUE);
+    }
+
+    @Test
+    public void testGraphIsReadAsWritten() throws IOException {
+        AddressSpaceGraph read = AddressSpaceGraphFile.read(file, URL, APPLICATION_URI);
+
+        assertEquals("All nodes should be read.", graph.size(), read.size());
+        assertEquals("All references should be read.", graph.getReferenceCount(), read.getReferenceCount());
+        for (int node = 0; node < graph.size(); node++) {
+            assertEquals("Node id should be read.", graph.getNodeId(node), read.getNodeId(node));
+            assertEquals("Node class should be read.", graph.getNodeClass(node), read.getNodeClass(node));
+            assertEquals("Browse name should be read.", graph.getBrowseName(node), read.getBrowseName(node));
+            assertEquals("Access level should be read.", graph.getAccessLevel(node), read.getAccessLevel(node));
+            assertArrayEquals("Targets should be read.", graph.getTargets(node), read.getTargets(node));
+        }
+        assertEquals("Node index should be rebuilt.", graph.indexOf(METHOD), read.indexOf(METHOD));
+        assertEquals("Temporary file should be replaced by the file.", 1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testGraphOfOtherServerIsNotRead() throws IOException {
+        assertNull("Graph of another server should not be used.",
+                AddressSpaceGraphFile.read(file, URL, "urn:other:server"));
+        assertNull("Graph of another endpoint should not be used.",
+                AddressSpaceGraphFile.read(file, "opc.tcp://localhost:4841", APPLICATION_URI));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFileIsRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        AddressSpaceGraphFile.read(file, URL, APPLICATION_URI);
+    }
+
+    @Test
+    public void testStoreKeepsGraphPerServer() {
+        AddressSpaceStore store = new AddressSpaceStore(folder.getRoot().toPath().resolve("snapshots"));
+        assertNull("Nothing should be loaded before saving.", store.load(URL, APPLICATION_URI));
+
+        store.save(URL, APPLICATION_URI, graph);
+
+        assertEquals("Saved graph should be loaded.", graph.size(), store.load(URL, APPLICATION_URI).size());
+        assertNull("Graph should not be loaded for another server.", store.load(URL, "urn:other:server"));
+    }
+}
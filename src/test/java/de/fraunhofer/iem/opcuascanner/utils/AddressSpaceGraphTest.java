@@ -0,0 +1,112 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AddressSpaceGraphTest {
+
+    private static final NodeId ROOT = Identifiers.RootFolder;
+    private static final NodeId OBJECT = new NodeId(1, "object");
+    private static final NodeId VARIABLE = new NodeId(1, "variable");
+    private static final NodeId OTHER_VARIABLE = new NodeId(1, "otherVariable");
+    private static final NodeId START = new NodeId(1, "start");
+    private static final NodeId STOP = new NodeId(1, "stop");
+
+    private AddressSpaceGraph graph;
+
+    @Before
+    public void setUp() {
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(ROOT);
+        builder.addReference(ROOT, reference(OBJECT, NodeClass.Object, "Machine"));
+        builder.addReference(OBJECT, reference(START, NodeClass.Method, "Start"));
+        builder.addReference(OBJECT, reference(STOP, NodeClass.Method, "Stop"));
+        builder.addReference(OBJECT, reference(VARIABLE, NodeClass.Variable, "Speed"));
+        builder.addReference(ROOT, reference(OTHER_VARIABLE, NodeClass.Variable, new String("Speed")));
+        //References to nodes of other servers are left out
+        builder.addReference(ROOT, new ReferenceDescription(null, true,
+                new ExpandedNodeId(new NodeId(1, "remote"), null, 1), new QualifiedName(1, "Remote"),
+                LocalizedText.english(""), NodeClass.Object, ExpandedNodeId.NULL_VALUE));
+        graph = builder.build();
+    }
+
+    private static ReferenceDescription reference(NodeId target, NodeClass nodeClass, String name) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(target), new QualifiedName(1, name),
+                LocalizedText.english(name), nodeClass, ExpandedNodeId.NULL_VALUE);
+    }
+
+    @Test
+    public void testNodesAreIndexedInOrderOfDiscovery() {
+        assertEquals("Root and all local targets should be nodes.", 6, graph.size());
+        assertEquals("All local references should be kept.", 5, graph.getReferenceCount());
+        assertEquals("Root should have the first index.", 0, graph.indexOf(ROOT));
+        assertEquals("Unknown node should have no index.", -1, graph.indexOf(new NodeId(1, "unknown")));
+        int object = graph.indexOf(OBJECT);
+        assertEquals("Node id should be found by index.", OBJECT, graph.getNodeId(object));
+        assertEquals("Node class should be kept.", NodeClass.Object, graph.getNodeClass(object));
+        assertEquals("Browse name should be kept.", "Machine", graph.getBrowseName(object));
+        assertArrayEquals("Targets should be the referenced nodes in order.", new int[]{graph.indexOf(START),
+                graph.indexOf(STOP), graph.indexOf(VARIABLE)}, graph.getTargets(object));
+    }
+
+    @Test
+    public void testEqualBrowseNamesAreStoredOnce() {
+        assertSame("Equal browse names should share one string.",
+                graph.getBrowseName(graph.indexOf(VARIABLE)), graph.getBrowseName(graph.indexOf(OTHER_VARIABLE)));
+    }
+
+    @Test
+    public void testAllMethodsOfAnObjectAreFound() {
+        List<NodeId> methods = new ArrayList<>();
+        graph.forEachMethod((object, method) -> {
+            assertEquals("Methods should belong to the object.", OBJECT, object);
+            methods.add(method);
+        });
+        assertEquals("Every method of the object should be found.", Arrays.asList(START, STOP), methods);
+    }
+
+    @Test
+    public void testWritableVariablesAreFoundByAccessLevel() {
+        assertEquals("Without access levels no variable should be writable.", Collections.emptyList(),
+                graph.getWritableVariables());
+        graph.setAccessLevel(graph.indexOf(VARIABLE), 0x01 | AddressSpaceGraph.ACCESS_LEVEL_CURRENT_WRITE);
+        graph.setAccessLevel(graph.indexOf(OTHER_VARIABLE), 0x01);
+
+        assertEquals("Only the variable with write access should be writable.", Collections.singletonList(VARIABLE),
+                graph.getWritableVariables());
+        assertEquals("Variables should be found by node class.", Arrays.asList(VARIABLE, OTHER_VARIABLE),
+                graph.getNodesOfClass(NodeClass.Variable));
+    }
+
+    @Test
+    public void testManyNodesAreIndexed() {
+        int nodes = 10000;
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(ROOT);
+        for (int i = 0; i < nodes; i++) {
+            builder.addReference(ROOT, reference(new NodeId(1, i), NodeClass.Variable, "Variable"));
+        }
+        AddressSpaceGraph many = builder.build();
+
+        assertEquals("Every added node should be a node.", nodes + 1, many.size());
+        for (int i = 0; i < nodes; i++) {
+            assertEquals("Every node should be found at the index it was added with.", i + 1,
+                    many.indexOf(new NodeId(1, i)));
+        }
+        assertEquals("Unknown node should have no index.", -1, many.indexOf(new NodeId(1, nodes)));
+    }
+}
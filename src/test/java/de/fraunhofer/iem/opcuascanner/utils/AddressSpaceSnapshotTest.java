@@ -0,0 +1,57 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AddressSpaceSnapshotTest {
+
+    private static NodeId object(int number) {
+        return new NodeId(1, "object" + number);
+    }
+
+    /**
+     * The root with the given number of objects, each of them with a method
+     */
+    private static AddressSpaceGraph addressSpace(int objects) {
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(Identifiers.RootFolder);
+        for (int i = 0; i < objects; i++) {
+            builder.addReference(Identifiers.RootFolder, reference(object(i), NodeClass.Object));
+            builder.addReference(object(i), reference(new NodeId(1, "method" + i), NodeClass.Method));
+        }
+        return builder.build();
+    }
+
+    private static ReferenceDescription reference(NodeId target, NodeClass nodeClass) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(target),
+                new QualifiedName(1, target.getIdentifier().toString()), LocalizedText.english(""), nodeClass,
+                ExpandedNodeId.NULL_VALUE);
+    }
+
+    @Test
+    public void testSmallAddressSpaceIsSampledCompletely() {
+        List<NodeId> sample = new AddressSpaceSnapshot(addressSpace(3)).getSampleNodes();
+        assertEquals("The root and all nodes besides methods should be sampled.",
+                Arrays.asList(Identifiers.RootFolder, object(0), object(1), object(2)), sample);
+    }
+
+    @Test
+    public void testLargeAddressSpaceIsSampledEvenlyAndAlwaysTheSame() {
+        List<NodeId> sample = new AddressSpaceSnapshot(addressSpace(80)).getSampleNodes();
+        assertEquals("The root and the middle object of every eighth of the objects should be sampled.",
+                Arrays.asList(Identifiers.RootFolder, object(5), object(15), object(25), object(35), object(45),
+                        object(55), object(65), object(75)), sample);
+        assertEquals("The same address space should give the same sample.", sample,
+                new AddressSpaceSnapshot(addressSpace(80)).getSampleNodes());
+    }
+}
@@ -0,0 +1,168 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.client.UaTcpStackClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AddressSpaceUpdaterTest {
+
+    private static final NodeId ROOT = new NodeId(0, "root");
+    private static final NodeId UNCHANGED = new NodeId(1, "unchanged");
+    private static final NodeId CHANGED = new NodeId(1, "changed");
+    private static final NodeId OLD_CHILD = new NodeId(1, "oldChild");
+    private static final NodeId NEW_CHILD = new NodeId(1, "newChild");
+    private static final NodeId LEAF = new NodeId(1, "leaf");
+
+    private final Map<NodeId, NodeId[]> serverReferences = new HashMap<>();
+    private final List<NodeId> fullyBrowsedNodes = new ArrayList<>();
+    private final List<NodeId> checkedNodes = new ArrayList<>();
+    private final List<ByteString> continuationPoints = new ArrayList<>();
+    private int referencesPerCheck = Integer.MAX_VALUE;
+
+    private OpcUaClient client;
+    private AddressSpaceGraph saved;
+
+    @Before
+    public void setUp() {
+        //Saved: the root references both objects, the unchanged one references a leaf, the changed one an old child
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(ROOT);
+        builder.addReference(ROOT, reference(UNCHANGED));
+        builder.addReference(ROOT, reference(CHANGED));
+        builder.addReference(UNCHANGED, reference(LEAF));
+        builder.addReference(CHANGED, reference(OLD_CHILD));
+        saved = builder.build();
+
+        //Now: the changed object references a new child instead of the old one
+        serverReferences.put(ROOT, new NodeId[]{UNCHANGED, CHANGED});
+        serverReferences.put(UNCHANGED, new NodeId[]{LEAF});
+        serverReferences.put(CHANGED, new NodeId[]{NEW_CHILD});
+
+        client = mock(OpcUaClient.class);
+        when(client.getStackClient()).thenReturn(mock(UaTcpStackClient.class));
+        when(client.browse(any(), any(), anyList())).thenAnswer(invocation -> {
+            List<BrowseDescription> descriptions = invocation.getArgument(2);
+            BrowseResult[] results = new BrowseResult[descriptions.size()];
+            for (int i = 0; i < results.length; i++) {
+                BrowseDescription description = descriptions.get(i);
+                boolean check = description.getResultMask().intValue() == BrowseResultMask.None.getValue();
+                (check ? checkedNodes : fullyBrowsedNodes).add(description.getNodeId());
+                NodeId[] targets = serverReferences.getOrDefault(description.getNodeId(), new NodeId[0]);
+                results[i] = page(description.getNodeId(), targets, 0, check ? referencesPerCheck : targets.length);
+            }
+            return CompletableFuture.completedFuture(new BrowseResponse(null, results, null));
+        });
+        when(client.browseNext(anyBoolean(), anyList())).thenAnswer(invocation -> {
+            List<ByteString> points = invocation.getArgument(1);
+            BrowseResult[] results = new BrowseResult[points.size()];
+            for (int i = 0; i < results.length; i++) {
+                continuationPoints.add(points.get(i));
+                //The continuation point names the node and where its next page starts
+                String[] position = new String(points.get(i).bytesOrEmpty(), StandardCharsets.UTF_8).split("@");
+                NodeId nodeId = new NodeId(Integer.parseInt(position[0]), position[1]);
+                results[i] = page(nodeId, serverReferences.get(nodeId), Integer.parseInt(position[2]),
+                        referencesPerCheck);
+            }
+            return CompletableFuture.completedFuture(new BrowseNextResponse(null, results, null));
+        });
+    }
+
+    private static BrowseResult page(NodeId nodeId, NodeId[] targets, int start, int pageSize) {
+        int end = Math.min(targets.length, start + pageSize);
+        ReferenceDescription[] references = new ReferenceDescription[end - start];
+        for (int j = start; j < end; j++) {
+            references[j - start] = reference(targets[j]);
+        }
+        ByteString continuationPoint = end == targets.length ? ByteString.NULL_VALUE
+                : ByteString.of((nodeId.getNamespaceIndex() + "@" + nodeId.getIdentifier() + "@" + end).getBytes(StandardCharsets.UTF_8));
+        return new BrowseResult(StatusCode.GOOD, continuationPoint, references);
+    }
+
+    private static ReferenceDescription reference(NodeId target) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(target),
+                new QualifiedName(1, target.getIdentifier().toString()), LocalizedText.english(""), NodeClass.Object,
+                ExpandedNodeId.NULL_VALUE);
+    }
+
+    @Test
+    public void testOnlyNodesWithChangedReferencesAreFound() throws InterruptedException {
+        boolean[] changed = new AddressSpaceUpdater(client, 10, 2, 100).findChangedNodes(saved);
+
+        assertEquals("Only saved nodes with references should be checked.", Arrays.asList(ROOT, UNCHANGED, CHANGED),
+                checkedNodes);
+        assertFalse("Root should be unchanged.", changed[saved.indexOf(ROOT)]);
+        assertFalse("Node with same references should be unchanged.", changed[saved.indexOf(UNCHANGED)]);
+        assertTrue("Node with other references should be changed.", changed[saved.indexOf(CHANGED)]);
+    }
+
+    @Test
+    public void testTargetsSplitOverResponsesAreCompared() throws InterruptedException {
+        NodeId other = new NodeId(1, "other");
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(ROOT);
+        builder.addReference(ROOT, reference(UNCHANGED));
+        builder.addReference(UNCHANGED, reference(LEAF));
+        builder.addReference(UNCHANGED, reference(OLD_CHILD));
+        builder.addReference(UNCHANGED, reference(other));
+        builder.addReference(ROOT, reference(CHANGED));
+        builder.addReference(CHANGED, reference(LEAF));
+        builder.addReference(CHANGED, reference(OLD_CHILD));
+        builder.addReference(CHANGED, reference(other));
+        saved = builder.build();
+        serverReferences.put(UNCHANGED, new NodeId[]{LEAF, OLD_CHILD, other});
+        serverReferences.put(CHANGED, new NodeId[]{LEAF, NEW_CHILD, other});
+        referencesPerCheck = 1;
+
+        boolean[] changed = new AddressSpaceUpdater(client, 10, 2, 100).findChangedNodes(saved);
+
+        assertFalse("Node with same references over several responses should be unchanged.",
+                changed[saved.indexOf(UNCHANGED)]);
+        assertTrue("Node with other references in a later response should be changed.",
+                changed[saved.indexOf(CHANGED)]);
+        assertEquals("Pages should be fetched until the references are complete or differ.", 5,
+                continuationPoints.size());
+    }
+
+    @Test
+    public void testOnlyChangedPartIsBrowsedAgain() throws InterruptedException {
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(ROOT);
+        int nodes = new AddressSpaceUpdater(client, 10, 2, 100).update(saved, builder::addReference);
+        AddressSpaceGraph updated = builder.build();
+
+        assertEquals("Changed node and its new child should be browsed.", Arrays.asList(CHANGED, NEW_CHILD),
+                fullyBrowsedNodes);
+        assertEquals("Root, both objects, the leaf and the new child should be visited.", 5, nodes);
+        assertTrue("Unchanged leaf should be taken over.", updated.indexOf(LEAF) >= 0);
+        assertTrue("New child should be found.", updated.indexOf(NEW_CHILD) >= 0);
+        assertEquals("Old child should be gone.", -1, updated.indexOf(OLD_CHILD));
+    }
+}
@@ -0,0 +1,101 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import de.fraunhofer.iem.opcuascanner.logic.AccessPrivileges;
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import de.fraunhofer.iem.opcuascanner.logic.Privilege;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BrowseUtilTest {
+
+    private static final NodeId OBJECT = new NodeId(1, "object");
+    private static final NodeId METHOD = new NodeId(1, "method");
+    private static final List<NodeId> SAMPLE = Arrays.asList(Identifiers.RootFolder, OBJECT);
+
+    private final List<List<NodeId>> requests = new ArrayList<>();
+    private StatusCode status = StatusCode.GOOD;
+
+    private OpcUaClient client;
+    private AddressSpaceCache cache;
+
+    @Before
+    public void setUp() {
+        client = mock(OpcUaClient.class);
+        when(client.browse(any(), any(), anyList())).thenAnswer(invocation -> {
+            List<BrowseDescription> descriptions = invocation.getArgument(2);
+            List<NodeId> request = new ArrayList<>();
+            BrowseResult[] results = new BrowseResult[descriptions.size()];
+            for (int i = 0; i < results.length; i++) {
+                request.add(descriptions.get(i).getNodeId());
+                results[i] = new BrowseResult(status, null, null);
+            }
+            requests.add(request);
+            return CompletableFuture.completedFuture(new BrowseResponse(null, results, null));
+        });
+        AddressSpaceGraph.Builder builder = AddressSpaceGraph.builder(Identifiers.RootFolder);
+        builder.addReference(Identifiers.RootFolder, reference(OBJECT, NodeClass.Object));
+        builder.addReference(OBJECT, reference(METHOD, NodeClass.Method));
+        cache = new AddressSpaceCache(new AddressSpaceSnapshot(builder.build()));
+    }
+
+    private static ReferenceDescription reference(NodeId target, NodeClass nodeClass) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(target),
+                new QualifiedName(1, target.getIdentifier().toString()), LocalizedText.english(""), nodeClass,
+                ExpandedNodeId.NULL_VALUE);
+    }
+
+    @Test
+    public void testKnownAddressSpaceIsOnlySampled() {
+        AccessPrivileges privileges = new AccessPrivileges();
+
+        AddressSpaceGraph addressSpace = BrowseUtil.tryBrowsing(privileges, Authentication.ANONYMOUSLY, client, cache);
+
+        assertEquals("Only the sample should be browsed, with a single request.",
+                Collections.singletonList(SAMPLE), requests);
+        assertTrue("Browse should be granted.",
+                privileges.isPrivilegePerAuthentication(Privilege.BROWSE, Authentication.ANONYMOUSLY));
+        assertEquals("Known methods should be returned.", Collections.singletonList(METHOD),
+                addressSpace.getNodesOfClass(NodeClass.Method));
+    }
+
+    @Test
+    public void testKnownMethodsAreReturnedEvenIfBrowsingIsDenied() {
+        status = new StatusCode(StatusCodes.Bad_UserAccessDenied);
+        AccessPrivileges privileges = new AccessPrivileges();
+
+        AddressSpaceGraph addressSpace = BrowseUtil.tryBrowsing(privileges, Authentication.ANONYMOUSLY, client, cache);
+
+        assertTrue("Browse should be tested.", privileges.wasTested(Privilege.BROWSE, Authentication.ANONYMOUSLY));
+        assertFalse("Browse should not be granted.",
+                privileges.isPrivilegePerAuthentication(Privilege.BROWSE, Authentication.ANONYMOUSLY));
+        assertEquals("Known methods should still be returned to test calling.", Collections.singletonList(METHOD),
+                addressSpace.getNodesOfClass(NodeClass.Method));
+    }
+}
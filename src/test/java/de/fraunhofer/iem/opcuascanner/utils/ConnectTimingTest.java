@@ -0,0 +1,150 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectTimingTest {
+
+    private static final int MAX_WINDOW = 100;
+
+    private static final InetSocketAddress HOST = new InetSocketAddress("10.0.0.1", 4840);
+    private static final InetSocketAddress OTHER_PORT_OF_HOST = new InetSocketAddress("10.0.0.1", 4841);
+    private static final InetSocketAddress THIRD_PORT_OF_HOST = new InetSocketAddress("10.0.0.1", 4842);
+    private static final InetSocketAddress SAME_SUBNET = new InetSocketAddress("10.0.0.2", 4840);
+    private static final InetSocketAddress OTHER_SUBNET = new InetSocketAddress("10.0.1.1", 4840);
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static ConnectTiming adaptive() {
+        return new ConnectTiming(MAX_WINDOW, 500, 100, 5000);
+    }
+
+    /**
+     * A connect which timed out and whose retry was answered, so the first connect was lost
+     */
+    private static void lose(ConnectTiming timing, InetSocketAddress target, long startedAt, long timedOutAt) {
+        assertTrue("A port of a host which answered before should be tried again.",
+                timing.onTimeout(target, startedAt));
+        timing.onAnswer(target, timedOutAt, timedOutAt + ms(10));
+    }
+
+    @Test
+    public void testTimeoutFollowsRoundTripTimeOfSubnet() {
+        ConnectTiming timing = adaptive();
+        assertEquals("Without measurements the initial timeout should be used.", ms(500),
+                timing.getTimeoutInNanos(HOST));
+
+        //The first sample sets the variation to half of it: 40 + 4 * 20 ms
+        timing.onAnswer(HOST, 0, ms(40));
+        assertEquals("The timeout should be derived from the round trip time.", ms(120),
+                timing.getTimeoutInNanos(SAME_SUBNET));
+
+        for (int i = 0; i < 50; i++) {
+            timing.onAnswer(HOST, 0, ms(40));
+        }
+        assertEquals("A steady round trip time should not go below the minimum timeout.", ms(100),
+                timing.getTimeoutInNanos(SAME_SUBNET));
+    }
+
+    @Test
+    public void testSlowSubnetsAreLimitedByMaximum() {
+        ConnectTiming timing = adaptive();
+        timing.onAnswer(HOST, 0, ms(3000));
+        assertEquals("The timeout should not go above the maximum timeout.", ms(5000),
+                timing.getTimeoutInNanos(HOST));
+        assertEquals("Unmeasured subnets should not be expected to be faster than measured ones.", ms(5000),
+                timing.getTimeoutInNanos(OTHER_SUBNET));
+    }
+
+    @Test
+    public void testFastSubnetsDoNotShortenTimeoutOfOthers() {
+        ConnectTiming timing = adaptive();
+        timing.onAnswer(HOST, 0, ms(10));
+        assertEquals("Unmeasured subnets should keep the initial timeout.", ms(500),
+                timing.getTimeoutInNanos(OTHER_SUBNET));
+    }
+
+    @Test
+    public void testTimeoutOfUnknownHostIsNoLoss() {
+        ConnectTiming timing = adaptive();
+        assertFalse("Addresses which never answered should not be tried again.", timing.onTimeout(HOST, 0));
+        assertEquals("Addresses which never answered should not shrink the window.", MAX_WINDOW,
+                timing.getWindow());
+    }
+
+    @Test
+    public void testLossHalvesWindowOncePerRound() {
+        ConnectTiming timing = adaptive();
+        timing.onAnswer(HOST, 0, ms(10));
+        lose(timing, OTHER_PORT_OF_HOST, ms(20), ms(520));
+        assertEquals("A lost connect should halve the window.", MAX_WINDOW / 2, timing.getWindow());
+
+        lose(timing, THIRD_PORT_OF_HOST, ms(30), ms(530));
+        assertEquals("Connects started before the decrease should not halve the window again.", MAX_WINDOW / 2,
+                timing.getWindow());
+
+        lose(timing, OTHER_PORT_OF_HOST, ms(600), ms(1100));
+        assertEquals("Connects started after the decrease should halve the window again.", MAX_WINDOW / 4,
+                timing.getWindow());
+
+        for (int i = 0; i < 10; i++) {
+            lose(timing, OTHER_PORT_OF_HOST, ms(2000 + 1000 * i), ms(2500 + 1000 * i));
+        }
+        assertEquals("The window should not go below the minimum.", ConnectTiming.MIN_WINDOW, timing.getWindow());
+    }
+
+    @Test
+    public void testFilteredPortOfAnsweringHostIsNoLoss() {
+        ConnectTiming timing = adaptive();
+        //The host answers on one port and drops all connects to the other one
+        for (int i = 0; i < 10; i++) {
+            timing.onAnswer(HOST, ms(1000 * i), ms(1000 * i + 10));
+            assertTrue("A port of a host which answered before should be tried again.",
+                    timing.onTimeout(OTHER_PORT_OF_HOST, ms(1000 * i + 20)));
+            assertFalse("A port which did not answer the retry either should not be tried again.",
+                    timing.onTimeout(OTHER_PORT_OF_HOST, ms(1000 * i + 520)));
+        }
+        assertEquals("A filtered port of an answering host should not shrink the window.", MAX_WINDOW,
+                timing.getWindow());
+    }
+
+    @Test
+    public void testWindowGrowsWithAnswers() {
+        ConnectTiming timing = adaptive();
+        timing.onAnswer(HOST, 0, ms(10));
+        lose(timing, OTHER_PORT_OF_HOST, ms(20), ms(520));
+        //The window grows a bit more slowly than one per window, since it grows while the answers come in
+        for (int i = 0; i < MAX_WINDOW / 2 + 10; i++) {
+            timing.onAnswer(SAME_SUBNET, 0, ms(10));
+        }
+        assertEquals("Above the last decrease the window should grow by one per window of answers.",
+                MAX_WINDOW / 2 + 1, timing.getWindow());
+
+        for (int i = 0; i < MAX_WINDOW * MAX_WINDOW; i++) {
+            timing.onAnswer(SAME_SUBNET, 0, ms(10));
+        }
+        assertEquals("The window should not grow beyond the maximum.", MAX_WINDOW, timing.getWindow());
+    }
+
+    @Test
+    public void testFixedTimingNeverChanges() {
+        ConnectTiming timing = new ConnectTiming(MAX_WINDOW, 500);
+        timing.onAnswer(HOST, 0, ms(10));
+        assertFalse("Fixed timing should not try connects again.", timing.onTimeout(OTHER_PORT_OF_HOST, ms(20)));
+        assertEquals("The fixed timeout should be used.", ms(500), timing.getTimeoutInNanos(HOST));
+        assertEquals("The window should stay at the maximum.", MAX_WINDOW, timing.getWindow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialTimeoutOutsideOfBoundsIsRejected() {
+        new ConnectTiming(MAX_WINDOW, 50, 100, 5000);
+    }
+}
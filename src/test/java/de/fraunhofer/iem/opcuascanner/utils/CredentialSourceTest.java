@@ -0,0 +1,91 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import de.fraunhofer.iem.opcuascanner.logic.Login;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CredentialSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoginFileIsSplitAtFirstColon() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "admin:admin\nno colon\nuser:pass:word\n".getBytes(StandardCharsets.UTF_8));
+        List<String> logins = asStrings(CredentialSource.fromLoginFile(file));
+        assertEquals("Logins were read incorrectly.", Arrays.asList("admin/admin", "user/pass:word"), logins);
+    }
+
+    @Test
+    public void testCombiningTriesEveryUsernameBeforeNextPassword() {
+        CredentialSource source = CredentialSource.combining(Arrays.asList("admin", "user"),
+                Arrays.asList("123456", "qwerty"));
+        assertEquals("Combinations were incorrect.",
+                Arrays.asList("admin/123456", "user/123456", "admin/qwerty", "user/qwerty"), asStrings(source));
+        assertEquals("Iterating again should give the same combinations.", 4, asStrings(source).size());
+    }
+
+    @Test
+    public void testCombiningWithoutUsernamesIsEmpty() {
+        CredentialSource source = CredentialSource.combining(Collections.emptyList(), Arrays.asList("a", "b"));
+        assertEquals("There should be no combinations.", 0, asStrings(source).size());
+    }
+
+    @Test
+    public void testSmallUsernameFileCombinesWithManyPasswords() throws IOException {
+        //More passwords than a process may have mappings by default, so the usernames must not be mapped per password
+        int passwordCount = 100000;
+        Path usernames = folder.newFile().toPath();
+        Files.write(usernames, "admin\nuser\n".getBytes(StandardCharsets.UTF_8));
+        Path passwords = folder.newFile().toPath();
+        StringBuilder passwordLines = new StringBuilder();
+        for (int i = 0; i < passwordCount; i++) {
+            passwordLines.append("password").append(i).append('\n');
+        }
+        Files.write(passwords, passwordLines.toString().getBytes(StandardCharsets.UTF_8));
+
+        int logins = 0;
+        Login last = null;
+        for (Login login : CredentialSource.combining(new MappedLines(usernames), new MappedLines(passwords))) {
+            if (logins == 0) {
+                //Only works if the usernames are not read from the file again for the next password
+                Files.delete(usernames);
+            }
+            logins++;
+            last = login;
+        }
+        assertEquals("Every username should be combined with every password.", 2 * passwordCount, logins);
+        assertEquals("The last password should be combined with the last username.",
+                "user/password" + (passwordCount - 1), last.getUsername() + "/" + last.getPassword());
+    }
+
+    @Test
+    public void testConcatKeepsOrderOfSources() {
+        CredentialSource first = CredentialSource.of(Collections.singletonList(new Login("admin", "admin")));
+        CredentialSource second = CredentialSource.combining(Collections.singletonList("user"),
+                Collections.singletonList("password"));
+        assertEquals("Concatenated logins were incorrect.", Arrays.asList("admin/admin", "user/password"),
+                asStrings(CredentialSource.concat(Arrays.asList(first, second))));
+    }
+
+    private static List<String> asStrings(CredentialSource source) {
+        List<String> result = new ArrayList<>();
+        for (Login login : source) {
+            result.add(login.getUsername() + "/" + login.getPassword());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+
+import de.fraunhofer.iem.opcuascanner.LoopbackServer;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.junit.Test;
+
+public class EndpointDiscovererTest {
+
+    private static final int TEST_TIMEOUT_IN_MS = 100;
+    private static final int SOCKET_TIMEOUT_IN_MS = 15000;
+
+    @Test
+    public void testEndpointsOfServerAreFound() throws Exception {
+        try (LoopbackServer server = new LoopbackServer(true)) {
+            Set<EndpointDescription> endpoints =
+                    new EndpointDiscoverer(2, SOCKET_TIMEOUT_IN_MS).discover(server.getAddress()).join();
+
+            assertFalse("The endpoints of the server were not found.", endpoints.isEmpty());
+        }
+    }
+
+    @Test
+    public void testUnansweredRequestIsGivenUpAndItsConnectionClosed() throws IOException, InterruptedException {
+        try (ServerSocket silentHost = new ServerSocket(0, 2, InetAddress.getLoopbackAddress())) {
+            silentHost.setSoTimeout(SOCKET_TIMEOUT_IN_MS);
+            InetSocketAddress testHost = new InetSocketAddress("127.0.0.1", silentHost.getLocalPort()); //NOSONAR
+
+            EndpointDiscoverer discoverer = new EndpointDiscoverer(2, TEST_TIMEOUT_IN_MS);
+            Set<EndpointDescription> endpoints = discoverer.discover(testHost).join();
+            assertTrue("A host which never answers should have no endpoints.", endpoints.isEmpty());
+
+            //The host never answers, so the connection has to be closed by the client
+            try (Socket connection = silentHost.accept()) {
+                connection.setSoTimeout(SOCKET_TIMEOUT_IN_MS);
+                assertEquals("The connection of the given up request was not closed.", -1,
+                        readUntilClosed(connection.getInputStream()));
+            }
+            //Only gets its permits if the given up requests released theirs
+            endpoints = discoverer.discover(testHost).join();
+            assertTrue("A host which never answers should have no endpoints.", endpoints.isEmpty());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingleRequestInFlightIsRejected() {
+        new EndpointDiscoverer(1, TEST_TIMEOUT_IN_MS);
+    }
+
+    private static int readUntilClosed(InputStream input) throws IOException {
+        int read;
+        do {
+            read = input.read();
+        } while (read != -1);
+        return read;
+    }
+}
@@ -0,0 +1,48 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FutureUtilTest {
+
+    private static final long TEST_TIMEOUT_IN_MS = 50;
+
+    @Test
+    public void testResultIsPassedOn() throws ExecutionException, InterruptedException {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> withTimeout = FutureUtil.withTimeout(future, TEST_TIMEOUT_IN_MS);
+        future.complete("result");
+        assertEquals("Result should be passed on.", "result", withTimeout.get());
+    }
+
+    @Test
+    public void testFutureWithoutResultTimesOut() throws InterruptedException {
+        CompletableFuture<String> withTimeout = FutureUtil.withTimeout(new CompletableFuture<>(), TEST_TIMEOUT_IN_MS);
+        try {
+            withTimeout.get();
+            fail("Future without result should time out.");
+        } catch (ExecutionException e) {
+            assertTrue("Cause should be a timeout.", e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testExceptionIsPassedOn() throws InterruptedException {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> withTimeout = FutureUtil.withTimeout(future, TEST_TIMEOUT_IN_MS);
+        future.completeExceptionally(new IllegalStateException("Test failure"));
+        try {
+            withTimeout.get();
+            fail("Exception should be passed on.");
+        } catch (ExecutionException e) {
+            assertTrue("Cause should be the original exception.", e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
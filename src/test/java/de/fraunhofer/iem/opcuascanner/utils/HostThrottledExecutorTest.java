@@ -0,0 +1,108 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HostThrottledExecutorTest {
+
+    private static final int MAX_PARALLEL = 4;
+    private static final int MAX_PARALLEL_PER_HOST = 2;
+    private static final int TASKS_PER_HOST = 10;
+    private static final String[] HOSTS = {"10.0.0.1", "10.0.0.2", "10.0.0.3"}; //NOSONAR this is for testing
+
+    @Test
+    public void testAllTasksRunWithinLimits() throws InterruptedException {
+        assertTasksRunWithinLimits(new HostThrottledExecutor("test", MAX_PARALLEL, MAX_PARALLEL_PER_HOST));
+    }
+
+    @Test
+    public void testAllTasksRunWithinLimitsOnVirtualThreads() throws InterruptedException {
+        Assume.assumeTrue("Virtual threads need Java 21 or later.", VirtualThreads.isSupported());
+        assertTasksRunWithinLimits(new HostThrottledExecutor("test", MAX_PARALLEL, MAX_PARALLEL_PER_HOST, true));
+    }
+
+    private static void assertTasksRunWithinLimits(HostThrottledExecutor executor) throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Map<String, AtomicInteger> runningPerHost = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> maxRunningPerHost = new ConcurrentHashMap<>();
+        AtomicInteger finished = new AtomicInteger();
+
+        for (int i = 0; i < TASKS_PER_HOST; i++){
+            for (String host : HOSTS){
+                runningPerHost.putIfAbsent(host, new AtomicInteger());
+                maxRunningPerHost.putIfAbsent(host, new AtomicInteger());
+                executor.submit(host, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    maxRunningPerHost.get(host).accumulateAndGet(runningPerHost.get(host).incrementAndGet(),
+                            Math::max);
+                    sleepShortly();
+                    runningPerHost.get(host).decrementAndGet();
+                    running.decrementAndGet();
+                    finished.incrementAndGet();
+                });
+            }
+        }
+        executor.awaitCompletion();
+
+        assertEquals("All tasks should have run.", TASKS_PER_HOST * HOSTS.length, finished.get());
+        assertTrue("Too many tasks ran at once.", maxRunning.get() <= MAX_PARALLEL);
+        for (String host : HOSTS){
+            assertTrue("Too many tasks ran at once for host " + host + ".",
+                    maxRunningPerHost.get(host).get() <= MAX_PARALLEL_PER_HOST);
+        }
+    }
+
+    @Test
+    public void testSlowHostDoesNotBlockOtherHosts() throws InterruptedException {
+        HostThrottledExecutor executor = new HostThrottledExecutor("test", MAX_PARALLEL, 1);
+        CountDownLatch slowHostReleased = new CountDownLatch(1);
+        CountDownLatch otherHostDone = new CountDownLatch(1);
+        for (int i = 0; i < MAX_PARALLEL; i++){
+            executor.submit(HOSTS[0], () -> awaitQuietly(slowHostReleased));
+        }
+        executor.submit(HOSTS[1], otherHostDone::countDown);
+
+        assertTrue("Task of other host should run while the slow host is busy.",
+                otherHostDone.await(5, TimeUnit.SECONDS));
+        slowHostReleased.countDown();
+        executor.awaitCompletion();
+    }
+
+    @Test
+    public void testFailingTaskDoesNotBlockCompletion() throws InterruptedException {
+        HostThrottledExecutor executor = new HostThrottledExecutor("test", 1, 1);
+        AtomicInteger finished = new AtomicInteger();
+        executor.submit(HOSTS[0], () -> {
+            throw new IllegalStateException("Test failure");
+        });
+        executor.submit(HOSTS[0], finished::incrementAndGet);
+        executor.awaitCompletion();
+        assertEquals("Task after failing task should have run.", 1, finished.get());
+    }
+
+    private static void sleepShortly() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MappedLinesTest {
+
+    private static final int SMALL_WINDOW_SIZE = 12;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLinesAreReadWithoutLineBreaksAndEmptyLines() throws IOException {
+        Path file = write("first\r\nsecond\n\nthird");
+        assertEquals("Lines were read incorrectly.", Arrays.asList("first", "second", "third"),
+                readAll(new MappedLines(file)));
+    }
+
+    @Test
+    public void testLinesAcrossWindowsAreReadCompletely() throws IOException {
+        Path file = write("admin\npassword1\nqwerty\n123456789\nü\n");
+        assertEquals("Lines spanning windows were read incorrectly.",
+                Arrays.asList("admin", "password1", "qwerty", "123456789", "ü"),
+                readAll(new MappedLines(file, SMALL_WINDOW_SIZE)));
+    }
+
+    @Test
+    public void testEveryIteratorStartsAtFirstLine() throws IOException {
+        MappedLines lines = new MappedLines(write("first\nsecond\n"));
+        assertEquals("First iteration was incorrect.", 2, readAll(lines).size());
+        assertEquals("Second iteration should read the file again.", 2, readAll(lines).size());
+    }
+
+    @Test
+    public void testEmptyFileHasNoLines() throws IOException {
+        assertFalse("Empty file should not have lines.", new MappedLines(write("")).iterator().hasNext());
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> readAll(Iterable<String> lines) {
+        List<String> result = new ArrayList<>();
+        lines.forEach(result::add);
+        return result;
+    }
+}
@@ -3,14 +3,21 @@ package de.fraunhofer.iem.opcuascanner.utils;
 import org.junit.Test;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class NetworkUtilTest {
 
@@ -34,4 +41,22 @@ public class NetworkUtilTest {
         //It's not possible to create invalid ip addresses using the InetAddress type, so no further testing here
     }
 
+    @Test
+    public void testGetTargetsCombinesEveryAddressWithEveryPort() throws UnknownHostException {
+        List<InetAddress> addresses = Arrays.asList(InetAddress.getByName("10.0.0.1"), //NOSONAR this is for testing
+                InetAddress.getByName("10.0.0.2")); //NOSONAR this is for testing
+        List<Integer> ports = Arrays.asList(4840, 48010, 62541);
+        Set<InetSocketAddress> targets = new HashSet<>();
+        Iterator<InetSocketAddress> targetIterator = NetworkUtil.getTargets(addresses, ports);
+        while (targetIterator.hasNext()){
+            assertTrue("Targets should not repeat.", targets.add(targetIterator.next()));
+        }
+        assertEquals("Every address should be combined with every port.",
+                addresses.size() * ports.size(), targets.size());
+        for (InetAddress address : addresses){
+            for (int port : ports){
+                assertTrue("Target is missing.", targets.contains(new InetSocketAddress(address, port)));
+            }
+        }
+    }
 }
@@ -43,6 +43,14 @@ public class OpcuaUtilTest {
         }
     }
 
+    @Test
+    public void testGetHostAndPortForFileName(){
+        assertEquals("Prefix and path should be removed.", "192.168.0.5_48010", //NOSONAR this is for testing
+                OpcuaUtil.getHostAndPortForFileName(OpcuaUtil.ADDR_PREFIX + "192.168.0.5:48010/discovery"));
+        assertEquals("Hostname should be kept.", "plc.local_4840",
+                OpcuaUtil.getHostAndPortForFileName(OpcuaUtil.ADDR_PREFIX + "plc.local:4840"));
+    }
+
     @Test
     public void testTryToGetEndpoint(){
         String testUrl = "127.0.0.1"; //NOSONAR this is for testing
@@ -61,8 +69,8 @@ public class OpcuaUtilTest {
         CompletableFuture<EndpointDescription[]> future = new CompletableFuture<>();
         future.complete(endpointsForNonDiscoveryEndpoint);
         PowerMockito.mockStatic(UaTcpStackClient.class);
-        String fullHostAddress = OpcuaUtil.ADDR_PREFIX + testHost.getHostName() + ":" + testHost.getPort();
-        String fullHostAddressWithDiscovery = OpcuaUtil.ADDR_PREFIX + testHost.getHostName()
+        String fullHostAddress = OpcuaUtil.ADDR_PREFIX + testHost.getHostString() + ":" + testHost.getPort();
+        String fullHostAddressWithDiscovery = OpcuaUtil.ADDR_PREFIX + testHost.getHostString()
                 + OpcuaUtil.DISCOVERY_SUFFIX + ":" + testHost.getPort();
         when(UaTcpStackClient.getEndpoints(fullHostAddress)).thenReturn(future);
 
@@ -0,0 +1,115 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PortSweeperTest {
+
+    private static final int TEST_TIMEOUT_IN_MS = 500;
+    private static final int NUMBER_OF_OPEN_PORTS = 3;
+
+    private final List<ServerSocket> serverSockets = new ArrayList<>();
+    private final List<InetSocketAddress> openPorts = new ArrayList<>();
+    private InetSocketAddress closedPort;
+
+    @Before
+    public void openPorts() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        for (int i = 0; i < NUMBER_OF_OPEN_PORTS; i++){
+            ServerSocket serverSocket = new ServerSocket(0, 50, loopback);
+            serverSockets.add(serverSocket);
+            openPorts.add(new InetSocketAddress(loopback, serverSocket.getLocalPort()));
+        }
+        //Get a port that was just free and is closed again
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, loopback)){
+            closedPort = new InetSocketAddress(loopback, serverSocket.getLocalPort());
+        }
+    }
+
+    @Test
+    public void testOpenPortsAreFoundAndClosedPortIsNot(){
+        List<InetSocketAddress> targets = new ArrayList<>(openPorts);
+        targets.add(closedPort);
+        Set<InetSocketAddress> reachable = new PortSweeper(10, TEST_TIMEOUT_IN_MS).sweep(targets.iterator());
+        assertEquals("Exactly the open ports should be reachable.", NUMBER_OF_OPEN_PORTS, reachable.size());
+        assertTrue("All open ports should be reachable.", reachable.containsAll(openPorts));
+        assertFalse("Closed port should not be reachable.", reachable.contains(closedPort));
+    }
+
+    @Test
+    public void testAllTargetsAreTriedWithOneConnectAtATime(){
+        List<InetSocketAddress> targets = new ArrayList<>();
+        targets.add(closedPort);
+        targets.addAll(openPorts);
+        Set<InetSocketAddress> reachable = new PortSweeper(1, TEST_TIMEOUT_IN_MS).sweep(targets.iterator());
+        assertEquals("All open ports should be reachable with a single connect in flight.",
+                NUMBER_OF_OPEN_PORTS, reachable.size());
+    }
+
+    @Test
+    public void testOpenPortsAreFoundWithAdaptiveTiming(){
+        List<InetSocketAddress> targets = new ArrayList<>();
+        targets.add(closedPort);
+        targets.addAll(openPorts);
+        targets.add(closedPort);
+        Set<InetSocketAddress> reachable = new PortSweeper(2, TEST_TIMEOUT_IN_MS, 1, TEST_TIMEOUT_IN_MS * 2)
+                .sweep(targets.iterator());
+        assertEquals("All open ports should be reachable with adaptive timing.", NUMBER_OF_OPEN_PORTS,
+                reachable.size());
+    }
+
+    @Test
+    public void testSweepPositionGrowsToAllTargets(){
+        List<InetSocketAddress> targets = new ArrayList<>(openPorts);
+        targets.add(closedPort);
+        List<Long> positions = new ArrayList<>();
+        new PortSweeper(2, TEST_TIMEOUT_IN_MS).sweep(targets.iterator(), reachable -> { }, positions::add);
+        assertFalse("The sweep position should be reported.", positions.isEmpty());
+        for (int i = 1; i < positions.size(); i++){
+            assertTrue("The sweep position should only grow.", positions.get(i) > positions.get(i - 1));
+        }
+        assertEquals("All targets should be swept in the end.", Long.valueOf(targets.size()),
+                positions.get(positions.size() - 1));
+    }
+
+    @Test
+    public void testEveryTargetIsCountedAsProbedOnce(){
+        List<InetSocketAddress> targets = new ArrayList<>(openPorts);
+        targets.add(closedPort);
+        targets.add(closedPort);
+        long probedBefore = ScanProgress.getAddressesProbed();
+        new PortSweeper(2, TEST_TIMEOUT_IN_MS, 1, TEST_TIMEOUT_IN_MS * 2).sweep(targets.iterator());
+        assertEquals("Every target should be counted once.", targets.size(),
+                ScanProgress.getAddressesProbed() - probedBefore);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialTimeoutOutsideOfBoundsIsRejected(){
+        new PortSweeper(10, TEST_TIMEOUT_IN_MS, TEST_TIMEOUT_IN_MS + 1, TEST_TIMEOUT_IN_MS * 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveConcurrencyIsRejected(){
+        new PortSweeper(0, TEST_TIMEOUT_IN_MS);
+    }
+
+    @After
+    public void closePorts() throws IOException {
+        for (ServerSocket serverSocket : serverSockets){
+            serverSocket.close();
+        }
+    }
+}
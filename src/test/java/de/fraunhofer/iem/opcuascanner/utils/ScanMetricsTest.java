@@ -0,0 +1,98 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScanMetricsTest {
+
+    @Test
+    public void testOutcomeOfErrors() {
+        assertEquals("No error should be a success.", StageMetrics.Outcome.SUCCESS, StageMetrics.Outcome.of(null));
+        assertEquals("A wrapped timeout should be a timeout.", StageMetrics.Outcome.TIMEOUT,
+                StageMetrics.Outcome.of(new CompletionException(new TimeoutException())));
+        assertEquals("A timeout of the server should be a timeout.", StageMetrics.Outcome.TIMEOUT,
+                StageMetrics.Outcome.of(new UaException(StatusCodes.Bad_Timeout)));
+        assertEquals("Other errors should be errors.", StageMetrics.Outcome.ERROR,
+                StageMetrics.Outcome.of(new IOException("refused")));
+    }
+
+    @Test
+    public void testSameStageForSameLabels() {
+        StageMetrics stage = ScanMetrics.stage("test_same", "label", "a");
+        assertSame("Asking again should return the same metrics.", stage,
+                ScanMetrics.stage("test_same", "label", "a"));
+        assertTrue("Other labels should have other metrics.", stage != ScanMetrics.stage("test_same", "label", "b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLabelWithoutValueIsRejected() {
+        ScanMetrics.stage("test_odd", "label");
+    }
+
+    @Test
+    public void testOperationsAreCountedInBuckets() {
+        StageMetrics stage = ScanMetrics.stage("test_buckets");
+        long now = System.nanoTime();
+        stage.start();
+        stage.start();
+        stage.start();
+        stage.finish(now - TimeUnit.MICROSECONDS.toNanos(3500), StageMetrics.Outcome.SUCCESS);
+        stage.finish(now - TimeUnit.SECONDS.toNanos(60), StageMetrics.Outcome.TIMEOUT);
+
+        assertEquals("One operation should still run.", 1, stage.getInFlight());
+        assertEquals("One operation should have succeeded.", 1, stage.getCount(StageMetrics.Outcome.SUCCESS));
+        assertEquals("One operation should have timed out.", 1, stage.getCount(StageMetrics.Outcome.TIMEOUT));
+        assertEquals("No operation should have failed.", 0, stage.getCount(StageMetrics.Outcome.ERROR));
+        assertTrue("Both durations should be summed up.", stage.getDurationInSeconds() > 60);
+        assertArrayEquals("The fast operation should count from the 5 ms bucket, the slow one only in the last.",
+                new long[]{0, 0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 2}, stage.getCumulativeBucketCounts());
+    }
+
+    @Test
+    public void testTrackedFutureIsCounted() {
+        StageMetrics stage = ScanMetrics.stage("test_track");
+        CompletableFuture<String> future = new CompletableFuture<>();
+        stage.track(future);
+        assertEquals("The future should run until it completes.", 1, stage.getInFlight());
+
+        future.completeExceptionally(new TimeoutException());
+        assertEquals("The future should not run anymore.", 0, stage.getInFlight());
+        assertEquals("The future should have timed out.", 1, stage.getCount(StageMetrics.Outcome.TIMEOUT));
+    }
+
+    @Test
+    public void testExportFormats() {
+        StageMetrics stage = ScanMetrics.stage("test_export", "privilege", "READ");
+        stage.finish(stage.start(), StageMetrics.Outcome.ERROR);
+
+        String prometheus = ScanMetrics.toPrometheus();
+        assertTrue("Prometheus text should declare the histogram.",
+                prometheus.contains("# TYPE opcua_scanner_operation_duration_seconds histogram\n"));
+        assertTrue("Prometheus text should have the buckets in seconds.", prometheus.contains(
+                "opcua_scanner_operation_duration_seconds_bucket{stage=\"test_export\",privilege=\"READ\","
+                        + "le=\"0.025\"} 1\n"));
+        assertTrue("Prometheus text should have the outcomes.", prometheus.contains(
+                "opcua_scanner_operations_total{stage=\"test_export\",privilege=\"READ\",outcome=\"error\"} 1\n"));
+        assertTrue("Prometheus text should have the running operations.", prometheus.contains(
+                "opcua_scanner_operations_in_flight{stage=\"test_export\",privilege=\"READ\"} 0\n"));
+
+        String json = ScanMetrics.toJson(42);
+        assertTrue("JSON should start with the timestamp.", json.startsWith("{\"timestampInMs\":42,"));
+        assertTrue("JSON should have the stage with its labels and counts.", json.contains(
+                "{\"stage\":\"test_export\",\"labels\":{\"privilege\":\"READ\"},\"inFlight\":0,"
+                        + "\"success\":0,\"timeout\":0,\"error\":1,"));
+        assertTrue("JSON should have the buckets in milliseconds.", json.contains("\"+Inf\":1}}"));
+    }
+}
@@ -0,0 +1,66 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import de.fraunhofer.iem.opcuascanner.logic.Authentication;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanProgressTest {
+
+    private static ScanProgress.Snapshot snapshot(long elapsedInMs, long probed, boolean sweepDone,
+                                                  long discovered, long tested) {
+        long[] probes = new long[Authentication.values().length];
+        probes[Authentication.ANONYMOUSLY.ordinal()] = tested * 6;
+        return new ScanProgress.Snapshot(elapsedInMs, 1000, probed, sweepDone, discovered, discovered, tested,
+                tested * 100, probes);
+    }
+
+    @Test
+    public void testEndpointsAreExtrapolatedWhileSweeping() {
+        assertEquals("A quarter of the addresses should have a quarter of the endpoints.", 40,
+                ScanProgress.expectedEndpoints(snapshot(0, 250, false, 10, 0)));
+        assertEquals("After the sweep all endpoints should be known.", 10,
+                ScanProgress.expectedEndpoints(snapshot(0, 1000, true, 10, 0)));
+    }
+
+    @Test
+    public void testTimeLeftIsTheSlowerStage() {
+        ScanProgress.Snapshot earlier = snapshot(0, 0, false, 0, 0);
+        //750 addresses left at 10 per second, 40 - 5 endpoints left at 0.5 per second
+        ScanProgress.Snapshot current = snapshot(10000, 250, false, 10, 5);
+        assertEquals("The endpoints should take longer than the sweep.", 70,
+                ScanProgress.secondsLeft(current, earlier));
+
+        current = snapshot(10000, 1000, true, 10, 5);
+        assertEquals("After the sweep only the endpoints should be left.", 10,
+                ScanProgress.secondsLeft(current, earlier));
+    }
+
+    @Test
+    public void testTimeLeftIsUnknownWithoutProgress() {
+        ScanProgress.Snapshot earlier = snapshot(0, 250, false, 10, 5);
+        ScanProgress.Snapshot current = snapshot(10000, 250, false, 10, 5);
+        assertEquals("Without progress the time left should be unknown.", -1,
+                ScanProgress.secondsLeft(current, earlier));
+        assertTrue("The status line should say the time left is unknown.",
+                ScanProgress.statusLine(current, earlier).endsWith("unknown time left"));
+    }
+
+    @Test
+    public void testReportsContainRatesAndTimeLeft() {
+        ScanProgress.Snapshot earlier = snapshot(0, 0, false, 0, 0);
+        ScanProgress.Snapshot current = snapshot(10000, 1000, true, 10, 5);
+        assertEquals("The status line should have counts, rates and the time left.",
+                "Progress: 100.0% of 1000 addresses probed (100/s), 10 open ports, 5 of 10 endpoints tested "
+                        + "(0.5/s), 30 probes (3/s), 500 nodes browsed (50/s), 0:00:10 left",
+                ScanProgress.statusLine(current, earlier));
+
+        String json = ScanProgress.toJson(42, current, earlier);
+        assertTrue("The progress file should have the counts.", json.startsWith("{\"timestampInMs\":42,"
+                + "\"elapsedInMs\":10000,\"addressesQueued\":1000,\"addressesProbed\":1000,\"sweepDone\":true,"));
+        assertTrue("The progress file should have the probes per authentication.",
+                json.contains("\"probes\":{\"ANONYMOUSLY\":30,"));
+        assertTrue("The progress file should have the time left.", json.endsWith(",\"secondsLeft\":10}\n"));
+    }
+}
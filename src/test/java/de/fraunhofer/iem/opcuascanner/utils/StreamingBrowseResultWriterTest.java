@@ -0,0 +1,64 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingBrowseResultWriterTest {
+
+    private static final NodeId OBJECT = new NodeId(1, "object");
+    private static final NodeId VARIABLE = new NodeId(1, "variable");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReferencesNameTheirParent() throws Exception {
+        File file = folder.newFile("browse.xml");
+        try (StreamingBrowseResultWriter writer = new StreamingBrowseResultWriter(file.toPath())) {
+            writer.writeReference(Identifiers.RootFolder, reference(OBJECT, "Object"));
+            writer.writeReference(OBJECT, reference(VARIABLE, "<Temperature & Pressure>"));
+        }
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        Element root = document.getDocumentElement();
+        assertEquals("Root element should be the root folder.", "RootFolder", root.getTagName());
+        NodeList references = root.getElementsByTagName("reference");
+        assertEquals("Every reference should be written.", 2, references.getLength());
+        Element variable = (Element) references.item(1);
+        assertEquals("Reference should name its node.", VARIABLE.toParseableString(), variable.getAttribute("nodeId"));
+        assertEquals("Reference should name its parent.", OBJECT.toParseableString(),
+                variable.getAttribute("parentId"));
+        assertEquals("Browse name should be escaped.", "<Temperature & Pressure>", variable.getTextContent());
+    }
+
+    @Test
+    public void testEmptyBrowseIsValidXml() throws Exception {
+        File file = folder.newFile("empty.xml");
+        new StreamingBrowseResultWriter(file.toPath()).close();
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        assertEquals("File without references should have no children.", 0,
+                document.getDocumentElement().getElementsByTagName("reference").getLength());
+    }
+
+    private static ReferenceDescription reference(NodeId target, String name) {
+        return new ReferenceDescription(null, true, new ExpandedNodeId(target), new QualifiedName(1, name),
+                LocalizedText.english(name), NodeClass.Variable, ExpandedNodeId.NULL_VALUE);
+    }
+}
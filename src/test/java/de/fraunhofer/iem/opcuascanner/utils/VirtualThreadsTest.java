@@ -0,0 +1,42 @@
+package de.fraunhofer.iem.opcuascanner.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void testPlatformThreadsAreNumbered() {
+        ThreadFactory factory = VirtualThreads.newThreadFactory("test", false);
+        Runnable nothing = () -> { };
+
+        assertEquals("First thread should be numbered 1.", "test-1", factory.newThread(nothing).getName());
+        assertEquals("Second thread should be numbered 2.", "test-2", factory.newThread(nothing).getName());
+    }
+
+    @Test
+    public void testVirtualThreadsOnlyWhereSupported() {
+        boolean supported = VirtualThreads.isSupported();
+        try {
+            Thread thread = VirtualThreads.newThreadFactory("test", true).newThread(() -> { });
+            assertTrue("Virtual threads should only be created if the runtime has them.", supported);
+            assertEquals("Virtual threads should be named.", "test-1", thread.getName());
+        } catch (UnsupportedOperationException e) {
+            assertFalse("Virtual threads should be created if the runtime has them.", supported);
+        }
+        try {
+            VirtualThreads.newThreadPerTaskExecutor("test").shutdown();
+            if (!supported) {
+                fail("Executor with virtual threads should need Java 21.");
+            }
+        } catch (UnsupportedOperationException e) {
+            assertFalse("Executor with virtual threads should be created if the runtime has them.", supported);
+        }
+    }
+}